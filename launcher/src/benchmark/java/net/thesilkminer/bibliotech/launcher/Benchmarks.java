@@ -0,0 +1,138 @@
+package net.thesilkminer.bibliotech.launcher;
+
+import com.google.common.collect.ImmutableMap;
+
+import net.thesilkminer.bibliotech.launcher.logging.LogFormatterBenchmark;
+import net.thesilkminer.bibliotech.launcher.logging.RollingFileSinkBenchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Runs the benchmarks, either all of them or only the ones whose names
+ * are given as arguments.
+ *
+ * <p>These are plain timing loops, not a replacement for a proper harness:
+ * every benchmark warms up first and then reports the median of a few
+ * runs, which is enough to compare two implementations on the same
+ * machine. Allocations are read from the HotSpot thread counters, and are
+ * reported as unavailable elsewhere.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class Benchmarks {
+
+	/**
+	 * A single operation of a benchmark.
+	 *
+	 * @author TheSilkMiner
+	 *
+	 * @since 0.1
+	 */
+	@FunctionalInterface
+	public interface IOperation {
+		/**
+		 * Performs the operation.
+		 *
+		 * @param iteration
+		 *      The index of the operation in the current run.
+		 * @return
+		 *      Anything derived from the result, so that the work can't be skipped.
+		 */
+		int perform(final int iteration);
+	}
+
+	private static final int WARM_UP_RUNS = 3;
+	private static final int RUNS = 5;
+	@SuppressWarnings("unused")
+	private static volatile int sink;
+
+	private static final Map<String, Runnable> BENCHMARKS = ImmutableMap.<String, Runnable>of(
+			"formatter", LogFormatterBenchmark::run,
+			"file-sink", RollingFileSinkBenchmark::run
+	);
+
+	private Benchmarks() {}
+
+	public static void main(final String... args) {
+		final Iterable<String> names = args.length == 0? BENCHMARKS.keySet() : Arrays.asList(args);
+		for (final String name : names) {
+			final Runnable benchmark = BENCHMARKS.get(name);
+			if (benchmark == null) throw new IllegalArgumentException("Unknown benchmark " + name + ", known ones are "
+					+ BENCHMARKS.keySet());
+			System.out.println("# " + name);
+			benchmark.run();
+		}
+	}
+
+	/**
+	 * Measures the given operation and prints the median of a few runs,
+	 * after warming up.
+	 *
+	 * @param name
+	 *      What is being measured.
+	 * @param operations
+	 *      How many operations a run performs.
+	 * @param operation
+	 *      The operation.
+	 */
+	public static void measure(@Nonnull final String name, final int operations, @Nonnull final IOperation operation) {
+		for (int run = 0; run < WARM_UP_RUNS; ++run) measure$run(operations, operation);
+		final long[] nanos = new long[RUNS];
+		final long[] bytes = new long[RUNS];
+		for (int run = 0; run < RUNS; ++run) {
+			final long before = allocatedBytes();
+			nanos[run] = measure$run(operations, operation);
+			bytes[run] = before < 0L? -1L : allocatedBytes() - before;
+		}
+		Arrays.sort(nanos);
+		Arrays.sort(bytes);
+		report(name, operations, nanos[RUNS / 2], bytes[RUNS / 2]);
+	}
+
+	private static long measure$run(final int operations, @Nonnull final IOperation operation) {
+		int result = 0;
+		final long start = System.nanoTime();
+		for (int i = 0; i < operations; ++i) result += operation.perform(i);
+		final long elapsed = System.nanoTime() - start;
+		sink = result;
+		return elapsed;
+	}
+
+	/**
+	 * Gets how many bytes the current thread has allocated so far.
+	 *
+	 * @return
+	 *      The amount of bytes, or -1 if the virtual machine doesn't track it.
+	 */
+	public static long allocatedBytes() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1L;
+		return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Prints a single result line.
+	 *
+	 * @param name
+	 *      What has been measured.
+	 * @param operations
+	 *      How many operations have been performed.
+	 * @param nanos
+	 *      How long they took.
+	 * @param bytes
+	 *      How many bytes they allocated, or a negative value if unknown.
+	 */
+	public static void report(@Nonnull final String name, final long operations, final long nanos, final long bytes) {
+		final double perSecond = operations * 1e9 / Math.max(1L, nanos);
+		final String allocated = bytes < 0L? "n/a" : String.format(Locale.ROOT, "%.1f B/op", (double) bytes / operations);
+		System.out.println(String.format(Locale.ROOT, "%-32s %,14.0f ops/s %14s", name, perSecond, allocated));
+	}
+}
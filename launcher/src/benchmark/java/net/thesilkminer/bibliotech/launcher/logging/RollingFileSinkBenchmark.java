@@ -0,0 +1,65 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import com.google.common.base.Throwables;
+
+import net.thesilkminer.bibliotech.launcher.Benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Compares the throughput of {@link RollingFileSink} with every
+ * {@link Durability} mode.
+ *
+ * <p>Lines are committed in batches, as the dispatcher does, and every run
+ * writes a new file in a temporary directory. The results depend heavily
+ * on the disk, especially when syncing.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class RollingFileSinkBenchmark {
+
+	private static final int LINES = 20000;
+	private static final int BATCH = 256;
+
+	private RollingFileSinkBenchmark() {}
+
+	public static void run() {
+		final LogEvent event = new LogEvent();
+		final long now = System.currentTimeMillis();
+		event.set(Level.INFO, "Benchmark", now, "A message long enough to look like an actual log line");
+		event.line(LogFormatter.format(now, "Benchmark", Level.INFO, event.message()));
+		try {
+			for (final Durability durability : Durability.values()) run(durability, event);
+		} catch (final IOException e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	private static void run(@Nonnull final Durability durability, @Nonnull final LogEvent event) throws IOException {
+		final Path directory = Files.createTempDirectory("bibliotech-benchmark");
+		try {
+			final File logs = directory.toFile();
+			final RollingFileSink sink = new RollingFileSink(logs, 0L, false, new LogArchiver(logs, 10, Long.MAX_VALUE),
+					64 * 1024, durability, 0L, LogFileFormat.TEXT);
+			Benchmarks.measure(durability + " (batches of " + BATCH + ")", LINES, i -> {
+				sink.accept(event);
+				if (i % BATCH == BATCH - 1 || i == LINES - 1) sink.endOfBatch();
+				return 1;
+			});
+			sink.close();
+		} finally {
+			try (final Stream<Path> paths = Files.walk(directory)) {
+				paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+}
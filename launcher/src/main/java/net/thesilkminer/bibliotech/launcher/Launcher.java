@@ -2,12 +2,16 @@ package net.thesilkminer.bibliotech.launcher;
 
 import net.thesilkminer.bibliotech.launcher.crash.CrashReportHandler;
 import net.thesilkminer.bibliotech.launcher.logging.Logger;
+import net.thesilkminer.bibliotech.launcher.ui.EdtWatchdog;
 import net.thesilkminer.bibliotech.launcher.ui.LoadingFrame;
 import net.thesilkminer.bibliotech.launcher.ui.console.ConsoleFrame;
 
 import org.jetbrains.annotations.Contract;
 
 import java.awt.Color;
+import java.awt.GraphicsEnvironment;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
 
 import javax.annotation.Nonnull;
 import javax.swing.UIManager;
@@ -28,12 +32,24 @@ public class Launcher {
 
 	private Launcher() {
 		log = Logger.obtain("Launcher");
-		ConsoleFrame.INSTANCE.init();
-		log.info("Successfully loaded and constructed console");
-		LoadingFrame.INSTANCE.init();
-		log.info("Successfully loaded and constructed frame");
-		LoadingFrame.INSTANCE.updateProgressBarGently(100, "ASD"); //TODO Debug line
-		new net.thesilkminer.bibliotech.launcher.ui.LauncherFrame(); //TODO Debug line
+		if (headless()) {
+			log.info("Running in headless mode: no window will be shown");
+		} else {
+			EdtWatchdog.INSTANCE.start();
+			CrashReportHandler.INSTANCE.registerProvider("EDT Watchdog", 50, (report, builder) ->
+					builder.append("Event dispatcher latencies: ").append(EdtWatchdog.INSTANCE.latencies()).append("\n"));
+			ConsoleFrame.INSTANCE.init();
+			log.info("Successfully loaded and constructed console");
+			LoadingFrame.INSTANCE.init();
+			log.info("Successfully loaded and constructed frame");
+			LoadingFrame.INSTANCE.updateProgressBarGently(100, "ASD"); //TODO Debug line
+			new net.thesilkminer.bibliotech.launcher.ui.LauncherFrame(); //TODO Debug line
+		}
+		final Runtime runtime = Runtime.getRuntime();
+		log.info("Started in {} ms, using {} MB of heap ({} MB reserved)",
+				ManagementFactory.getRuntimeMXBean().getUptime(),
+				(runtime.totalMemory() - runtime.freeMemory()) / (1024L * 1024L),
+				runtime.totalMemory() / (1024L * 1024L));
 	}
 
 	@Contract(pure = true)
@@ -41,7 +57,34 @@ public class Launcher {
 		return log;
 	}
 
+	/**
+	 * Gets whether the launcher is running without any window.
+	 *
+	 * <p>This happens either when the JVM is headless or when the
+	 * launcher is started with the {@code --headless} flag.</p>
+	 *
+	 * @return
+	 *      If the launcher is running headless.
+	 *
+	 * @since 0.1
+	 */
+	@Contract(pure = true)
+	public static boolean headless() {
+		return GraphicsEnvironment.isHeadless();
+	}
+
 	public static void main(@Nonnull final String... args) {
+		// Must be set before anything touches AWT, which reads it only once
+		if (Arrays.asList(args).contains("--headless")) System.setProperty("java.awt.headless", "true");
+		if (!headless()) main$lookAndFeel();
+
+		final Thread launcherThread = new Thread(Launcher::new);
+		CrashReportHandler.INSTANCE.prepare();
+		Thread.setDefaultUncaughtExceptionHandler(CrashReportHandler.INSTANCE::constructReport);
+		launcherThread.start();
+	}
+
+	private static void main$lookAndFeel() {
 		try {
 			for (final UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
 				if ("Nimbus".equalsIgnoreCase(info.getName())) UIManager.setLookAndFeel(info.getClassName());
@@ -58,9 +101,5 @@ public class Launcher {
 		} catch (final Throwable t) {
 			throw new RuntimeException(t);
 		}
-
-		final Thread launcherThread = new Thread(Launcher::new);
-		Thread.setDefaultUncaughtExceptionHandler(CrashReportHandler.INSTANCE::constructReport);
-		launcherThread.start();
 	}
 }
@@ -1,16 +1,22 @@
 package net.thesilkminer.bibliotech.launcher.auth;
 
-import com.google.common.collect.Lists;
+import net.thesilkminer.bibliotech.launcher.crash.ReportedException;
+import net.thesilkminer.bibliotech.launcher.os.Os;
 
 import org.jetbrains.annotations.Contract;
 
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 /**
  * Holds the current database of authorized {@link AuthData} combinations.
  *
+ * <p>Passwords are never kept: only their hashes are, in a
+ * {@link CredentialStore} saved in the working directory.</p>
+ *
  * @author TheSilkMiner
  *
  * @since 0.1
@@ -19,18 +25,87 @@ public enum AuthDatabase {
 
 	DATABASE;
 
-	private final List<AuthData> validData = Lists.newArrayList();
+	private volatile CredentialStore store;
 
-	public final void populate() {
-		// TODO
+	public final synchronized void populate() {
+		if (this.store != null) return;
+		final File file = new File(Os.getCurrentOs().workingDir(), CredentialStore.FILE_NAME);
+		try {
+			this.store = CredentialStore.open(file);
+		} catch (final IOException e) {
+			final ReportedException report = new ReportedException(e.getMessage(), e);
+			report.description("Unable to load the accounts");
+			report.addCustomProvider("Accounts", (crash, builder) ->
+					builder.append("Accounts file: ").append(file).append("\n"));
+			throw report;
+		}
 	}
 
 	public final boolean populated() {
-		return !this.validData.isEmpty();
+		return this.store != null;
 	}
 
-	@Contract(value = "null -> false; !null -> _", pure = true)
+	@Contract(value = "null -> false; !null -> _")
 	public final boolean isValidData(@Nullable final AuthData data) {
-		return data != null && this.validData.stream().anyMatch(data::equals);
+		if (data == null || !this.populated()) return false;
+		try {
+			return this.store.verify(data.userName(), data.password());
+		} catch (final IOException e) {
+			final ReportedException report = new ReportedException(e.getMessage(), e);
+			report.description("Unable to read the accounts");
+			throw report;
+		}
+	}
+
+	/**
+	 * Checks the given data and opens a session if it is valid.
+	 *
+	 * <p>The session can later be checked through the {@link SessionManager}
+	 * without hashing the password again. Failures are recorded by the
+	 * {@link LoginThrottle}, and while it delays the logins of the user or
+	 * of the client the data isn't even checked.</p>
+	 *
+	 * @param data
+	 *      The login data.
+	 * @param client
+	 *      The client the login comes from.
+	 * @return
+	 *      The token of the new session, or {@code null} if the data isn't
+	 *      valid or the login has been throttled.
+	 *
+	 * @since 0.1
+	 */
+	@Contract(value = "null, _ -> null")
+	@Nullable
+	public final String authenticate(@Nullable final AuthData data, @Nonnull final String client) {
+		if (data == null || LoginThrottle.INSTANCE.delay(data.userName(), client) > 0L) return null;
+		if (!this.isValidData(data)) {
+			LoginThrottle.INSTANCE.failure(data.userName(), client);
+			return null;
+		}
+		LoginThrottle.INSTANCE.success(data.userName(), client);
+		return SessionManager.INSTANCE.open(data.userName());
+	}
+
+	/**
+	 * Creates the account of the given data or changes its password.
+	 *
+	 * <p>All the sessions of the user are closed.</p>
+	 *
+	 * @param data
+	 *      The account data.
+	 *
+	 * @since 0.1
+	 */
+	public final void register(@Nonnull final AuthData data) {
+		this.populate();
+		try {
+			this.store.put(data.userName(), data.password());
+			SessionManager.INSTANCE.closeAll(data.userName());
+		} catch (final IOException e) {
+			final ReportedException report = new ReportedException(e.getMessage(), e);
+			report.description("Unable to save the account");
+			throw report;
+		}
 	}
 }
@@ -0,0 +1,434 @@
+package net.thesilkminer.bibliotech.launcher.auth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+
+import net.thesilkminer.bibliotech.launcher.logging.Logger;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Stores the {@link PasswordHash hashed passwords} of all the accounts.
+ *
+ * <p>The store is a memory-mapped file made of a header, a table of hash
+ * buckets and the records. Every bucket holds the position of the latest
+ * record whose user name falls in it, and every record holds the position
+ * of the previous one in the same bucket, followed by the hash of the user
+ * name, the user name and the encoded password hash. Changes are appended
+ * and linked at the head of their bucket, so the first record of a user
+ * found in a bucket is the valid one; removals are records without a
+ * password hash.</p>
+ *
+ * <p>Opening the store only maps the file and checks its header, whatever
+ * the amount of accounts. A lookup only compares the user names in a single
+ * bucket, and decodes the password hash of the matching record alone.</p>
+ *
+ * <p>Records shadowed by newer ones take space until the store is compacted,
+ * i.e. rewritten with only the valid records: this happens when they take
+ * more space than the valid ones, or when the buckets get too crowded, in
+ * which case their number is doubled. The compacted file is written
+ * without being mapped and then moved over the old one. If the file can't
+ * be replaced, e.g. because some systems don't allow it while it is
+ * mapped, compaction isn't attempted again until the store is opened
+ * again: changes are committed anyway.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class CredentialStore {
+
+	public static final String FILE_NAME = "accounts.db";
+
+	private static final int MAGIC = 0x42544144; // BTAD
+	private static final int VERSION = 1;
+	// Magic, version, buckets, size, end of the records, space taken by shadowed records
+	private static final int HEADER = 32;
+	private static final int BUCKETS_AT = 8;
+	private static final int SIZE_AT = 12;
+	private static final int END_AT = 16;
+	private static final int GARBAGE_AT = 24;
+	private static final int BUCKET = 8;
+	// Previous record, hash of the user name, user name length, password hash length
+	private static final int RECORD_HEADER = 16;
+	private static final int INITIAL_BUCKETS = 1024;
+	private static final int MAX_LOAD = 4;
+	private static final long COMPACTION_THRESHOLD = 64L * 1024L;
+	private static final int GROWTH = 64 * 1024;
+
+	private final File file;
+	private FileChannel channel;
+	private MappedByteBuffer map;
+	private int buckets;
+	private boolean compactionPostponed;
+
+	private CredentialStore(@Nonnull final File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Opens the store saved in the given file, creating it if needed.
+	 *
+	 * @param file
+	 *      The file.
+	 * @return
+	 *      The store.
+	 * @throws IOException
+	 *      If the file can't be read or created, or if it isn't an account
+	 *      file.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static CredentialStore open(@Nonnull final File file) throws IOException {
+		if (file.getParentFile() != null && !file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+			throw new IOException("Unable to create " + file.getParentFile());
+		}
+		final CredentialStore store = new CredentialStore(file);
+		if (!file.exists() || file.length() == 0L) store.create(INITIAL_BUCKETS);
+		store.load();
+		if (store.compact$needed()) store.compact$attempt();
+		return store;
+	}
+
+	private void create(final int buckets) throws IOException {
+		try (final FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			final MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0L, start(buckets) + GROWTH);
+			header(map, buckets);
+			map.force();
+		}
+	}
+
+	private static void header(@Nonnull final ByteBuffer buffer, final int buckets) {
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(BUCKETS_AT, buckets);
+		buffer.putInt(SIZE_AT, 0);
+		buffer.putLong(END_AT, start(buckets));
+		buffer.putLong(GARBAGE_AT, 0L);
+	}
+
+	private void load() throws IOException {
+		this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		final long length = this.channel.size();
+		if (length < HEADER || length > Integer.MAX_VALUE) {
+			this.channel.close();
+			throw new IOException(this.file + " is not an account file");
+		}
+		this.map = this.channel.map(FileChannel.MapMode.READ_WRITE, 0L, length);
+		this.buckets = this.map.getInt(BUCKETS_AT);
+		final long end = this.map.getLong(END_AT);
+		if (this.map.getInt(0) != MAGIC || this.map.getInt(4) != VERSION || this.buckets <= 0
+				|| Integer.bitCount(this.buckets) != 1 || end < this.start() || end > length) {
+			this.channel.close();
+			throw new IOException(this.file + " is not a valid account file");
+		}
+	}
+
+	/**
+	 * Checks the password of the given user.
+	 *
+	 * <p>If the password matches but its hash is weaker than the current
+	 * cost, the hash is replaced.</p>
+	 *
+	 * @param user
+	 *      The user name.
+	 * @param password
+	 *      The password. It isn't cleared.
+	 * @return
+	 *      If the user exists and the password matches.
+	 * @throws IOException
+	 *      If the store can't be read.
+	 *
+	 * @since 0.1
+	 */
+	public boolean verify(@Nonnull final String user, @Nonnull final char[] password) throws IOException {
+		final PasswordHash hash = this.find(user);
+		if (hash == null) {
+			PasswordHash.verifyNothing(password);
+			return false;
+		}
+		if (!hash.verify(password)) return false;
+		if (hash.needsRehash()) this.put(user, password);
+		return true;
+	}
+
+	/**
+	 * Gets the hash of the password of the given user.
+	 *
+	 * @return
+	 *      The hash, or {@code null} if the user doesn't exist.
+	 * @throws IOException
+	 *      If the stored hash is corrupted.
+	 */
+	@Nullable
+	synchronized PasswordHash find(@Nonnull final String user) throws IOException {
+		final int record = this.record(name(user));
+		if (record == 0 || this.valueLength(record) == 0) return null;
+		final byte[] value = new byte[this.valueLength(record)];
+		final ByteBuffer view = this.map.duplicate();
+		view.position(record + RECORD_HEADER + this.nameLength(record));
+		view.get(value);
+		try {
+			return PasswordHash.decode(new String(value, StandardCharsets.US_ASCII));
+		} catch (final IllegalArgumentException e) {
+			throw new IOException("Corrupted password hash of " + user + " in " + this.file, e);
+		}
+	}
+
+	/**
+	 * Creates the given user or changes its password.
+	 *
+	 * @param user
+	 *      The user name.
+	 * @param password
+	 *      The password. It isn't cleared.
+	 * @throws IOException
+	 *      If the store can't be written. Once the change has been written,
+	 *      failures of the following compaction are only logged.
+	 *
+	 * @since 0.1
+	 */
+	public void put(@Nonnull final String user, @Nonnull final char[] password) throws IOException {
+		final byte[] name = name(user);
+		final byte[] value = PasswordHash.create(password).encode().getBytes(StandardCharsets.US_ASCII);
+		synchronized (this) {
+			final int previous = this.record(name);
+			if (previous != 0 && this.valueLength(previous) != 0) {
+				this.map.putLong(GARBAGE_AT, this.map.getLong(GARBAGE_AT) + this.recordLength(previous));
+			} else {
+				this.map.putInt(SIZE_AT, this.map.getInt(SIZE_AT) + 1);
+			}
+			this.append(name, value);
+			this.put$commit();
+		}
+	}
+
+	/**
+	 * Removes the given user.
+	 *
+	 * @param user
+	 *      The user name.
+	 * @return
+	 *      If the user existed.
+	 * @throws IOException
+	 *      If the store can't be written. Once the change has been written,
+	 *      failures of the following compaction are only logged.
+	 *
+	 * @since 0.1
+	 */
+	public synchronized boolean remove(@Nonnull final String user) throws IOException {
+		final byte[] name = name(user);
+		final int previous = this.record(name);
+		if (previous == 0 || this.valueLength(previous) == 0) return false;
+		this.map.putLong(GARBAGE_AT, this.map.getLong(GARBAGE_AT) + this.recordLength(previous)
+				+ RECORD_HEADER + name.length);
+		this.map.putInt(SIZE_AT, this.map.getInt(SIZE_AT) - 1);
+		this.append(name, new byte[0]);
+		this.put$commit();
+		return true;
+	}
+
+	private void put$commit() {
+		this.map.force();
+		if (!this.compactionPostponed && this.compact$needed()) this.compact$attempt();
+	}
+
+	@Nonnull
+	private static byte[] name(@Nonnull final String user) {
+		final byte[] name = user.getBytes(StandardCharsets.UTF_8);
+		Preconditions.checkArgument(name.length <= Short.MAX_VALUE, "User name too long");
+		return name;
+	}
+
+	private static int hash(@Nonnull final byte[] name) {
+		int hash = 0;
+		for (final byte b : name) hash = 31 * hash + b;
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int start(final int buckets) {
+		return HEADER + buckets * BUCKET;
+	}
+
+	private int start() {
+		return start(this.buckets);
+	}
+
+	private static int bucket(final int buckets, final int hash) {
+		return HEADER + (hash & (buckets - 1)) * BUCKET;
+	}
+
+	private int nameLength(final int record) {
+		return this.map.getShort(record + 12) & 0xFFFF;
+	}
+
+	private int valueLength(final int record) {
+		return this.map.getShort(record + 14) & 0xFFFF;
+	}
+
+	private int recordLength(final int record) {
+		return RECORD_HEADER + this.nameLength(record) + this.valueLength(record);
+	}
+
+	/*
+	 * Finds the latest record of the given user, removals included, or returns 0.
+	 */
+	private int record(@Nonnull final byte[] name) {
+		final int hash = hash(name);
+		for (int record = (int) this.map.getLong(bucket(this.buckets, hash)); record != 0;
+		     record = (int) this.map.getLong(record)) {
+			if (this.map.getInt(record + 8) == hash && this.nameLength(record) == name.length
+					&& this.record$matches(record + RECORD_HEADER, name)) {
+				return record;
+			}
+		}
+		return 0;
+	}
+
+	private boolean record$matches(final int at, @Nonnull final byte[] name) {
+		for (int i = 0; i < name.length; ++i) {
+			if (this.map.get(at + i) != name[i]) return false;
+		}
+		return true;
+	}
+
+	private void append(@Nonnull final byte[] name, @Nonnull final byte[] value) throws IOException {
+		this.append$ensure(this.map.getLong(END_AT) + RECORD_HEADER + name.length + value.length);
+		append(this.map, this.buckets, name, value);
+	}
+
+	/*
+	 * The buffer must already have room for the record.
+	 */
+	private static void append(@Nonnull final ByteBuffer buffer, final int buckets, @Nonnull final byte[] name,
+	                           @Nonnull final byte[] value) {
+		final int hash = hash(name);
+		final int bucket = bucket(buckets, hash);
+		final long end = buffer.getLong(END_AT);
+		final int record = (int) end;
+		buffer.putLong(record, buffer.getLong(bucket));
+		buffer.putInt(record + 8, hash);
+		buffer.putShort(record + 12, (short) name.length);
+		buffer.putShort(record + 14, (short) value.length);
+		final ByteBuffer view = buffer.duplicate();
+		view.position(record + RECORD_HEADER);
+		view.put(name).put(value);
+		// The record is linked last: if the write is interrupted, it is only ignored
+		buffer.putLong(END_AT, end + RECORD_HEADER + name.length + value.length);
+		buffer.putLong(bucket, record);
+	}
+
+	private void append$ensure(final long needed) throws IOException {
+		if (needed <= this.map.capacity()) return;
+		if (needed > Integer.MAX_VALUE) throw new IOException("The account file is full");
+		final long size = Math.min(Integer.MAX_VALUE, Math.max(needed + GROWTH, 2L * this.map.capacity()));
+		this.map.force();
+		this.map = this.channel.map(FileChannel.MapMode.READ_WRITE, 0L, size);
+	}
+
+	private boolean compact$needed() {
+		final long garbage = this.map.getLong(GARBAGE_AT);
+		final long used = this.map.getLong(END_AT) - this.start();
+		return garbage >= COMPACTION_THRESHOLD && 2L * garbage >= used
+				|| this.map.getInt(SIZE_AT) > MAX_LOAD * this.buckets;
+	}
+
+	private void compact$attempt() {
+		try {
+			this.compact();
+		} catch (final IOException e) {
+			// Retrying on every change would rewrite the whole file every time for nothing
+			this.compactionPostponed = true;
+			Logger.obtain("Credential Store").warning("Unable to compact the account file, retrying when it is "
+					+ "opened again: {}", e.toString());
+		}
+	}
+
+	private void compact() throws IOException {
+		int buckets = this.buckets;
+		while (this.map.getInt(SIZE_AT) > MAX_LOAD * buckets) buckets <<= 1;
+		final long valid = Math.max(0L, this.map.getLong(END_AT) - this.start() - this.map.getLong(GARBAGE_AT));
+		// Built on the heap, so that no mapping of the new file is left behind when moving it
+		ByteBuffer target = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE, start(buckets) + valid + GROWTH));
+		header(target, buckets);
+		int size = 0;
+		for (int bucket = HEADER; bucket < this.start(); bucket += BUCKET) {
+			final Set<String> seen = Sets.newHashSet();
+			for (int record = (int) this.map.getLong(bucket); record != 0; record = (int) this.map.getLong(record)) {
+				final byte[] name = new byte[this.nameLength(record)];
+				final byte[] value = new byte[this.valueLength(record)];
+				final ByteBuffer view = this.map.duplicate();
+				view.position(record + RECORD_HEADER);
+				view.get(name).get(value);
+				if (!seen.add(new String(name, StandardCharsets.UTF_8)) || value.length == 0) continue;
+				target = compact$ensure(target, RECORD_HEADER + name.length + value.length);
+				append(target, buckets, name, value);
+				++size;
+			}
+		}
+		target.putInt(SIZE_AT, size);
+
+		final File partial = new File(this.file.getParentFile(), this.file.getName() + ".part");
+		try (final FileChannel channel = FileChannel.open(partial.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			target.clear();
+			while (target.hasRemaining()) channel.write(target);
+			channel.force(true);
+		}
+		this.channel.close();
+		try {
+			Files.move(partial.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			if (!partial.delete()) partial.deleteOnExit();
+			throw e;
+		} finally {
+			// Either the compacted file or the old one, which is still valid
+			this.load();
+		}
+	}
+
+	@Nonnull
+	private static ByteBuffer compact$ensure(@Nonnull final ByteBuffer target, final int length) throws IOException {
+		final long needed = target.getLong(END_AT) + length;
+		if (needed <= target.capacity()) return target;
+		if (needed > Integer.MAX_VALUE) throw new IOException("The account file is full");
+		final ByteBuffer grown = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE, needed + GROWTH));
+		target.clear();
+		grown.put(target);
+		return grown;
+	}
+
+	@Contract(pure = true)
+	public synchronized boolean contains(@Nonnull final String user) {
+		final int record = this.record(name(user));
+		return record != 0 && this.valueLength(record) != 0;
+	}
+
+	@Contract(pure = true)
+	public synchronized int size() {
+		return this.map.getInt(SIZE_AT);
+	}
+
+	@Contract(pure = true)
+	@Nonnull
+	public File file() {
+		return this.file;
+	}
+}
@@ -0,0 +1,362 @@
+package net.thesilkminer.bibliotech.launcher.auth;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import net.thesilkminer.bibliotech.launcher.logging.Logger;
+import net.thesilkminer.bibliotech.launcher.os.Os;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Slows down repeated failed logins, both for a single user and for a
+ * single client, i.e. the station the attempts come from.
+ *
+ * <p>Failures are counted in a sliding window: the count of the current
+ * window is added to the one of the previous window, weighted by how much
+ * of the previous window still overlaps. Once the count reaches the limit,
+ * further logins are refused for a delay which doubles with every further
+ * failure, up to a maximum. A successful login clears the failures of the
+ * user, but not the ones of the client. Counters are updated without locks,
+ * so concurrent logins never wait for each other.</p>
+ *
+ * <p>Counters which have been idle for two windows and aren't delaying
+ * logins are evicted. If there are still too many of them, as it happens
+ * with many attempts on different users, the counters of the users which
+ * aren't delaying logins are evicted too: the counter of the client keeps
+ * throttling the attempts anyway. Counters are saved in the working
+ * directory in the background, so that restarting the software doesn't
+ * reset them.</p>
+ *
+ * <p>Everything is configured through properties starting with
+ * {@code net.thesilkminer.bibliotech.shared.auth.throttle.}: {@code window}
+ * is the length of the window in seconds (900 by default), {@code userLimit}
+ * and {@code clientLimit} the failures allowed before logins are delayed (5
+ * and 20 by default), {@code baseDelay} and {@code maxDelay} the first and
+ * the longest delay in seconds (30 and 3600 by default), {@code maxEntries}
+ * the amount of counters above which the non delaying ones of users are
+ * evicted (10000 by default) and {@code persist} whether counters are saved
+ * (true by default).</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public enum LoginThrottle {
+
+	INSTANCE;
+
+	/*
+	 * Immutable, so that it can be replaced atomically.
+	 */
+	private static final class Window {
+		private final long start;
+		private final int current;
+		private final int previous;
+		private final long last;
+		private final long lockedUntil;
+
+		private Window(final long start, final int current, final int previous, final long last, final long lockedUntil) {
+			this.start = start;
+			this.current = current;
+			this.previous = previous;
+			this.last = last;
+			this.lockedUntil = lockedUntil;
+		}
+
+		@Nonnull
+		private Window at(final long now, final long length) {
+			final long elapsed = now - this.start;
+			if (elapsed < 0L) return new Window(now, 0, 0, this.last, this.lockedUntil);
+			if (elapsed < length) return this;
+			if (elapsed < 2L * length) {
+				return new Window(this.start + length, 0, this.current, this.last, this.lockedUntil);
+			}
+			return new Window(now - elapsed % length, 0, 0, this.last, this.lockedUntil);
+		}
+
+		@Nonnull
+		private Window failure(final long now, final long length, final int limit) {
+			final Window window = this.at(now, length);
+			final int current = window.current + 1;
+			final double overlap = (double) (length - (now - window.start)) / length;
+			final long excess = (long) (window.previous * overlap + current) - limit;
+			long lockedUntil = window.lockedUntil;
+			if (excess >= 0L) lockedUntil = Math.max(lockedUntil, now + delay(excess));
+			return new Window(window.start, current, window.previous, now, lockedUntil);
+		}
+
+		private boolean isIdle(final long now, final long length) {
+			return now - this.last >= 2L * length && this.lockedUntil <= now;
+		}
+	}
+
+	private static final String FILE_NAME = "throttle.dat";
+	private static final int MAGIC = 0x42544c54; // BTLT
+	private static final int VERSION = 1;
+	private static final String USER = "user:";
+	private static final String CLIENT = "client:";
+
+	private final ConcurrentMap<String, AtomicReference<Window>> windows = Maps.newConcurrentMap();
+	private final AtomicLong lastSweep = new AtomicLong();
+	private final AtomicBoolean sweeping = new AtomicBoolean();
+	private final AtomicBoolean saving = new AtomicBoolean();
+	private final ExecutorService saver = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "Login Throttle Saver");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	LoginThrottle() {
+		if (persist()) this.load();
+	}
+
+	private static long window() {
+		return TimeUnit.SECONDS.toMillis(Long.getLong("net.thesilkminer.bibliotech.shared.auth.throttle.window", 900L));
+	}
+
+	private static int userLimit() {
+		return Integer.getInteger("net.thesilkminer.bibliotech.shared.auth.throttle.userLimit", 5);
+	}
+
+	private static int clientLimit() {
+		return Integer.getInteger("net.thesilkminer.bibliotech.shared.auth.throttle.clientLimit", 20);
+	}
+
+	private static long maxDelay() {
+		return TimeUnit.SECONDS.toMillis(
+				Long.getLong("net.thesilkminer.bibliotech.shared.auth.throttle.maxDelay", 3600L));
+	}
+
+	private static int maxEntries() {
+		return Integer.getInteger("net.thesilkminer.bibliotech.shared.auth.throttle.maxEntries", 10000);
+	}
+
+	private static boolean persist() {
+		return Boolean.parseBoolean(
+				System.getProperty("net.thesilkminer.bibliotech.shared.auth.throttle.persist", "true"));
+	}
+
+	private static long delay(final long excess) {
+		final long base = TimeUnit.SECONDS.toMillis(
+				Long.getLong("net.thesilkminer.bibliotech.shared.auth.throttle.baseDelay", 30L));
+		if (excess >= Long.numberOfLeadingZeros(base) - 1) return maxDelay();
+		return Math.min(maxDelay(), base << excess);
+	}
+
+	@Nonnull
+	private static File file() {
+		return new File(Os.getCurrentOs().workingDir(), FILE_NAME);
+	}
+
+	/**
+	 * Gets how long the given user has to wait before logging in again from
+	 * the given client.
+	 *
+	 * @param user
+	 *      The user name.
+	 * @param client
+	 *      The client the login comes from.
+	 * @return
+	 *      The time to wait, in milliseconds, or 0 if logging in is allowed.
+	 *
+	 * @since 0.1
+	 */
+	public long delay(@Nonnull final String user, @Nonnull final String client) {
+		final long now = System.currentTimeMillis();
+		return Math.max(this.delay$of(USER + user, now), this.delay$of(CLIENT + client, now));
+	}
+
+	private long delay$of(@Nonnull final String key, final long now) {
+		final AtomicReference<Window> reference = this.windows.get(key);
+		if (reference == null) return 0L;
+		// The clock may have been moved back
+		return Math.min(maxDelay(), Math.max(0L, reference.get().lockedUntil - now));
+	}
+
+	/**
+	 * Records a failed login.
+	 *
+	 * @param user
+	 *      The user name.
+	 * @param client
+	 *      The client the login came from.
+	 *
+	 * @since 0.1
+	 */
+	public void failure(@Nonnull final String user, @Nonnull final String client) {
+		final long now = System.currentTimeMillis();
+		final long length = window();
+		this.failure$record(USER + user, now, length, userLimit());
+		this.failure$record(CLIENT + client, now, length, clientLimit());
+		this.sweep(now, length);
+		this.save();
+	}
+
+	private void failure$record(@Nonnull final String key, final long now, final long length, final int limit) {
+		AtomicReference<Window> reference = this.windows.get(key);
+		if (reference == null) {
+			final AtomicReference<Window> created = new AtomicReference<>(new Window(now, 0, 0, now, 0L));
+			reference = this.windows.putIfAbsent(key, created);
+			if (reference == null) reference = created;
+		}
+		Window window;
+		do {
+			window = reference.get();
+		} while (!reference.compareAndSet(window, window.failure(now, length, limit)));
+	}
+
+	/**
+	 * Records a successful login, clearing the failures of the user.
+	 *
+	 * @param user
+	 *      The user name.
+	 * @param client
+	 *      The client the login came from.
+	 *
+	 * @since 0.1
+	 */
+	public void success(@Nonnull final String user, @Nonnull final String client) {
+		if (this.windows.remove(USER + user) != null) this.save();
+	}
+
+	/*
+	 * Only one thread sweeps at a time: the others go on without waiting.
+	 */
+	private void sweep(final long now, final long length) {
+		final long last = this.lastSweep.get();
+		if (this.windows.size() <= maxEntries() && now - last < length) return;
+		if (!this.sweeping.compareAndSet(false, true)) return;
+		try {
+			this.lastSweep.set(now);
+			// A counter updated while being evicted loses that update, which is fine for an idle one
+			this.windows.entrySet().removeIf(entry -> entry.getValue().get().isIdle(now, length));
+			if (this.windows.size() <= maxEntries()) return;
+			// Client counters are kept, otherwise attempts spread over many users would reset them
+			this.windows.entrySet().removeIf(entry -> entry.getKey().startsWith(USER)
+					&& entry.getValue().get().lockedUntil <= now);
+		} finally {
+			this.sweeping.set(false);
+		}
+	}
+
+	/**
+	 * Gets how many counters are currently kept.
+	 */
+	@Contract(pure = true)
+	public int size() {
+		return this.windows.size();
+	}
+
+	/*
+	 * Forgets all the counters, without saving.
+	 */
+	void clear() {
+		this.windows.clear();
+		this.lastSweep.set(0L);
+	}
+
+	private void load() {
+		final File file = file();
+		if (!file.exists()) return;
+		final long now = System.currentTimeMillis();
+		final long length = window();
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) throw new IOException(file + " is not a throttle file");
+			final int version = in.readUnsignedByte();
+			if (version != VERSION) throw new IOException("Unsupported throttle file version " + version);
+			final int count = in.readInt();
+			for (int i = 0; i < count; ++i) {
+				final String key = in.readUTF();
+				final Window window = new Window(in.readLong(), in.readInt(), in.readInt(), in.readLong(), in.readLong());
+				if (!window.isIdle(now, length)) this.windows.put(key, new AtomicReference<>(window));
+			}
+		} catch (final IOException e) {
+			Logger.obtain("Login Throttle").warning("Unable to load the login counters: {}", e.toString());
+		}
+	}
+
+	/*
+	 * At most one save is pending: all the changes made before it starts are saved together.
+	 */
+	private void save() {
+		if (!persist() || !this.saving.compareAndSet(false, true)) return;
+		try {
+			this.saver.execute(() -> {
+				this.saving.set(false);
+				try {
+					this.save$write();
+				} catch (final IOException e) {
+					Logger.obtain("Login Throttle").warning("Unable to save the login counters: {}", e.toString());
+				}
+			});
+		} catch (final RuntimeException e) {
+			this.saving.set(false);
+		}
+	}
+
+	private void save$write() throws IOException {
+		final List<Map.Entry<String, Window>> entries = Lists.newArrayList();
+		this.windows.forEach((key, window) -> entries.add(Maps.immutableEntry(key, window.get())));
+		final File file = file();
+		final File partial = new File(file.getParentFile(), FILE_NAME + ".part");
+		try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partial)))) {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeInt(entries.size());
+			for (final Map.Entry<String, Window> entry : entries) {
+				final Window window = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(window.start);
+				out.writeInt(window.current);
+				out.writeInt(window.previous);
+				out.writeLong(window.last);
+				out.writeLong(window.lockedUntil);
+			}
+		}
+		try {
+			Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			if (!partial.delete()) partial.deleteOnExit();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the name of the station the software runs on, used as the client
+	 * of local logins.
+	 *
+	 * @return
+	 *      The name of the station.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static String localClient() {
+		final String name = System.getenv(Os.getCurrentOs() == Os.WINDOWS? "COMPUTERNAME" : "HOSTNAME");
+		return name == null || name.isEmpty()? "localhost" : name;
+	}
+}
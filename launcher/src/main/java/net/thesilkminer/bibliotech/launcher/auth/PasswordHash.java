@@ -0,0 +1,178 @@
+package net.thesilkminer.bibliotech.launcher.auth;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+import org.jetbrains.annotations.Contract;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.annotation.Nonnull;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Holds a salted and iterated hash of a password.
+ *
+ * <p>Hashes are derived through {@code PBKDF2WithHmacSHA256}. Every hash
+ * keeps its own salt and amount of iterations, so that the cost can be
+ * raised for new passwords without invalidating the old ones: hashes
+ * weaker than the current cost {@link #needsRehash() should be replaced}
+ * as soon as the password is known again, i.e. after a successful
+ * login.</p>
+ *
+ * <p>The current amount of iterations can be set through the
+ * {@code net.thesilkminer.bibliotech.shared.auth.iterations} property.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class PasswordHash {
+
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+	private static final String PREFIX = "pbkdf2-sha256";
+	private static final int SALT_LENGTH = 16;
+	private static final int HASH_LENGTH = 32;
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	// Verifying an unknown user costs as much as verifying a known one
+	private static final PasswordHash DUMMY = create(new char[0]);
+
+	private final int iterations;
+	private final byte[] salt;
+	private final byte[] hash;
+
+	private PasswordHash(final int iterations, @Nonnull final byte[] salt, @Nonnull final byte[] hash) {
+		this.iterations = iterations;
+		this.salt = salt;
+		this.hash = hash;
+	}
+
+	static int defaultIterations() {
+		return Integer.getInteger("net.thesilkminer.bibliotech.shared.auth.iterations", 100000);
+	}
+
+	/**
+	 * Hashes the given password with a new random salt and the current cost.
+	 *
+	 * @param password
+	 *      The password. It isn't cleared.
+	 * @return
+	 *      The hash.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static PasswordHash create(@Nonnull final char[] password) {
+		final byte[] salt = new byte[SALT_LENGTH];
+		RANDOM.nextBytes(salt);
+		final int iterations = defaultIterations();
+		return new PasswordHash(iterations, salt, derive(password, salt, iterations));
+	}
+
+	/**
+	 * Decodes a hash previously {@link #encode() encoded}.
+	 *
+	 * @param encoded
+	 *      The encoded hash.
+	 * @return
+	 *      The hash.
+	 * @throws IllegalArgumentException
+	 *      If the string isn't an encoded hash.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static PasswordHash decode(@Nonnull final String encoded) {
+		final String[] parts = encoded.split("\\$");
+		Preconditions.checkArgument(parts.length == 4 && PREFIX.equals(parts[0]), "Not a password hash");
+		final int iterations = Integer.parseInt(parts[1]);
+		Preconditions.checkArgument(iterations > 0, "Invalid iterations %s", iterations);
+		return new PasswordHash(iterations, Base64.getDecoder().decode(parts[2]), Base64.getDecoder().decode(parts[3]));
+	}
+
+	/**
+	 * Spends as much time as verifying a password, without verifying anything.
+	 *
+	 * <p>Used when the user doesn't exist, so that the time a failed login
+	 * takes doesn't tell whether the user exists.</p>
+	 */
+	static void verifyNothing(@Nonnull final char[] password) {
+		DUMMY.verify(password);
+	}
+
+	@Nonnull
+	private static byte[] derive(@Nonnull final char[] password, @Nonnull final byte[] salt, final int iterations) {
+		final PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_LENGTH * 8);
+		try {
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+		} catch (final GeneralSecurityException e) {
+			// Every Java 8 platform provides it
+			throw Throwables.propagate(e);
+		} finally {
+			spec.clearPassword();
+		}
+	}
+
+	/**
+	 * Checks whether the given password matches this hash.
+	 *
+	 * <p>The comparison takes the same time wherever the hashes differ.</p>
+	 *
+	 * @param password
+	 *      The password. It isn't cleared.
+	 * @return
+	 *      If the password matches.
+	 *
+	 * @since 0.1
+	 */
+	public boolean verify(@Nonnull final char[] password) {
+		final byte[] candidate = derive(password, this.salt, this.iterations);
+		try {
+			return MessageDigest.isEqual(candidate, this.hash);
+		} finally {
+			Arrays.fill(candidate, (byte) 0);
+		}
+	}
+
+	/**
+	 * Gets whether the hash is weaker than the current cost.
+	 */
+	@Contract(pure = true)
+	public boolean needsRehash() {
+		return this.iterations < defaultIterations();
+	}
+
+	@Contract(pure = true)
+	public int iterations() {
+		return this.iterations;
+	}
+
+	/**
+	 * Encodes the hash as {@code pbkdf2-sha256$ITERATIONS$SALT$HASH}, where
+	 * salt and hash are in Base64.
+	 *
+	 * @return
+	 *      The encoded hash.
+	 *
+	 * @since 0.1
+	 */
+	@Contract(value = "-> !null", pure = true)
+	@Nonnull
+	public String encode() {
+		return PREFIX + "$" + this.iterations + "$" + Base64.getEncoder().encodeToString(this.salt)
+				+ "$" + Base64.getEncoder().encodeToString(this.hash);
+	}
+
+	@Contract(value = "-> !null", pure = true)
+	@Nonnull
+	@Override
+	public String toString() {
+		return PREFIX + "$" + this.iterations + "$...";
+	}
+}
@@ -0,0 +1,180 @@
+package net.thesilkminer.bibliotech.launcher.auth;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.jetbrains.annotations.Contract;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps track of the users who have logged in, so that their password
+ * doesn't have to be hashed again every time they are checked.
+ *
+ * <p>A successful login opens a session, identified by an opaque token made
+ * of a random identifier and a random secret. Checking a token costs a
+ * lookup of its identifier and a comparison of its secret which takes the
+ * same time wherever the secrets differ.</p>
+ *
+ * <p>At most {@code net.thesilkminer.bibliotech.shared.auth.session.maxSize}
+ * sessions (64 by default) are kept: the least recently used ones are closed
+ * first. Sessions unused for longer than
+ * {@code net.thesilkminer.bibliotech.shared.auth.session.timeout} minutes
+ * (30 by default) expire. All the sessions of a user are closed when their
+ * password changes.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public enum SessionManager {
+
+	INSTANCE;
+
+	private static final class Session {
+		private final String user;
+		private final byte[] secret;
+
+		private Session(@Nonnull final String user, @Nonnull final byte[] secret) {
+			this.user = user;
+			this.secret = secret;
+		}
+	}
+
+	private static final int ID_LENGTH = 9;
+	private static final int SECRET_LENGTH = 24;
+	private static final char SEPARATOR = '.';
+
+	private final SecureRandom random = new SecureRandom();
+	private final Cache<String, Session> sessions = CacheBuilder.newBuilder()
+			.maximumSize(Long.getLong("net.thesilkminer.bibliotech.shared.auth.session.maxSize", 64L))
+			.expireAfterAccess(Long.getLong("net.thesilkminer.bibliotech.shared.auth.session.timeout", 30L),
+					TimeUnit.MINUTES)
+			.build();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Opens a new session for the given user.
+	 *
+	 * <p>The user must have already been authenticated.</p>
+	 *
+	 * @param user
+	 *      The user name.
+	 * @return
+	 *      The token of the session.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public String open(@Nonnull final String user) {
+		final byte[] id = new byte[ID_LENGTH];
+		final byte[] secret = new byte[SECRET_LENGTH];
+		this.random.nextBytes(id);
+		this.random.nextBytes(secret);
+		final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		final String key = encoder.encodeToString(id);
+		this.sessions.put(key, new Session(user, secret));
+		return key + SEPARATOR + encoder.encodeToString(secret);
+	}
+
+	/**
+	 * Gets the user the given session belongs to.
+	 *
+	 * @param token
+	 *      The token of the session.
+	 * @return
+	 *      The user name, or {@code null} if the session doesn't exist, has
+	 *      expired or has been closed.
+	 *
+	 * @since 0.1
+	 */
+	@Nullable
+	public String user(@Nullable final String token) {
+		final Session session = this.find(token);
+		if (session == null) {
+			this.misses.increment();
+			return null;
+		}
+		this.hits.increment();
+		return session.user;
+	}
+
+	@Contract(value = "null -> false")
+	public boolean isValid(@Nullable final String token) {
+		return this.user(token) != null;
+	}
+
+	@Nullable
+	private Session find(@Nullable final String token) {
+		if (token == null) return null;
+		final int separator = token.indexOf(SEPARATOR);
+		if (separator == -1) return null;
+		final Session session = this.sessions.getIfPresent(token.substring(0, separator));
+		if (session == null) return null;
+		final byte[] secret;
+		try {
+			secret = Base64.getUrlDecoder().decode(token.substring(separator + 1));
+		} catch (final IllegalArgumentException e) {
+			return null;
+		}
+		return MessageDigest.isEqual(secret, session.secret)? session : null;
+	}
+
+	/**
+	 * Closes the given session.
+	 *
+	 * @param token
+	 *      The token of the session.
+	 * @return
+	 *      If the session was open.
+	 *
+	 * @since 0.1
+	 */
+	public boolean close(@Nullable final String token) {
+		final Session session = this.find(token);
+		if (session == null) return false;
+		// Another thread may be closing it as well
+		return this.sessions.asMap().values().remove(session);
+	}
+
+	/**
+	 * Closes all the sessions of the given user.
+	 *
+	 * @param user
+	 *      The user name.
+	 *
+	 * @since 0.1
+	 */
+	public void closeAll(@Nonnull final String user) {
+		this.sessions.asMap().values().removeIf(session -> session.user.equals(user));
+	}
+
+	@Contract(pure = true)
+	public long size() {
+		return this.sessions.size();
+	}
+
+	/**
+	 * Gets how many times a token has been found valid.
+	 */
+	@Contract(pure = true)
+	public long hits() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * Gets how many times a token has been found invalid.
+	 */
+	@Contract(pure = true)
+	public long misses() {
+		return this.misses.sum();
+	}
+}
@@ -0,0 +1,159 @@
+package net.thesilkminer.bibliotech.launcher.crash;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+
+import org.jetbrains.annotations.Contract;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Identifies crashes which have the same cause.
+ *
+ * <p>The fingerprint is computed from the class of every throwable in the
+ * cause chain and from the topmost frames of each of them. Messages and
+ * line numbers are ignored, as they often change between two occurrences
+ * of the same crash (e.g. they contain ids or they move with every build),
+ * and so are the numbers the virtual machine gives to generated classes,
+ * such as the ones implementing lambdas.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class CrashFingerprint {
+
+	private static final int MAX_CAUSES = 8;
+	private static final int FRAMES = 5;
+	private static final int MAX_SIGNATURE_LENGTH = 1000;
+
+	private final String id;
+	private final String signature;
+
+	private CrashFingerprint(@Nonnull final String id, @Nonnull final String signature) {
+		this.id = id;
+		this.signature = signature;
+	}
+
+	/**
+	 * Computes the fingerprint of the given throwable.
+	 *
+	 * @param throwable
+	 *      The throwable.
+	 * @return
+	 *      Its fingerprint.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static CrashFingerprint of(@Nonnull final Throwable throwable) {
+		final StringBuilder normalized = new StringBuilder();
+		final Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+		Throwable current = throwable;
+		for (int i = 0; i < MAX_CAUSES && current != null && seen.add(current); ++i) {
+			normalized.append(current.getClass().getName()).append('\n');
+			final StackTraceElement[] trace = current.getStackTrace();
+			for (int j = 0; j < Math.min(FRAMES, trace.length); ++j) {
+				normalized.append('\t').append(normalize(trace[j].getClassName()))
+						.append('.').append(trace[j].getMethodName()).append('\n');
+			}
+			current = current.getCause();
+		}
+		return new CrashFingerprint(hash(normalized.toString()), signature(throwable));
+	}
+
+	/**
+	 * Recreates a fingerprint which has previously been computed.
+	 */
+	@Nonnull
+	static CrashFingerprint of(@Nonnull final String id, @Nonnull final String signature) {
+		return new CrashFingerprint(id, signature);
+	}
+
+	@Nonnull
+	private static String normalize(@Nonnull final String className) {
+		// Hidden classes have an address appended, e.g. Foo$$Lambda$14/0x0000000800c02a00
+		final int slash = className.indexOf('/');
+		final String name = slash == -1? className : className.substring(0, slash);
+		final int lambda = name.indexOf("$$Lambda$");
+		return lambda == -1? name : name.substring(0, lambda + "$$Lambda".length());
+	}
+
+	@Nonnull
+	private static String hash(@Nonnull final String normalized) {
+		try {
+			final byte[] digest = MessageDigest.getInstance("SHA-1").digest(normalized.getBytes(StandardCharsets.UTF_8));
+			final StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (final byte b : digest) hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return hex.toString();
+		} catch (final NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-1
+			throw Throwables.propagate(e);
+		}
+	}
+
+	@Nonnull
+	private static String signature(@Nonnull final Throwable throwable) {
+		final StringBuilder signature = new StringBuilder(throwable.getClass().getName());
+		final StackTraceElement[] trace = throwable.getStackTrace();
+		if (trace.length > 0) signature.append(" at ").append(trace[0].getClassName()).append('.')
+				.append(trace[0].getMethodName());
+		final Throwable root = Throwables.getRootCause(throwable);
+		if (root != throwable) {
+			signature.append(", caused by ").append(root.getClass().getName());
+			final StackTraceElement[] rootTrace = root.getStackTrace();
+			if (rootTrace.length > 0) signature.append(" at ").append(rootTrace[0].getClassName()).append('.')
+					.append(rootTrace[0].getMethodName());
+		}
+		return signature.length() <= MAX_SIGNATURE_LENGTH? signature.toString()
+				: signature.substring(0, MAX_SIGNATURE_LENGTH);
+	}
+
+	/**
+	 * Gets the identifier of the fingerprint, as an hexadecimal string.
+	 */
+	@Contract(pure = true)
+	@Nonnull
+	public String id() {
+		return this.id;
+	}
+
+	/**
+	 * Gets a human readable summary of the crash, made of the outermost
+	 * throwable and of the root cause, together with where they were thrown.
+	 */
+	@Contract(pure = true)
+	@Nonnull
+	public String signature() {
+		return this.signature;
+	}
+
+	@Contract(value = "null -> false", pure = true)
+	@Override
+	public boolean equals(final Object o) {
+		return this == o || o instanceof CrashFingerprint && this.id.equals(((CrashFingerprint) o).id);
+	}
+
+	@Contract(pure = true)
+	@Override
+	public int hashCode() {
+		return this.id.hashCode();
+	}
+
+	@Contract(value = "-> !null", pure = true)
+	@Nonnull
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("id", this.id)
+				.add("signature", this.signature)
+				.toString();
+	}
+}
@@ -0,0 +1,308 @@
+package net.thesilkminer.bibliotech.launcher.crash;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import net.thesilkminer.bibliotech.launcher.os.Os;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps track of all the crashes which happened, grouped by their
+ * {@link CrashFingerprint fingerprint}.
+ *
+ * <p>For every fingerprint the index stores when it has been seen first and
+ * last, how many times it has been seen and the name of the report which has
+ * been saved the first time. Only that report is written to disk: when the
+ * same crash happens again, only the counters are updated, so that a crash
+ * loop doesn't fill the {@code crash-reports} directory.</p>
+ *
+ * <p>The index is a small binary file in the {@code crash-reports}
+ * directory. It is always replaced atomically, while holding a lock on a
+ * separate file so that two instances of the software crashing together
+ * don't lose an update.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class CrashIndex {
+
+	/**
+	 * Summary of all the crashes with the same fingerprint.
+	 */
+	public static final class Entry {
+		private final CrashFingerprint fingerprint;
+		private final long first;
+		private final long last;
+		private final int count;
+		private final String report;
+
+		private Entry(@Nonnull final CrashFingerprint fingerprint, final long first, final long last, final int count,
+		              @Nonnull final String report) {
+			this.fingerprint = fingerprint;
+			this.first = first;
+			this.last = last;
+			this.count = count;
+			this.report = report;
+		}
+
+		@Contract(pure = true)
+		@Nonnull
+		public CrashFingerprint fingerprint() {
+			return this.fingerprint;
+		}
+
+		@Contract(pure = true)
+		public long first() {
+			return this.first;
+		}
+
+		@Contract(pure = true)
+		public long last() {
+			return this.last;
+		}
+
+		@Contract(pure = true)
+		public int count() {
+			return this.count;
+		}
+
+		/**
+		 * Gets the name of the report saved for these crashes, in the same
+		 * directory as the index.
+		 */
+		@Contract(pure = true)
+		@Nonnull
+		public String report() {
+			return this.report;
+		}
+
+		@Contract(value = "-> !null", pure = true)
+		@Nonnull
+		@Override
+		public String toString() {
+			return Objects.toStringHelper(this)
+					.add("fingerprint", this.fingerprint)
+					.add("first", this.first)
+					.add("last", this.last)
+					.add("count", this.count)
+					.add("report", this.report)
+					.toString();
+		}
+	}
+
+	/**
+	 * Writes the report of a crash which has never been seen before.
+	 */
+	@FunctionalInterface
+	public interface ReportWriter {
+		/**
+		 * Writes the report.
+		 *
+		 * @return
+		 *      The file the report has been written to.
+		 * @throws IOException
+		 *      If the report can't be written.
+		 */
+		@Nonnull
+		File write() throws IOException;
+	}
+
+	public static final String FILE_NAME = "crashes.idx";
+	private static final int MAGIC = 0x42544349; // BTCI
+	private static final int VERSION = 1;
+
+	private final File directory;
+
+	public CrashIndex(@Nonnull final File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Gets the index of the crash reports directory of the software.
+	 *
+	 * @return
+	 *      The index of the crash reports directory.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static CrashIndex inCrashDirectory() {
+		return new CrashIndex(new File(Os.getCurrentOs().workingDir(), "crash-reports"));
+	}
+
+	@Contract(pure = true)
+	@Nonnull
+	public File directory() {
+		return this.directory;
+	}
+
+	/**
+	 * Records a new occurrence of a crash.
+	 *
+	 * <p>The report is written through the given writer only if the crash
+	 * has never been seen before, or if its report has been deleted in the
+	 * meantime.</p>
+	 *
+	 * @param fingerprint
+	 *      The fingerprint of the crash.
+	 * @param time
+	 *      When the crash happened.
+	 * @param writer
+	 *      Used to write the report, if needed.
+	 * @return
+	 *      The updated entry of the crash.
+	 * @throws IOException
+	 *      If the report or the index can't be written.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public synchronized Entry record(@Nonnull final CrashFingerprint fingerprint, final long time,
+	                                 @Nonnull final ReportWriter writer) throws IOException {
+		if (!this.directory.exists() && !this.directory.mkdirs()) throw new IOException("Unable to create " + this.directory);
+		try (final RandomAccessFile lockFile = new RandomAccessFile(new File(this.directory, FILE_NAME + ".lock"), "rw")) {
+			final FileLock lock = lockFile.getChannel().lock();
+			try {
+				return this.record$locked(fingerprint, time, writer);
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	@Nonnull
+	private Entry record$locked(@Nonnull final CrashFingerprint fingerprint, final long time,
+	                            @Nonnull final ReportWriter writer) throws IOException {
+		List<Entry> entries;
+		try {
+			entries = Lists.newArrayList(this.entries());
+		} catch (final IOException e) {
+			// A corrupted index is worth less than the crash being saved
+			entries = Lists.newArrayList();
+		}
+		int position = -1;
+		for (int i = 0; i < entries.size() && position == -1; ++i) {
+			if (entries.get(i).fingerprint().equals(fingerprint)) position = i;
+		}
+		final Entry previous = position == -1? null : entries.get(position);
+		final String report = previous != null && new File(this.directory, previous.report()).exists()?
+				previous.report() : writer.write().getName();
+		final Entry entry = previous == null?
+				new Entry(fingerprint, time, time, 1, report) :
+				new Entry(previous.fingerprint(), Math.min(previous.first(), time), Math.max(previous.last(), time),
+						previous.count() + 1, report);
+		if (position == -1) entries.add(entry); else entries.set(position, entry);
+		this.write(entries);
+		return entry;
+	}
+
+	/**
+	 * Gets all the entries of the index.
+	 *
+	 * @return
+	 *      The entries, in the order their crashes have been seen first.
+	 * @throws IOException
+	 *      If the index can't be read or it is corrupted.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public List<Entry> entries() throws IOException {
+		final File file = new File(this.directory, FILE_NAME);
+		if (!file.exists()) return ImmutableList.of();
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) throw new IOException(file + " is not a crash index");
+			final int version = in.readUnsignedByte();
+			if (version != VERSION) throw new IOException("Unsupported crash index version " + version);
+			final int count = in.readInt();
+			final List<Entry> entries = Lists.newArrayListWithCapacity(count);
+			for (int i = 0; i < count; ++i) {
+				final CrashFingerprint fingerprint = CrashFingerprint.of(in.readUTF(), in.readUTF());
+				entries.add(new Entry(fingerprint, in.readLong(), in.readLong(), in.readInt(), in.readUTF()));
+			}
+			return ImmutableList.copyOf(entries);
+		}
+	}
+
+	/**
+	 * Gets the crashes which happened most often.
+	 *
+	 * @param limit
+	 *      The maximum amount of entries to return.
+	 * @return
+	 *      The entries, the most frequent first. Entries with the same count
+	 *      are sorted from the most recent.
+	 * @throws IOException
+	 *      If the index can't be read or it is corrupted.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public List<Entry> top(final int limit) throws IOException {
+		final List<Entry> entries = Lists.newArrayList(this.entries());
+		entries.sort((a, b) -> a.count() != b.count()? Integer.compare(b.count(), a.count())
+				: Long.compare(b.last(), a.last()));
+		return ImmutableList.copyOf(entries.subList(0, Math.min(limit, entries.size())));
+	}
+
+	/**
+	 * Gets the entry of the given fingerprint.
+	 *
+	 * @return
+	 *      The entry, or {@code null} if the crash has never been recorded.
+	 * @throws IOException
+	 *      If the index can't be read or it is corrupted.
+	 */
+	@Nullable
+	public Entry find(@Nonnull final CrashFingerprint fingerprint) throws IOException {
+		for (final Entry entry : this.entries()) {
+			if (entry.fingerprint().equals(fingerprint)) return entry;
+		}
+		return null;
+	}
+
+	private void write(@Nonnull final List<Entry> entries) throws IOException {
+		final File file = new File(this.directory, FILE_NAME);
+		final File partial = new File(this.directory, FILE_NAME + ".part");
+		try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partial)))) {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeInt(entries.size());
+			for (final Entry entry : entries) {
+				out.writeUTF(entry.fingerprint().id());
+				out.writeUTF(entry.fingerprint().signature());
+				out.writeLong(entry.first());
+				out.writeLong(entry.last());
+				out.writeInt(entry.count());
+				out.writeUTF(entry.report());
+			}
+		}
+		try {
+			Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			if (!partial.delete()) partial.deleteOnExit();
+			throw e;
+		}
+	}
+}
@@ -1,13 +1,28 @@
 package net.thesilkminer.bibliotech.launcher.crash;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 
 import net.thesilkminer.bibliotech.launcher.locale.StatCollector;
 import net.thesilkminer.bibliotech.launcher.os.Os;
 
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
-
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.GraphicsEnvironment;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
@@ -15,6 +30,8 @@ import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Represents a crash report, which is constructed every time an error is thrown.
@@ -92,6 +109,7 @@ public class CrashReport {
 
 		@NotNull
 		public static PlatformType test() {
+			if (GraphicsEnvironment.isHeadless()) return PlatformType.SERVER;
 			try {
 				Class.forName("net.thesilkminer.bibliotech.launcher.ui.LauncherFrame");
 				return PlatformType.CLIENT;
@@ -101,6 +119,52 @@ public class CrashReport {
 		}
 	}
 
+	/*
+	 * Holds the text of a category until it can be written: in a temporary
+	 * file when possible, so that a huge category is never held in memory,
+	 * in memory otherwise, e.g. when no temporary file can be created.
+	 */
+	private static final class Spool {
+		private final File file;
+		private final StringWriter memory;
+
+		private Spool(@Nullable final File file) {
+			this.file = file;
+			this.memory = file == null? new StringWriter() : null;
+		}
+
+		@NotNull
+		private static Spool create() {
+			try {
+				return new Spool(File.createTempFile("bibliotech-crash", ".part"));
+			} catch (final IOException | SecurityException e) {
+				return new Spool(null);
+			}
+		}
+
+		@NotNull
+		private Writer writer() throws IOException {
+			if (this.file == null) return this.memory;
+			return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.file), StandardCharsets.UTF_8));
+		}
+
+		private void copyTo(@NotNull final Writer out) throws IOException {
+			if (this.file == null) {
+				out.write(this.memory.toString());
+				return;
+			}
+			try (final Reader in = new InputStreamReader(new FileInputStream(this.file), StandardCharsets.UTF_8)) {
+				final char[] buffer = new char[8192];
+				for (int read = in.read(buffer); read != -1; read = in.read(buffer)) out.write(buffer, 0, read);
+			}
+		}
+
+		private void delete() {
+			// A category which has timed out may still be writing to it
+			if (this.file != null && this.file.exists() && !this.file.delete()) this.file.deleteOnExit();
+		}
+	}
+
 	private static final String SC = "Suppressed: ";
 	private static final String CC = "Caused by: ";
 	private static final List<String> WITTY_COMMENTS = ImmutableList.of(
@@ -156,12 +220,15 @@ public class CrashReport {
 	private String version;
 	private Os os;
 	private String java;
-	private String javaVm;
-	private String memory;
-	private String flags;
+	private RuntimeDiagnostics diagnostics;
 	private SoftwareStatus softwareStatus;
 	private PlatformType platformType;
 	private String languageCode;
+	private File file;
+	private File representativeFile;
+	private CrashFingerprint fingerprint;
+	private int occurrences;
+	private File heapDump;
 
 	public CrashReport(final Throwable t, final Thread thread) {
 		this.generationTime = new Date(System.currentTimeMillis());
@@ -173,9 +240,8 @@ public class CrashReport {
 		this.java = System.getProperty("java.version")
 				+ ", "
 				+ System.getProperty("java.vendor");
-		this.javaVm = "~~TODO~~"; //TODO
-		this.memory = "~~TODO~~"; //TODO
-		this.flags = "~~TODO~~"; //TODO
+		// Only a snapshot is taken here: the text is built when the report is written
+		this.diagnostics = RuntimeDiagnostics.capture();
 		this.softwareStatus = SoftwareStatus.test();
 		this.platformType = PlatformType.test();
 		this.languageCode = this.platformType.equals(PlatformType.SERVER)?
@@ -213,15 +279,19 @@ public class CrashReport {
 	}
 
 	public String javaVm() {
-		return this.javaVm;
+		return this.diagnostics.javaVm();
 	}
 
 	public String memory() {
-		return this.memory;
+		return this.diagnostics.memory();
 	}
 
 	public String flags() {
-		return this.flags;
+		return this.diagnostics.flags();
+	}
+
+	RuntimeDiagnostics diagnostics() {
+		return this.diagnostics;
 	}
 
 	public SoftwareStatus softwareStatus() {
@@ -236,6 +306,78 @@ public class CrashReport {
 		return this.languageCode;
 	}
 
+	/**
+	 * Gets the file the report has been saved to.
+	 *
+	 * @return
+	 *      The file, or {@code null} if the report hasn't been saved, e.g.
+	 *      because the same crash has already been saved before.
+	 */
+	@Nullable
+	public File file() {
+		return this.file;
+	}
+
+	void file(@NotNull final File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Gets the file of the report saved for this crash: either the one of
+	 * this very report, or the one saved when the same crash happened first.
+	 *
+	 * @return
+	 *      The file, or {@code null} if no report has been saved.
+	 */
+	@Nullable
+	public File representativeFile() {
+		return this.representativeFile;
+	}
+
+	void representativeFile(@NotNull final File representativeFile) {
+		this.representativeFile = representativeFile;
+	}
+
+	/**
+	 * Gets the fingerprint of the crash, which identifies all the crashes
+	 * with the same cause.
+	 */
+	@NotNull
+	public CrashFingerprint fingerprint() {
+		if (this.fingerprint == null) this.fingerprint = CrashFingerprint.of(this.throwable);
+		return this.fingerprint;
+	}
+
+	/**
+	 * Gets how many times this crash has happened, including this one.
+	 *
+	 * @return
+	 *      The amount of occurrences, or 0 if the report hasn't been saved.
+	 */
+	public int occurrences() {
+		return this.occurrences;
+	}
+
+	void occurrences(final int occurrences) {
+		this.occurrences = occurrences;
+	}
+
+	/**
+	 * Gets the compressed heap dump taken for this crash.
+	 *
+	 * @return
+	 *      The dump, or {@code null} if the heap hasn't been dumped. The
+	 *      file may not exist until the dump has been compressed.
+	 */
+	@Nullable
+	public File heapDump() {
+		return this.heapDump;
+	}
+
+	void heapDump(@Nullable final File heapDump) {
+		this.heapDump = heapDump;
+	}
+
 	private String generateWittyComment() {
 		try {
 			return "// " + WITTY_COMMENTS.get(new Random(System.nanoTime()).nextInt(WITTY_COMMENTS.size() - 1)) + "\n";
@@ -316,8 +458,24 @@ public class CrashReport {
 			this.printEnclosedStackTrace(throwable.getCause(), build, trace, CC, prefix, seen);
 	}
 
-	@Override
-	public String toString() {
+	/**
+	 * Renders the report into the given writer.
+	 *
+	 * <p>The report is written piece by piece, as soon as every piece is
+	 * available, so that it is never held in memory as a whole: this
+	 * matters for reports with huge thread dumps, which are usually
+	 * generated when memory is already low. The writer is flushed after
+	 * every category, so that the report is useful even if writing it
+	 * fails midway.</p>
+	 *
+	 * @param out
+	 *      The writer where the report should be written.
+	 * @throws IOException
+	 *      If the writer throws one.
+	 *
+	 * @since 0.1
+	 */
+	public void writeTo(@NotNull final Writer out) throws IOException {
 		final StringBuilder build = new StringBuilder(100);
 		build.append("---- Biblio-Tech Crash Report ----\n");
 		build.append(this.generateWittyComment());
@@ -325,16 +483,65 @@ public class CrashReport {
 		build.append("Time: ").append(this.generationTime()).append("\n");
 		build.append("Description: ").append(this.description()).append("\n");
 		build.append("\n");
+		out.write(build.toString());
+		build.setLength(0);
 		this.printStackTrace(this.throwable, build);
 		build.append("\n");
 		build.append("A detailed walk-through of the error, its code path and all known details is as follows:\n");
 		build.append("----------------------------------------------------------------------------------------\n");
 		build.append("\n");
-		CATEGORIES.stream().forEach(category -> {
-			build.append("-- ").append(category.name()).append(" --\n");
-			category.provideInfo(this, build);
-			build.append("\n");
-		});
-		return build.toString();
+		out.write(build.toString());
+		out.flush();
+		this.writeCategories(out);
+	}
+
+	@Override
+	public String toString() {
+		final StringWriter writer = new StringWriter();
+		try {
+			this.writeTo(writer);
+		} catch (final IOException e) {
+			throw Throwables.propagate(e);
+		}
+		return writer.toString();
+	}
+
+	/*
+	 * Categories are generated concurrently, so that a slow or stuck one
+	 * neither delays nor prevents the others. Every category writes into its
+	 * own spool, which is then copied into the report, in order, and deleted
+	 * right away.
+	 */
+	private void writeCategories(final Writer out) throws IOException {
+		final ExecutorService executor = CrashTasks.newExecutor("Crash Report Category", CATEGORIES.size());
+		final List<Spool> spools = Lists.newArrayListWithCapacity(CATEGORIES.size());
+		try {
+			final long start = System.nanoTime();
+			final List<Future<?>> parts = Lists.newArrayListWithCapacity(CATEGORIES.size());
+			for (final ICrashReportCategory category : CATEGORIES) {
+				final Spool spool = Spool.create();
+				spools.add(spool);
+				parts.add(CrashTasks.submit(executor, () -> {
+					try (final Writer writer = spool.writer()) {
+						category.provideInfo(this, writer);
+					}
+					return null;
+				}));
+			}
+			for (int i = 0; i < CATEGORIES.size(); ++i) {
+				final ICrashReportCategory category = CATEGORIES.get(i);
+				out.write("-- " + category.name() + " --\n");
+				final String marker = CrashTasks.complete(parts.get(i), start, category.timeout(),
+						"[unable to generate this category]\n", "");
+				if (marker == null) spools.get(i).copyTo(out);
+				else out.write(marker);
+				out.write("\n");
+				out.flush();
+				spools.get(i).delete();
+			}
+		} finally {
+			CrashTasks.shutdown(executor);
+			spools.forEach(Spool::delete);
+		}
 	}
 }
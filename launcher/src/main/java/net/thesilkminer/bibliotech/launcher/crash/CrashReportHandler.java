@@ -27,7 +27,9 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
@@ -96,7 +98,9 @@ public enum CrashReportHandler {
 			constraints.anchor = GridBagConstraints.PAGE_START;
 			this.add(title, constraints);
 
-			final JLabel savedNotice = new JLabel("This crash has been saved to crash-reports directory");
+			final JLabel savedNotice = new JLabel(report.occurrences() > 1?
+					"This crash has already happened " + report.occurrences() + " times: see crash-reports directory" :
+					"This crash has been saved to crash-reports directory");
 			savedNotice.setVerticalAlignment(SwingConstants.CENTER);
 			savedNotice.setHorizontalAlignment(SwingConstants.CENTER);
 			savedNotice.setForeground(Color.YELLOW);
@@ -106,16 +110,7 @@ public enum CrashReportHandler {
 			savedNotice.addMouseListener(new MouseAdapter() {
 				@Override
 				public void mouseClicked(final MouseEvent e) {
-					if (!Desktop.isDesktopSupported()) return;
-					try {
-						Desktop.getDesktop().open(new File(Os.getCurrentOs().workingDir(), "crash-reports"));
-						CrashFrame.this.setExtendedState(CrashFrame.this.getExtendedState() | JFrame.ICONIFIED);
-					} catch (final IOException exception) {
-						JOptionPane.showMessageDialog(CrashFrame.this,
-								"Error occurred while attempting to open directory",
-								"Directory opening failed",
-								JOptionPane.WARNING_MESSAGE);
-					}
+					CrashFrame.this.openCrashDirectory();
 				}
 			});
 			constraints.gridx = 0;
@@ -126,19 +121,42 @@ public enum CrashReportHandler {
 			constraints.fill = GridBagConstraints.HORIZONTAL;
 			this.add(savedNotice, constraints);
 
+			if (report.heapDump() != null) {
+				final JLabel dumpNotice = new JLabel("A heap dump has been saved as " + report.heapDump().getName()
+						+ ": attach it to the bug report");
+				dumpNotice.setVerticalAlignment(SwingConstants.CENTER);
+				dumpNotice.setHorizontalAlignment(SwingConstants.CENTER);
+				dumpNotice.setForeground(Color.YELLOW);
+				dumpNotice.setToolTipText(report.heapDump().getAbsolutePath());
+				dumpNotice.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+				dumpNotice.addMouseListener(new MouseAdapter() {
+					@Override
+					public void mouseClicked(final MouseEvent e) {
+						CrashFrame.this.openCrashDirectory();
+					}
+				});
+				constraints.gridx = 0;
+				constraints.gridy = 2;
+				constraints.weightx = 0;
+				constraints.weighty = 0;
+				constraints.ipady = 0;
+				constraints.fill = GridBagConstraints.HORIZONTAL;
+				this.add(dumpNotice, constraints);
+			}
+
 			final JTextArea crashReport = new JTextArea();
 			crashReport.setEditable(false);
 			crashReport.setBorder(new BevelBorder(BevelBorder.RAISED));
-			crashReport.setText(report.toString());
 			crashReport.setBackground(new Color(40, 40, 40).brighter());
-			crashReport.setCaretPosition(0);
 
 			final JScrollPane scrollable = new JScrollPane(crashReport,
 					ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS,
 					ScrollPaneConstants.HORIZONTAL_SCROLLBAR_ALWAYS);
+			this.showReport(report, crashReport, scrollable);
+			crashReport.setCaretPosition(0);
 			scrollable.setMinimumSize(new Dimension(800, 1000));
 			constraints.gridx = 0;
-			constraints.gridy = 2;
+			constraints.gridy = 3;
 			constraints.weightx = 10;
 			constraints.weighty = 100;
 			constraints.ipady = 0;
@@ -146,6 +164,34 @@ public enum CrashReportHandler {
 			constraints.anchor = GridBagConstraints.PAGE_END;
 			this.add(scrollable, constraints);
 		}
+
+		private void openCrashDirectory() {
+			if (!Desktop.isDesktopSupported()) return;
+			try {
+				Desktop.getDesktop().open(new File(Os.getCurrentOs().workingDir(), "crash-reports"));
+				this.setExtendedState(this.getExtendedState() | JFrame.ICONIFIED);
+			} catch (final IOException exception) {
+				JOptionPane.showMessageDialog(this,
+						"Error occurred while attempting to open directory",
+						"Directory opening failed",
+						JOptionPane.WARNING_MESSAGE);
+			}
+		}
+
+		private void showReport(final CrashReport report, final JTextArea area, final JScrollPane scrollable) {
+			// Read back the saved report one page at a time instead of rendering it again
+			// Repeated crashes aren't saved again, so their first report is shown instead
+			final File file = report.representativeFile();
+			if (file != null) {
+				try {
+					scrollable.getVerticalScrollBar().addAdjustmentListener(new CrashReportPager(file, area));
+					return;
+				} catch (final IOException ignored) {
+					// The file isn't readable anymore: fall back to rendering the report
+				}
+			}
+			area.setText(report.toString());
+		}
 	}
 
 	static final class CrashInfoProviderRegister implements Comparable<CrashInfoProviderRegister> {
@@ -197,15 +243,27 @@ public enum CrashReportHandler {
 
 	private final Set<CrashInfoProviderRegister> providers = Sets.newTreeSet();
 
+	/**
+	 * Prepares what is needed to report a crash even when the virtual
+	 * machine runs out of memory.
+	 *
+	 * <p>This should be called as early as possible.</p>
+	 *
+	 * @since 0.1
+	 */
+	public final void prepare() {
+		EmergencyReport.prepare();
+	}
+
 	public final void constructReport(final Thread thread, final Throwable t) {
+		// Nothing else is guaranteed to work without memory: write the minimal report first
+		if (EmergencyReport.isOutOfMemory(t)) EmergencyReport.write(thread, t);
 		try {
 			this.constructReport(this.populateReport(thread, t));
 		} catch (final Throwable throwable) {
+			if (EmergencyReport.isOutOfMemory(throwable)) EmergencyReport.write(thread, t);
 			// Let's exit otherwise we get stuck in a loop
-			JOptionPane.showMessageDialog(null,
-					"Error while creating crash report",
-					"Unexpected exception",
-					JOptionPane.ERROR_MESSAGE);
+			this.showError("Error while creating crash report", "Unexpected exception");
 			// Output to file (through logger) so that it keeps track of the exception
 			// We will never know what caused the crash otherwise
 			this.outputThrowable(t);
@@ -214,6 +272,23 @@ public enum CrashReportHandler {
 	}
 
 	public final void constructReport(final CrashReport report) {
+		if (Launcher.headless()) {
+			// Nobody would see the frame: the report has already been saved, so show it on the console too
+			try {
+				if (report.file() != null) {
+					Files.copy(report.file().toPath(), System.err);
+				} else {
+					final Writer writer = new OutputStreamWriter(System.err);
+					report.writeTo(writer);
+					writer.flush();
+				}
+			} catch (final IOException e) {
+				this.outputThrowable(report.throwable);
+			}
+			System.err.flush();
+			System.exit(-1);
+			return;
+		}
 		try {
 			final JFrame frame = new CrashFrame(report);
 			frame.pack();
@@ -224,11 +299,9 @@ public enum CrashReportHandler {
 			frame.setMaximizedBounds(GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds());
 			frame.setVisible(true);
 		} catch (final Throwable t) {
+			if (EmergencyReport.isOutOfMemory(t)) EmergencyReport.write(report.thread(), report.throwable);
 			// Let's exit otherwise we get stuck in a loop
-			JOptionPane.showMessageDialog(null,
-					"Error while creating crash report",
-					"Unexpected exception",
-					JOptionPane.ERROR_MESSAGE);
+			this.showError("Error while creating crash report", "Unexpected exception");
 			// Output to file (through logger) so that it keeps track of the exception
 			// We will never know what caused the crash otherwise
 			this.outputThrowable(t);
@@ -236,9 +309,15 @@ public enum CrashReportHandler {
 		}
 	}
 
+	private void showError(final String message, final String title) {
+		if (Launcher.headless()) return;
+		JOptionPane.showMessageDialog(null, message, title, JOptionPane.ERROR_MESSAGE);
+	}
+
 	private CrashReport populateReport(final Thread t, final Throwable thr) {
 		final CrashReport report = new CrashReport(thr, t);
 		this.handleReportedException(report, thr);
+		this.populateReport$heapDump(report);
 		try {
 			this.saveReport(report);
 		} catch (final IOException e) {
@@ -250,11 +329,37 @@ public enum CrashReportHandler {
 		return report;
 	}
 
-	@SuppressWarnings("ResultOfMethodCallIgnored")
-	private boolean saveReport(final CrashReport report) throws IOException {
-		final File btDir = Os.getCurrentOs().workingDir();
-		final File crashDirectory = new File(btDir, "crash-reports");
-		if (!btDir.exists() || !crashDirectory.exists()) crashDirectory.mkdirs();
+	/*
+	 * Dumping the heap is slow and dumps are huge: only the first occurrence of every crash gets one.
+	 */
+	private void populateReport$heapDump(final CrashReport report) {
+		if (!HeapDumper.shouldDump(report.throwable)) return;
+		final CrashIndex index = CrashIndex.inCrashDirectory();
+		try {
+			if (index.find(report.fingerprint()) != null) return;
+		} catch (final IOException ignored) {
+			// A corrupted index is rewritten when saving the report: dump anyway
+		}
+		report.heapDump(HeapDumper.dump(index.directory(), report.generationTime().getTime()));
+	}
+
+	/*
+	 * Only the first report of every crash is saved: repeats are counted in the crash index.
+	 */
+	private void saveReport(final CrashReport report) throws IOException {
+		final CrashIndex index = CrashIndex.inCrashDirectory();
+		final File[] written = new File[1];
+		final CrashIndex.Entry entry = index.record(report.fingerprint(), report.generationTime().getTime(), () -> {
+			written[0] = this.saveReport$write(report, index.directory());
+			return written[0];
+		});
+		report.occurrences(entry.count());
+		if (written[0] != null) report.file(written[0]);
+		report.representativeFile(new File(index.directory(), entry.report()));
+	}
+
+	@Nonnull
+	private File saveReport$write(final CrashReport report, final File crashDirectory) throws IOException {
 		final Calendar calendar = new GregorianCalendar();
 		final File crashFile = new File(crashDirectory, String.format(
 				"crash-%s-%02d.%02d.%02d-%d.txt",
@@ -264,10 +369,10 @@ public enum CrashReportHandler {
 				calendar.get(Calendar.YEAR),
 				System.currentTimeMillis()
 		));
-		final PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(crashFile)));
-		writer.print(report);
-		writer.close();
-		return crashFile.exists();
+		try (final Writer writer = new BufferedWriter(new FileWriter(crashFile))) {
+			report.writeTo(writer);
+		}
+		return crashFile;
 	}
 
 	private void handleReportedException(final CrashReport report, final Throwable thr) {
@@ -281,10 +386,7 @@ public enum CrashReportHandler {
 							providerPair.getRight());
 				} catch (final Throwable throwable) {
 					// Let's exit otherwise we get stuck in a loop
-					JOptionPane.showMessageDialog(null,
-							"Error while creating crash report",
-							"Unexpected exception",
-							JOptionPane.ERROR_MESSAGE);
+					this.showError("Error while creating crash report", "Unexpected exception");
 					// Output to file (through logger) so that it keeps track of the exception
 					// We will never know what caused the crash otherwise
 					this.outputThrowable(throwable);
@@ -342,10 +444,7 @@ public enum CrashReportHandler {
 		log.warning("********************************************************************************");
 		log.warning("*                                                                              *");
 		log.warning("********************************************************************************");
-		JOptionPane.showMessageDialog(null,
-				"Please read the console output",
-				t.getMessage().concat(" - Unexpected exception"),
-				JOptionPane.ERROR_MESSAGE);
+		this.showError("Please read the console output", t.getMessage() + " - Unexpected exception");
 
 		new SwingWorker<Void, Void>() {
 			@Contract("-> null")
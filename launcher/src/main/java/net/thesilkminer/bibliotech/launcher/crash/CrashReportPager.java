@@ -0,0 +1,75 @@
+package net.thesilkminer.bibliotech.launcher.crash;
+
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import javax.annotation.Nonnull;
+import javax.swing.JScrollBar;
+import javax.swing.JTextArea;
+
+/**
+ * Shows a saved crash report in a text area, one page at a time.
+ *
+ * <p>Only the first page is read at first: the following ones are appended
+ * whenever the scroll bar the pager listens to gets close to the end of the
+ * text. This way a huge report is never loaded unless someone actually
+ * scrolls through it.</p>
+ *
+ * <p>This class must only be used from the event dispatcher thread.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+final class CrashReportPager implements AdjustmentListener {
+
+	private static final int PAGE_SIZE = 64 * 1024;
+
+	private final JTextArea area;
+	private Reader reader;
+
+	CrashReportPager(@Nonnull final File file, @Nonnull final JTextArea area) throws IOException {
+		this.area = area;
+		this.reader = new BufferedReader(new FileReader(file));
+		this.nextPage();
+	}
+
+	@Override
+	public void adjustmentValueChanged(final AdjustmentEvent e) {
+		if (this.reader == null) return;
+		final JScrollBar bar = (JScrollBar) e.getAdjustable();
+		// Load the next page while there is still a whole screen to scroll through
+		if (bar.getValue() + 2 * bar.getVisibleAmount() >= bar.getMaximum()) this.nextPage();
+	}
+
+	private void nextPage() {
+		final char[] page = new char[PAGE_SIZE];
+		int read = 0;
+		try {
+			for (int count = 0; read < PAGE_SIZE && count != -1; read += Math.max(count, 0)) {
+				count = this.reader.read(page, read, PAGE_SIZE - read);
+			}
+		} catch (final IOException e) {
+			this.area.append(new String(page, 0, read));
+			this.area.append("\n[unable to read the rest of the report: " + e.getMessage() + "]\n");
+			this.close();
+			return;
+		}
+		if (read > 0) this.area.append(new String(page, 0, read));
+		if (read < PAGE_SIZE) this.close();
+	}
+
+	private void close() {
+		try {
+			this.reader.close();
+		} catch (final IOException ignored) {
+			// Nothing else will be read anyway
+		}
+		this.reader = null;
+	}
+}
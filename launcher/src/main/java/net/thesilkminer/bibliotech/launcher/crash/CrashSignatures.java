@@ -0,0 +1,63 @@
+package net.thesilkminer.bibliotech.launcher.crash;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Command line tool which lists the crashes which happened most often,
+ * reading only the {@link CrashIndex crash index}. Usage:
+ *
+ * <pre>
+ * CrashSignatures [--top N] [DIRECTORY]
+ * </pre>
+ *
+ * <p>The directory defaults to the {@code crash-reports} directory of the
+ * software, while {@code N} defaults to 10.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class CrashSignatures {
+
+	private CrashSignatures() {}
+
+	public static void main(@Nonnull final String... args) throws IOException {
+		int top = 10;
+		File directory = null;
+		try {
+			for (int i = 0; i < args.length; ++i) {
+				if ("--top".equals(args[i])) {
+					top = Integer.parseInt(args[++i]);
+				} else if (directory == null) {
+					directory = new File(args[i]);
+				} else {
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+		} catch (final ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+			System.err.println("Usage: CrashSignatures [--top N] [DIRECTORY]");
+			System.exit(1);
+			return;
+		}
+
+		final CrashIndex index = directory == null? CrashIndex.inCrashDirectory() : new CrashIndex(directory);
+		final List<CrashIndex.Entry> entries = index.top(top);
+		if (entries.isEmpty()) {
+			System.out.println("No crashes recorded in " + index.directory());
+			return;
+		}
+		final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		for (final CrashIndex.Entry entry : entries) {
+			System.out.println(String.format("%6d  %s - %s  %s", entry.count(), format.format(new Date(entry.first())),
+					format.format(new Date(entry.last())), entry.fingerprint().id()));
+			System.out.println("        " + entry.fingerprint().signature());
+			System.out.println("        " + entry.report());
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package net.thesilkminer.bibliotech.launcher.crash;
+
+import com.google.common.util.concurrent.Futures;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Runs the parts of a crash report concurrently, each one with its own deadline.
+ *
+ * <p>A part which doesn't complete in time (e.g. because it is waiting for
+ * a stuck thread) is replaced by a marker, so that the report always gets
+ * written. Threads are daemons, so a part which never completes does not
+ * prevent the software from exiting.</p>
+ *
+ * <p>Every part gets its own thread, so that all of them start running as
+ * soon as they are submitted: a part queued behind a slow one would lose
+ * part of its deadline while waiting.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+final class CrashTasks {
+
+	private CrashTasks() {}
+
+	/**
+	 * Gets the time, in milliseconds, a part of the report is given by default.
+	 */
+	static long defaultTimeout() {
+		return Long.getLong("net.thesilkminer.bibliotech.shared.crash.timeout", 5000L);
+	}
+
+	/**
+	 * Creates a new executor for the parts of a report.
+	 *
+	 * @param name
+	 *      The name of the threads.
+	 * @param parts
+	 *      How many parts will be submitted: each one gets its own thread.
+	 * @return
+	 *      The executor, or {@code null} if no thread can be created: parts
+	 *      are then run directly by the caller.
+	 */
+	@Nullable
+	static ExecutorService newExecutor(@Nonnull final String name, final int parts) {
+		final AtomicInteger count = new AtomicInteger();
+		try {
+			return Executors.newFixedThreadPool(Math.max(1, parts), runnable -> {
+				final Thread thread = new Thread(runnable, name + " #" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		} catch (final Throwable t) {
+			return null;
+		}
+	}
+
+	@Nonnull
+	static <T> Future<T> submit(@Nullable final ExecutorService executor, @Nonnull final Callable<T> task) {
+		if (executor != null) {
+			try {
+				return executor.submit(task);
+			} catch (final Throwable ignored) {
+				// Unable to start another thread: run it here
+			}
+		}
+		try {
+			return Futures.immediateFuture(task.call());
+		} catch (final Exception e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	/**
+	 * Waits for the given part until its deadline expires.
+	 *
+	 * @param future
+	 *      The part.
+	 * @param start
+	 *      When the part has been submitted, as given by {@link System#nanoTime()}.
+	 * @param timeout
+	 *      How long the part is allowed to run, in milliseconds.
+	 * @param failure
+	 *      The text to use if the part fails.
+	 * @param indent
+	 *      The indentation of the marker used if the part doesn't complete.
+	 * @return
+	 *      The text of the part, or a marker if it didn't complete in time.
+	 */
+	@Nonnull
+	static String await(@Nonnull final Future<String> future, final long start, final long timeout,
+	                    @Nonnull final String failure, @Nonnull final String indent) {
+		final String marker = complete(future, start, timeout, failure, indent);
+		return marker != null? marker : Futures.getUnchecked(future);
+	}
+
+	/**
+	 * Waits for the given part until its deadline expires, without getting
+	 * its result.
+	 *
+	 * @param future
+	 *      The part.
+	 * @param start
+	 *      When the part has been submitted, as given by {@link System#nanoTime()}.
+	 * @param timeout
+	 *      How long the part is allowed to run, in milliseconds.
+	 * @param failure
+	 *      The text to use if the part fails.
+	 * @param indent
+	 *      The indentation of the marker used if the part doesn't complete.
+	 * @return
+	 *      {@code null} if the part completed successfully, a marker otherwise.
+	 */
+	@Nullable
+	static String complete(@Nonnull final Future<?> future, final long start, final long timeout,
+	                       @Nonnull final String failure, @Nonnull final String indent) {
+		final long remaining = TimeUnit.MILLISECONDS.toNanos(timeout) - (System.nanoTime() - start);
+		try {
+			future.get(Math.max(0L, remaining), TimeUnit.NANOSECONDS);
+			return null;
+		} catch (final TimeoutException e) {
+			future.cancel(true);
+			return indent + "[timed out after " + timeout + " ms]\n";
+		} catch (final InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			return indent + "[interrupted]\n";
+		} catch (final ExecutionException e) {
+			return failure;
+		}
+	}
+
+	static void shutdown(@Nullable final ExecutorService executor) {
+		if (executor != null) executor.shutdownNow();
+	}
+}
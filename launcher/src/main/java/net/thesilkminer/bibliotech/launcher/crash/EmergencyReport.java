@@ -0,0 +1,288 @@
+package net.thesilkminer.bibliotech.launcher.crash;
+
+import net.thesilkminer.bibliotech.launcher.os.Os;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Writes a minimal crash report when the virtual machine runs out of memory.
+ *
+ * <p>The full report needs plenty of memory to be generated and shown, so
+ * it usually fails after an {@link OutOfMemoryError}. To make sure at least
+ * something ends up on disk, a block of memory is reserved when the
+ * software starts and the file of the report is already opened. When an
+ * out of memory error is reported, the block is released first, then the
+ * throwable chain, the state of the memory pools and the stacks of all the
+ * threads are written through a buffer allocated in advance, without
+ * building any intermediate string. The full report is attempted only
+ * afterwards.</p>
+ *
+ * <p>The file is deleted when the software exits, unless it has been
+ * written. If the software is killed, the empty file is deleted the next
+ * time the software starts. The file is locked while it is open, so that
+ * the one of another instance running at the same time is left alone.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+final class EmergencyReport {
+
+	private static final String PREFIX = "emergency-";
+	private static final int BUFFER_SIZE = 16 * 1024;
+	private static final int MAX_CAUSES = 16;
+	private static final long MB = 1024L * 1024L;
+	private static final AtomicBoolean WRITTEN = new AtomicBoolean();
+
+	@SuppressWarnings({"FieldCanBeLocal", "unused"})
+	private static volatile byte[] reserve;
+	private static ByteBuffer buffer;
+	private static FileChannel channel;
+	@SuppressWarnings({"FieldCanBeLocal", "unused"})
+	private static FileLock lock;
+	private static File file;
+
+	private EmergencyReport() {}
+
+	/**
+	 * Reserves the memory and opens the file used by the report.
+	 *
+	 * <p>The size of the reserved block, in bytes, can be changed through the
+	 * {@code net.thesilkminer.bibliotech.shared.crash.reserve} property.</p>
+	 */
+	static synchronized void prepare() {
+		if (buffer != null) return;
+		reserve = new byte[Integer.getInteger("net.thesilkminer.bibliotech.shared.crash.reserve", 4 * 1024 * 1024)];
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		final File directory = new File(Os.getCurrentOs().workingDir(), "crash-reports");
+		if (!directory.exists() && !directory.mkdirs()) return;
+		prepare$clean(directory);
+		try {
+			file = new File(directory, PREFIX + System.currentTimeMillis() + ".txt");
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			lock = prepare$lock(channel);
+		} catch (final IOException e) {
+			// Only the reserved memory is available then
+			channel = null;
+			return;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(EmergencyReport::discard, "Emergency Report Cleaner"));
+	}
+
+	private static void prepare$clean(@Nonnull final File directory) {
+		final File[] stale = directory.listFiles((dir, name) -> name.startsWith(PREFIX));
+		if (stale == null) return;
+		for (final File candidate : stale) {
+			if (candidate.length() != 0L || prepare$inUse(candidate)) continue;
+			if (!candidate.delete()) candidate.deleteOnExit();
+		}
+	}
+
+	/*
+	 * Another instance keeps its own file locked until it exits: if the lock
+	 * can't be taken, or the file can't even be opened, the file is kept.
+	 */
+	private static boolean prepare$inUse(@Nonnull final File candidate) {
+		try (final FileChannel other = FileChannel.open(candidate.toPath(), StandardOpenOption.WRITE)) {
+			return prepare$lock(other) == null;
+		} catch (final IOException e) {
+			return true;
+		}
+	}
+
+	@Nullable
+	private static FileLock prepare$lock(@Nonnull final FileChannel target) throws IOException {
+		try {
+			return target.tryLock();
+		} catch (final OverlappingFileLockException e) {
+			return null;
+		}
+	}
+
+	private static synchronized void discard() {
+		if (WRITTEN.get() || channel == null) return;
+		try {
+			channel.close();
+		} catch (final IOException ignored) {
+			// Deleting it is all that matters
+		}
+		if (!file.delete()) file.deleteOnExit();
+	}
+
+	/**
+	 * Gets whether the given throwable has been caused by the virtual
+	 * machine running out of memory.
+	 */
+	static boolean isOutOfMemory(@Nullable final Throwable throwable) {
+		Throwable current = throwable;
+		for (int i = 0; i < MAX_CAUSES && current != null; ++i) {
+			if (current instanceof OutOfMemoryError) return true;
+			current = current.getCause();
+		}
+		return false;
+	}
+
+	/**
+	 * Releases the reserved memory and writes the report, unless it has
+	 * already been written.
+	 *
+	 * <p>This method never throws: it is meant to be called while
+	 * handling another error.</p>
+	 *
+	 * @param thread
+	 *      The thread which crashed.
+	 * @param throwable
+	 *      The throwable which caused the crash.
+	 */
+	static synchronized void write(@Nonnull final Thread thread, @Nonnull final Throwable throwable) {
+		if (!WRITTEN.compareAndSet(false, true)) return;
+		reserve = null;
+		if (channel == null) return;
+		try {
+			put("---- Biblio-Tech Emergency Crash Report ----\n");
+			put("// The virtual machine ran out of memory: a full report follows only if it can be generated\n\n");
+			put("Time: ");
+			put(System.currentTimeMillis());
+			put(" (milliseconds since the epoch)\n");
+			put("Thread: ");
+			put(thread.getName());
+			put("\n\n");
+			write$throwable(throwable);
+			put("\n-- Memory --\n");
+			write$memory();
+			put("\n-- Thread Stacks --\n");
+			write$threads();
+			flush();
+			channel.force(false);
+		} catch (final Throwable ignored) {
+			// Whatever has been written is still better than nothing
+		} finally {
+			write$close();
+		}
+	}
+
+	private static void write$throwable(@Nonnull final Throwable throwable) throws IOException {
+		Throwable current = throwable;
+		for (int i = 0; i < MAX_CAUSES && current != null; ++i) {
+			if (i > 0) put("Caused by: ");
+			put(current.getClass().getName());
+			final String message = current.getMessage();
+			if (message != null) {
+				put(": ");
+				put(message);
+			}
+			put("\n");
+			write$stack(current.getStackTrace(), "\tat ");
+			current = current.getCause();
+		}
+	}
+
+	private static void write$memory() throws IOException {
+		final Runtime runtime = Runtime.getRuntime();
+		put("\tHeap: ");
+		put((runtime.totalMemory() - runtime.freeMemory()) / MB);
+		put(" MB used, ");
+		put(runtime.totalMemory() / MB);
+		put(" MB committed, ");
+		put(runtime.maxMemory() / MB);
+		put(" MB max\n");
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			final MemoryUsage usage = pool.getUsage();
+			if (usage == null) continue;
+			put("\t");
+			put(pool.getName());
+			put(": ");
+			put(usage.getUsed() / MB);
+			put(" MB used, ");
+			put(usage.getCommitted() / MB);
+			put(" MB committed, ");
+			if (usage.getMax() < 0L) {
+				put("undefined max\n");
+			} else {
+				put(usage.getMax() / MB);
+				put(" MB max\n");
+			}
+		}
+	}
+
+	private static void write$threads() throws IOException {
+		for (final Map.Entry<Thread, StackTraceElement[]> stack : Thread.getAllStackTraces().entrySet()) {
+			put("\tThread: ");
+			put(stack.getKey().getName());
+			put(" (");
+			put(stack.getKey().getState().name());
+			put(")\n");
+			write$stack(stack.getValue(), "\t\t");
+			put("\n");
+		}
+	}
+
+	private static void write$stack(@Nonnull final StackTraceElement[] stack, @Nonnull final String prefix)
+			throws IOException {
+		for (final StackTraceElement element : stack) {
+			put(prefix);
+			put(element.getClassName());
+			put(".");
+			put(element.getMethodName());
+			put("(");
+			put(element.getFileName() == null? "Unknown Source" : element.getFileName());
+			if (element.getLineNumber() >= 0) {
+				put(":");
+				put(element.getLineNumber());
+			}
+			put(")\n");
+		}
+	}
+
+	@SuppressWarnings("ResultOfMethodCallIgnored")
+	private static void write$close() {
+		try {
+			channel.close();
+		} catch (final IOException ignored) {
+			// Nothing else can be done
+		}
+		final File target = new File(file.getParentFile(), "crash-oom-" + System.currentTimeMillis() + ".txt");
+		// If it can't be renamed, the report is still there with its original name
+		file.renameTo(target);
+	}
+
+	private static void put(@Nonnull final String text) throws IOException {
+		for (int i = 0; i < text.length(); ++i) {
+			if (!buffer.hasRemaining()) flush();
+			final char c = text.charAt(i);
+			buffer.put((byte) (c < 0x80? c : '?'));
+		}
+	}
+
+	private static void put(final long value) throws IOException {
+		if (value < 0L) {
+			put("-");
+			put(-value);
+			return;
+		}
+		if (value >= 10L) put(value / 10L);
+		if (!buffer.hasRemaining()) flush();
+		buffer.put((byte) ('0' + value % 10L));
+	}
+
+	private static void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+}
@@ -0,0 +1,175 @@
+package net.thesilkminer.bibliotech.launcher.crash;
+
+import com.google.common.collect.ImmutableSet;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import net.thesilkminer.bibliotech.launcher.logging.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Dumps the heap when the software crashes because of specific throwables.
+ *
+ * <p>The throwables which trigger a dump are listed, comma separated, in the
+ * {@code net.thesilkminer.bibliotech.shared.crash.heapDump} property, which
+ * defaults to {@link OutOfMemoryError}: subclasses and causes match too, and
+ * an empty list disables dumps. Only the first crash with a given
+ * {@link CrashFingerprint fingerprint} is dumped.</p>
+ *
+ * <p>The dump is written to the {@code crash-reports} directory, then it is
+ * compressed in the background: the software waits for the compression to
+ * end before exiting. Heaps bigger than the cap set by
+ * {@code net.thesilkminer.bibliotech.shared.crash.heapDump.maxSize} (in MB,
+ * 1024 by default) aren't dumped, and only the most recent dumps are kept,
+ * as many as {@code net.thesilkminer.bibliotech.shared.crash.heapDump.keep}
+ * (3 by default).</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+final class HeapDumper {
+
+	private static final String PREFIX = "heap-";
+	private static final String EXTENSION = ".hprof";
+	private static final String COMPRESSED_EXTENSION = EXTENSION + ".gz";
+	private static final long MB = 1024L * 1024L;
+	private static final long COMPRESSION_WAIT = TimeUnit.MINUTES.toMillis(1L);
+
+	private HeapDumper() {}
+
+	@Nonnull
+	private static Set<String> triggers() {
+		final String property = System.getProperty("net.thesilkminer.bibliotech.shared.crash.heapDump",
+				OutOfMemoryError.class.getName());
+		final ImmutableSet.Builder<String> triggers = ImmutableSet.builder();
+		Arrays.stream(property.split(",")).map(String::trim).filter(name -> !name.isEmpty()).forEach(triggers::add);
+		return triggers.build();
+	}
+
+	private static long maxSize() {
+		return Long.getLong("net.thesilkminer.bibliotech.shared.crash.heapDump.maxSize", 1024L) * MB;
+	}
+
+	private static int keep() {
+		return Integer.getInteger("net.thesilkminer.bibliotech.shared.crash.heapDump.keep", 3);
+	}
+
+	/**
+	 * Gets whether the given throwable, or any of its causes, should trigger
+	 * a heap dump.
+	 */
+	static boolean shouldDump(@Nullable final Throwable throwable) {
+		final Set<String> triggers = triggers();
+		if (triggers.isEmpty()) return false;
+		for (Throwable current = throwable; current != null; current = current.getCause()) {
+			for (Class<?> type = current.getClass(); type != null; type = type.getSuperclass()) {
+				if (triggers.contains(type.getName())) return true;
+			}
+			if (current.getCause() == current) break;
+		}
+		return false;
+	}
+
+	/**
+	 * Dumps the heap into the given directory and starts compressing it.
+	 *
+	 * @param directory
+	 *      The directory where the dump should be written.
+	 * @param time
+	 *      When the crash happened, used to name the dump.
+	 * @return
+	 *      The file the compressed dump will be available at, or {@code null}
+	 *      if the heap hasn't been dumped.
+	 */
+	@Nullable
+	static File dump(@Nonnull final File directory, final long time) {
+		final Logger log = Logger.obtain("Crash Handler");
+		final long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		if (used > maxSize()) {
+			log.warning("Not dumping the heap: {} MB are in use, more than the allowed {} MB", used / MB, maxSize() / MB);
+			return null;
+		}
+		if (!directory.exists() && !directory.mkdirs()) return null;
+		final File dump = new File(directory, PREFIX + time + EXTENSION);
+		try {
+			final HotSpotDiagnosticMXBean diagnostic = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+			if (diagnostic == null) return null;
+			diagnostic.dumpHeap(dump.getAbsolutePath(), true);
+		} catch (final Throwable t) {
+			log.warning("Unable to dump the heap: {}", t.toString());
+			if (dump.exists() && !dump.delete()) dump.deleteOnExit();
+			return null;
+		}
+		if (dump.length() > maxSize()) {
+			log.warning("Deleting the heap dump: it takes {} MB, more than the allowed {} MB", dump.length() / MB,
+					maxSize() / MB);
+			if (!dump.delete()) dump.deleteOnExit();
+			return null;
+		}
+		final File compressed = new File(directory, PREFIX + time + COMPRESSED_EXTENSION);
+		dump$compress(dump, compressed);
+		dump$prune(directory);
+		log.info("Heap dumped to {}", compressed.getName());
+		return compressed;
+	}
+
+	private static void dump$compress(@Nonnull final File dump, @Nonnull final File compressed) {
+		final Thread compressor = new Thread(() -> {
+			final File partial = new File(compressed.getParentFile(), compressed.getName() + ".part");
+			try (final InputStream in = new FileInputStream(dump);
+			     final OutputStream out = new GZIPOutputStream(new FileOutputStream(partial), 64 * 1024)) {
+				final byte[] buffer = new byte[64 * 1024];
+				for (int read = in.read(buffer); read != -1; read = in.read(buffer)) out.write(buffer, 0, read);
+			} catch (final IOException e) {
+				// Keep the uncompressed dump
+				if (!partial.delete()) partial.deleteOnExit();
+				return;
+			}
+			if (partial.renameTo(compressed) && !dump.delete()) dump.deleteOnExit();
+		}, "Heap Dump Compressor");
+		compressor.start();
+		// Crashes usually end with System.exit, which doesn't wait for normal threads
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				compressor.join(COMPRESSION_WAIT);
+			} catch (final InterruptedException ignored) {
+				// Exit anyway
+			}
+		}, "Heap Dump Compressor Waiter"));
+	}
+
+	private static void dump$prune(@Nonnull final File directory) {
+		final File[] dumps = directory.listFiles((dir, name) -> name.startsWith(PREFIX)
+				&& (name.endsWith(EXTENSION) || name.endsWith(COMPRESSED_EXTENSION)));
+		if (dumps == null || dumps.length <= keep()) return;
+		// Names contain the time of the crash: the oldest ones come first
+		Arrays.sort(dumps, (a, b) -> Long.compare(dump$time(a), dump$time(b)));
+		for (int i = 0; i < dumps.length - keep(); ++i) {
+			if (!dumps[i].delete()) dumps[i].deleteOnExit();
+		}
+	}
+
+	private static long dump$time(@Nonnull final File dump) {
+		final String name = dump.getName();
+		try {
+			return Long.parseLong(name.substring(PREFIX.length(), name.indexOf('.')));
+		} catch (final NumberFormatException e) {
+			return 0L;
+		}
+	}
+}
@@ -1,23 +1,31 @@
 package net.thesilkminer.bibliotech.launcher.crash;
 
-import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 
 import org.jetbrains.annotations.Contract;
 
-import java.awt.EventQueue;
-import java.util.Arrays;
-import java.util.Map;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
 
 /**
  * Represents a category of a crash report.
  *
+ * <p>Unlike {@link ICrashInfoProvider providers}, which only add a few
+ * lines, categories may produce a lot of text, e.g. the stacks of all the
+ * threads, so they write it straight into the report instead of building
+ * it in memory first.</p>
+ *
  * @author TheSilkMiner
  *
  * @since 0.1
  */
-public interface ICrashReportCategory extends ICrashInfoProvider {
+public interface ICrashReportCategory {
 
 	/**
 	 * Type used to identify all the defaults crash report categories.
@@ -37,15 +45,15 @@ public interface ICrashReportCategory extends ICrashInfoProvider {
 			}
 
 			@Override
-			public void provideInfo(final CrashReport report, final StringBuilder builder) {
-				builder.append("Stacktrace:\n");
+			public void provideInfo(final CrashReport report, final Writer out) throws IOException {
+				out.write("Stacktrace:\n");
 				boolean skip = false;
 				for (final StackTraceElement ele : report.throwable.getStackTrace()) {
 					if (ele.toString().contains("net.thesilkminer.bibliotech.launcher")) skip = true;
 					if (skip) continue;
-					builder.append(this.indent()).append(ele.toString()).append("\n");
+					out.append(this.indent()).append(ele.toString()).append("\n");
 				}
-				builder.append("\n");
+				out.write("\n");
 			}
 		};
 		public static final ICrashReportCategory INITIALIZATION = new ICrashReportCategory() {
@@ -57,13 +65,13 @@ public interface ICrashReportCategory extends ICrashInfoProvider {
 			}
 
 			@Override
-			public void provideInfo(final CrashReport report, final StringBuilder builder) {
-				builder.append("Stacktrace:\n");
+			public void provideInfo(final CrashReport report, final Writer out) throws IOException {
+				out.write("Stacktrace:\n");
 				boolean skip = true;
 				for (final StackTraceElement ele : report.throwable.getStackTrace()) {
 					if (ele.toString().contains("net.thesilkminer.bibliotech.launcher")) skip = false;
 					if (skip) continue;
-					builder.append(this.indent()).append(ele.toString()).append("\n");
+					out.append(this.indent()).append(ele.toString()).append("\n");
 				}
 			}
 		};
@@ -76,9 +84,10 @@ public interface ICrashReportCategory extends ICrashInfoProvider {
 			}
 
 			@Override
-			public void provideInfo(final CrashReport report, final StringBuilder builder) {
-				builder.append(this.indent()).append("Name: ").append(report.thread().getName()).append("\n");
-				builder.append(this.indent()).append("Priority: ").append(report.thread().getPriority()).append("\n");
+			public void provideInfo(final CrashReport report, final Writer out) throws IOException {
+				out.append(this.indent()).append("Name: ").append(report.thread().getName()).append("\n");
+				out.append(this.indent()).append("Priority: ").append(String.valueOf(report.thread().getPriority()))
+						.append("\n");
 			}
 		};
 		public static final ICrashReportCategory THREAD_STACKS = new ICrashReportCategory() {
@@ -90,36 +99,15 @@ public interface ICrashReportCategory extends ICrashInfoProvider {
 			}
 
 			@Override
-			public void provideInfo(final CrashReport report, final StringBuilder builder) {
+			public void provideInfo(final CrashReport report, final Writer out) throws IOException {
+				// Stacks can be obtained from any thread: no need to wait for the EDT, which may be the stuck one
 				try {
-					this.provideInfo$task(builder);
-				} catch (final Exception e) {
-					Throwables.propagate(e);
+					ThreadAnalysis.sample(ThreadAnalysis.defaultWindow()).writeTo(out, this.indent());
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					out.append(this.indent()).append("[interrupted]\n");
 				}
 			}
-
-			private void provideInfo$task(final StringBuilder builder) throws Exception {
-				try {
-					EventQueue.invokeAndWait(() -> this.provideInfo$task$task(builder));
-				} catch (final Error e) {
-					if (!e.getMessage().contains("event dispatcher thread")) throw e;
-					// Async call not available for the event dispatcher thread
-					// Try with a sync call
-					this.provideInfo$task$task(builder);
-				}
-			}
-
-			private void provideInfo$task$task(final StringBuilder builder) {
-				final Map<Thread, StackTraceElement[]> stacks = Thread.getAllStackTraces();
-				stacks.entrySet().stream().forEach(stack -> {
-					builder.append(this.indent()).append("Thread: ").append(stack.getKey().getName()).append("\n");
-					builder.append(this.indent()).append("Stacktrace:\n");
-					Arrays.stream(stack.getValue()).forEach(element ->
-							builder.append(this.indent())
-									.append(this.indent()).append(element.toString()).append("\n"));
-					builder.append(this.indent()).append("\n");
-				});
-			}
 		};
 		public static final ICrashReportCategory PROVIDERS = new ICrashReportCategory() {
 			@Contract(pure = true)
@@ -130,11 +118,15 @@ public interface ICrashReportCategory extends ICrashInfoProvider {
 			}
 
 			@Override
-			public void provideInfo(final CrashReport report, final StringBuilder builder) {
-				builder.append("Providers amount: ").append(CrashReportHandler.INSTANCE.providers().size()).append("\n");
-				builder.append("Providers list: ");
-				CrashReportHandler.INSTANCE.providers().forEach(provider -> builder.append(provider.id()).append(", "));
-				builder.append("\n");
+			public void provideInfo(final CrashReport report, final Writer out) throws IOException {
+				final List<CrashReportHandler.CrashInfoProviderRegister> providers =
+						ImmutableList.copyOf(CrashReportHandler.INSTANCE.providers());
+				out.append("Providers amount: ").append(String.valueOf(providers.size())).append("\n");
+				out.write("Providers list: ");
+				for (final CrashReportHandler.CrashInfoProviderRegister provider : providers) {
+					out.append(provider.id()).append(", ");
+				}
+				out.write("\n");
 			}
 		};
 		public static final ICrashReportCategory PROVIDERS_INFO = new ICrashReportCategory() {
@@ -146,45 +138,46 @@ public interface ICrashReportCategory extends ICrashInfoProvider {
 			}
 
 			@Override
-			public void provideInfo(final CrashReport report, final StringBuilder builder) {
-				try {
-					this.provideInfo$task(report, builder);
-				} catch (final Exception e) {
-					Throwables.propagate(e);
-				}
+			public long timeout() {
+				// Providers have their own deadlines, which all start together
+				return CrashTasks.defaultTimeout() + 1000L;
 			}
 
-			private void provideInfo$task(final CrashReport report, final StringBuilder builder) throws Exception {
+			@Override
+			public void provideInfo(final CrashReport report, final Writer out) throws IOException {
+				final List<CrashReportHandler.CrashInfoProviderRegister> providers =
+						ImmutableList.copyOf(CrashReportHandler.INSTANCE.providers());
+				final ExecutorService executor = CrashTasks.newExecutor("Crash Report Provider", providers.size());
 				try {
-					EventQueue.invokeAndWait(() -> this.provideInfo$task$task(report, builder));
-				} catch (final Error e) {
-					if (!e.getMessage().contains("event dispatcher thread")) throw e;
-					// Async call not available for the event dispatcher thread
-					// Try with a sync call
-					this.provideInfo$task$task(report, builder);
-				}
-			}
-
-			private void provideInfo$task$task(final CrashReport report, final StringBuilder builder) {
-				CrashReportHandler.INSTANCE.providers().forEach(provider -> {
-					builder.append(this.indent()).append("-- ").append(provider.id()).append(" --\n");
-					try {
-						this.provideInfo$task$task$task(provider, report, builder);
-					} catch (final RuntimeException e) {
-						builder.append(this.indent()).append("Error occurred while obtaining provider information.")
-								.append("\n").append(this.indent()).append("Provider skipped.").append("\n");
+					final long start = System.nanoTime();
+					final List<Future<String>> parts = Lists.newArrayListWithCapacity(providers.size());
+					providers.forEach(provider -> parts.add(CrashTasks.submit(executor, () -> {
+						final StringBuilder part = new StringBuilder();
+						this.provideInfo$task(provider, report, part);
+						return part.toString();
+					})));
+					for (int i = 0; i < providers.size(); ++i) {
+						out.append(this.indent()).append("-- ").append(providers.get(i).id()).append(" --\n");
+						out.write(CrashTasks.await(parts.get(i), start, CrashTasks.defaultTimeout(),
+								this.indent() + "Error occurred while obtaining provider information.\n"
+										+ this.indent() + "Provider skipped.\n",
+								this.indent() + this.indent()));
+						out.flush();
+						parts.set(i, null);
 					}
-				});
+				} finally {
+					CrashTasks.shutdown(executor);
+				}
 			}
 
-			private void provideInfo$task$task$task(final CrashReportHandler.CrashInfoProviderRegister provider,
-			                                   final CrashReport report,
-			                                   final StringBuilder builder) {
+			private void provideInfo$task(final CrashReportHandler.CrashInfoProviderRegister provider,
+			                              final CrashReport report,
+			                              final StringBuilder builder) {
 				final StringBuilder tmp = new StringBuilder();
 				provider.provider().provideInfo(report, tmp);
-				final String[] messages = tmp.toString().split("\\n");
-				Arrays.stream(messages).forEach(message ->
-						builder.append(this.indent()).append(this.indent()).append(message).append("\n"));
+				for (final String message : tmp.toString().split("\\n")) {
+					builder.append(this.indent()).append(this.indent()).append(message).append("\n");
+				}
 				builder.append("\n");
 			}
 		};
@@ -197,7 +190,9 @@ public interface ICrashReportCategory extends ICrashInfoProvider {
 			}
 
 			@Override
-			public void provideInfo(final CrashReport report, final StringBuilder builder) {
+			public void provideInfo(final CrashReport report, final Writer out) throws IOException {
+				// Only a few short lines: not worth writing them one piece at a time
+				final StringBuilder builder = new StringBuilder(1024);
 				builder.append("Details:\n");
 				builder.append(this.indent()).append("Biblio-Tech version: ").append(report.version()).append("\n");
 				builder.append(this.indent()).append("Operating system: ").append(report.os().details()).append("\n");
@@ -209,12 +204,33 @@ public interface ICrashReportCategory extends ICrashInfoProvider {
 						.append(report.softwareStatus()).append("\n");
 				builder.append(this.indent()).append("Type: ").append(report.platformType()).append("\n");
 				builder.append(this.indent()).append("Current language: ").append(report.languageCode()).append("\n");
+				if (report.heapDump() != null) {
+					builder.append(this.indent()).append("Heap dump: ").append(report.heapDump().getName()).append("\n");
+				}
+				report.diagnostics().appendTo(builder, this.indent());
+				out.append(builder);
 			}
 		};
 	}
 
 	String name();
 
+	/**
+	 * Gets how long this category is allowed to take, in milliseconds.
+	 *
+	 * <p>Categories are generated concurrently. If one doesn't complete
+	 * in time, the report is written anyway, with a marker in place of
+	 * the category.</p>
+	 *
+	 * @return
+	 *      The maximum time this category can take.
+	 *
+	 * @since 0.1
+	 */
+	default long timeout() {
+		return CrashTasks.defaultTimeout();
+	}
+
 	/**
 	 * Provides information to the crash report.
 	 *
@@ -225,13 +241,14 @@ public interface ICrashReportCategory extends ICrashInfoProvider {
 	 * @param report
 	 *      The constructed crash report. Can be useful to get the various causes
 	 *      or other bits of information.
-	 * @param builder
-	 *      The builder where all information should be added.
+	 * @param out
+	 *      The writer where all information should be written.
+	 * @throws IOException
+	 *      If the writer throws one.
 	 *
 	 * @since 0.1
 	 */
-	@Override
-	void provideInfo(final CrashReport report, final StringBuilder builder);
+	void provideInfo(final CrashReport report, final Writer out) throws IOException;
 
 	/**
 	 * Adds an indentation.
@@ -0,0 +1,244 @@
+package net.thesilkminer.bibliotech.launcher.crash;
+
+import org.jetbrains.annotations.Contract;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.RuntimeMXBean;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Holds a snapshot of the state of the Java virtual machine, taken from the
+ * platform MXBeans when a crash report is created.
+ *
+ * <p>Only numbers and the strings the MXBeans already hold are copied when
+ * the snapshot is taken, into arrays as big as the amount of memory pools
+ * and garbage collectors: all the text is produced when the report gets
+ * written. Every part of the snapshot is
+ * gathered independently, so that a failing MXBean only loses its own
+ * values.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+final class RuntimeDiagnostics {
+
+	private static final long MB = 1024L * 1024L;
+	private static final String UNAVAILABLE = "unavailable";
+
+	private String vmName;
+	private String vmVersion;
+	private String vmVendor;
+	private List<String> arguments;
+	private long uptime = -1L;
+
+	private String[] poolNames = new String[0];
+	private boolean[] poolHeap = new boolean[0];
+	private long[] poolUsed = new long[0];
+	private long[] poolPeak = new long[0];
+	private long[] poolMax = new long[0];
+
+	private String[] gcNames = new String[0];
+	private long[] gcCounts = new long[0];
+	private long[] gcTimes = new long[0];
+
+	private String compiler;
+	private long compileTime = -1L;
+
+	private int loadedClasses = -1;
+	private long totalLoadedClasses = -1L;
+	private long unloadedClasses = -1L;
+
+	private long processCpuTime = -1L;
+	private double systemLoad = -1.0;
+	private int processors = -1;
+
+	private long heapUsed = -1L;
+	private long heapCommitted = -1L;
+	private long heapMax = -1L;
+	private long nonHeapUsed = -1L;
+	private long nonHeapCommitted = -1L;
+
+	private RuntimeDiagnostics() {}
+
+	/**
+	 * Takes a snapshot of the current state of the virtual machine.
+	 *
+	 * @return
+	 *      The snapshot. Values which couldn't be read are marked as such.
+	 */
+	@Nonnull
+	static RuntimeDiagnostics capture() {
+		final RuntimeDiagnostics diagnostics = new RuntimeDiagnostics();
+		try {
+			diagnostics.capture$runtime();
+		} catch (final Throwable ignored) {
+			// Keep the defaults
+		}
+		try {
+			diagnostics.capture$memory();
+		} catch (final Throwable ignored) {
+			// Keep the defaults
+		}
+		try {
+			diagnostics.capture$collectors();
+		} catch (final Throwable ignored) {
+			// Keep the defaults
+		}
+		try {
+			diagnostics.capture$compilation();
+		} catch (final Throwable ignored) {
+			// Keep the defaults
+		}
+		try {
+			diagnostics.capture$system();
+		} catch (final Throwable ignored) {
+			// Keep the defaults
+		}
+		return diagnostics;
+	}
+
+	private void capture$runtime() {
+		final RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+		this.vmName = runtime.getVmName();
+		this.vmVersion = runtime.getVmVersion();
+		this.vmVendor = runtime.getVmVendor();
+		this.uptime = runtime.getUptime();
+		this.arguments = runtime.getInputArguments();
+	}
+
+	private void capture$memory() {
+		final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		this.heapUsed = heap.getUsed();
+		this.heapCommitted = heap.getCommitted();
+		this.heapMax = heap.getMax();
+		final MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+		this.nonHeapUsed = nonHeap.getUsed();
+		this.nonHeapCommitted = nonHeap.getCommitted();
+
+		final List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+		final int size = pools.size();
+		this.poolNames = new String[size];
+		this.poolHeap = new boolean[size];
+		this.poolUsed = new long[size];
+		this.poolPeak = new long[size];
+		this.poolMax = new long[size];
+		for (int i = 0; i < size; ++i) {
+			final MemoryPoolMXBean pool = pools.get(i);
+			this.poolNames[i] = pool.getName();
+			this.poolHeap[i] = pool.getType() == MemoryType.HEAP;
+			final MemoryUsage usage = pool.getUsage();
+			this.poolUsed[i] = usage == null? -1L : usage.getUsed();
+			this.poolMax[i] = usage == null? -1L : usage.getMax();
+			final MemoryUsage peak = pool.getPeakUsage();
+			this.poolPeak[i] = peak == null? -1L : peak.getUsed();
+		}
+	}
+
+	private void capture$collectors() {
+		final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+		final int size = collectors.size();
+		this.gcNames = new String[size];
+		this.gcCounts = new long[size];
+		this.gcTimes = new long[size];
+		for (int i = 0; i < size; ++i) {
+			final GarbageCollectorMXBean collector = collectors.get(i);
+			this.gcNames[i] = collector.getName();
+			this.gcCounts[i] = collector.getCollectionCount();
+			this.gcTimes[i] = collector.getCollectionTime();
+		}
+	}
+
+	private void capture$compilation() {
+		final CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+		if (compilation != null) {
+			this.compiler = compilation.getName();
+			if (compilation.isCompilationTimeMonitoringSupported()) this.compileTime = compilation.getTotalCompilationTime();
+		}
+		final ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+		this.loadedClasses = classes.getLoadedClassCount();
+		this.totalLoadedClasses = classes.getTotalLoadedClassCount();
+		this.unloadedClasses = classes.getUnloadedClassCount();
+	}
+
+	private void capture$system() {
+		final OperatingSystemMXBean system = ManagementFactory.getOperatingSystemMXBean();
+		this.systemLoad = system.getSystemLoadAverage();
+		this.processors = system.getAvailableProcessors();
+		if (system instanceof com.sun.management.OperatingSystemMXBean) {
+			this.processCpuTime = ((com.sun.management.OperatingSystemMXBean) system).getProcessCpuTime();
+		}
+	}
+
+	@Nonnull
+	String javaVm() {
+		if (this.vmName == null) return UNAVAILABLE;
+		return this.vmName + " (" + this.vmVersion + "), " + this.vmVendor;
+	}
+
+	@Nonnull
+	String flags() {
+		if (this.arguments == null) return UNAVAILABLE;
+		return this.arguments.size() + " total; " + String.join(" ", this.arguments);
+	}
+
+	/**
+	 * Gets a one line summary of the heap and non-heap usage.
+	 */
+	@Nonnull
+	String memory() {
+		if (this.heapUsed < 0L) return UNAVAILABLE;
+		return String.format("%s used, %s committed, %s max heap; %s used, %s committed non-heap",
+				mb(this.heapUsed), mb(this.heapCommitted), mb(this.heapMax),
+				mb(this.nonHeapUsed), mb(this.nonHeapCommitted));
+	}
+
+	/**
+	 * Appends all the details of the snapshot to the given builder.
+	 *
+	 * @param builder
+	 *      The builder.
+	 * @param indent
+	 *      The indentation of every line.
+	 */
+	void appendTo(@Nonnull final StringBuilder builder, @Nonnull final String indent) {
+		builder.append(indent).append("Uptime: ").append(this.uptime < 0L? UNAVAILABLE : this.uptime + " ms").append("\n");
+		builder.append(indent).append("Process CPU time: ")
+				.append(this.processCpuTime < 0L? UNAVAILABLE : this.processCpuTime / 1000000L + " ms").append("\n");
+		builder.append(indent).append("Processors: ").append(this.processors < 0? UNAVAILABLE : this.processors)
+				.append(", system load: ")
+				.append(this.systemLoad < 0.0? UNAVAILABLE : String.format("%.2f", this.systemLoad)).append("\n");
+		for (int i = 0; i < this.poolNames.length; ++i) {
+			builder.append(indent).append("Memory pool ").append(this.poolNames[i]).append(" (")
+					.append(this.poolHeap[i]? "heap" : "non-heap").append("): ")
+					.append(mb(this.poolUsed[i])).append(" used, ")
+					.append(mb(this.poolPeak[i])).append(" peak, ")
+					.append(mb(this.poolMax[i])).append(" max\n");
+		}
+		for (int i = 0; i < this.gcNames.length; ++i) {
+			builder.append(indent).append("Garbage collector ").append(this.gcNames[i]).append(": ")
+					.append(this.gcCounts[i] < 0L? UNAVAILABLE : this.gcCounts[i] + " collections").append(", ")
+					.append(this.gcTimes[i] < 0L? UNAVAILABLE : this.gcTimes[i] + " ms").append("\n");
+		}
+		builder.append(indent).append("JIT compiler: ").append(this.compiler == null? "none" : this.compiler)
+				.append(", ").append(this.compileTime < 0L? "compilation time unavailable" : this.compileTime + " ms")
+				.append("\n");
+		builder.append(indent).append("Classes: ")
+				.append(this.loadedClasses < 0? UNAVAILABLE : this.loadedClasses + " loaded, "
+						+ this.totalLoadedClasses + " total, " + this.unloadedClasses + " unloaded").append("\n");
+	}
+
+	@Nonnull
+	private static String mb(final long bytes) {
+		return bytes < 0L? "undefined" : bytes / MB + " MB";
+	}
+}
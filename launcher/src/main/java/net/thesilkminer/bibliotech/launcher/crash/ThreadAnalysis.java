@@ -0,0 +1,296 @@
+package net.thesilkminer.bibliotech.launcher.crash;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Analyses what every thread is doing, using the {@link ThreadMXBean}.
+ *
+ * <p>The CPU time of every thread is sampled twice, a short window apart,
+ * so that threads can be ranked by how much CPU they have been using right
+ * now, instead of since they have been started. Stacks include the monitors
+ * and the synchronizers every thread holds and the lock it is waiting for,
+ * together with its owner, and threads which are deadlocked are listed
+ * first.</p>
+ *
+ * <p>The analysis is part of every crash report, but it can also be
+ * {@link #sample(long) taken} at any time, e.g. when the software hangs.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class ThreadAnalysis {
+
+	/**
+	 * What a single thread was doing when the analysis was taken.
+	 */
+	public static final class ThreadSample {
+		private final ThreadInfo info;
+		private final long cpuTime;
+		private final long recentCpuTime;
+
+		private ThreadSample(@Nonnull final ThreadInfo info, final long cpuTime, final long recentCpuTime) {
+			this.info = info;
+			this.cpuTime = cpuTime;
+			this.recentCpuTime = recentCpuTime;
+		}
+
+		@Contract(pure = true)
+		@Nonnull
+		public ThreadInfo info() {
+			return this.info;
+		}
+
+		/**
+		 * Gets the CPU time used by the thread since it has been started.
+		 *
+		 * @return
+		 *      The CPU time in nanoseconds, or -1 if it isn't available.
+		 */
+		@Contract(pure = true)
+		public long cpuTime() {
+			return this.cpuTime;
+		}
+
+		/**
+		 * Gets the CPU time used by the thread during the sampling window.
+		 *
+		 * @return
+		 *      The CPU time in nanoseconds, or -1 if it isn't available.
+		 */
+		@Contract(pure = true)
+		public long recentCpuTime() {
+			return this.recentCpuTime;
+		}
+	}
+
+	private static final int HOT_THREADS = 10;
+
+	private final long window;
+	private final List<ThreadSample> threads;
+	private final Set<Long> deadlocked;
+
+	private ThreadAnalysis(final long window, @Nonnull final List<ThreadSample> threads,
+	                       @Nonnull final Set<Long> deadlocked) {
+		this.window = window;
+		this.threads = ImmutableList.copyOf(threads);
+		this.deadlocked = deadlocked;
+	}
+
+	/**
+	 * Gets how long the CPU time is sampled for by default, in milliseconds.
+	 */
+	static long defaultWindow() {
+		return Long.getLong("net.thesilkminer.bibliotech.shared.crash.cpuSample", 200L);
+	}
+
+	/**
+	 * Analyses all the live threads.
+	 *
+	 * <p>This method blocks the calling thread for the whole window.</p>
+	 *
+	 * @param window
+	 *      How long the CPU time of the threads is sampled for, in milliseconds.
+	 * @return
+	 *      The analysis, where threads are ranked by CPU time used during the
+	 *      window, the highest first.
+	 * @throws InterruptedException
+	 *      If the calling thread gets interrupted while sampling.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static ThreadAnalysis sample(final long window) throws InterruptedException {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		final boolean cpu = sample$enableCpuTime(bean);
+
+		final long[] ids = bean.getAllThreadIds();
+		final long[] before = new long[ids.length];
+		for (int i = 0; i < ids.length; ++i) before[i] = cpu? bean.getThreadCpuTime(ids[i]) : -1L;
+		final long start = System.nanoTime();
+		if (cpu) Thread.sleep(window);
+		final long elapsed = System.nanoTime() - start;
+		final Map<Long, Long> recent = Maps.newHashMap();
+		for (int i = 0; i < ids.length; ++i) {
+			final long after = cpu? bean.getThreadCpuTime(ids[i]) : -1L;
+			if (before[i] >= 0L && after >= 0L) recent.put(ids[i], after - before[i]);
+		}
+
+		final ThreadInfo[] infos = bean.dumpAllThreads(bean.isObjectMonitorUsageSupported(),
+				bean.isSynchronizerUsageSupported());
+		final List<ThreadSample> threads = Lists.newArrayListWithCapacity(infos.length);
+		for (final ThreadInfo info : infos) {
+			if (info == null) continue;
+			final Long delta = recent.get(info.getThreadId());
+			threads.add(new ThreadSample(info, cpu? bean.getThreadCpuTime(info.getThreadId()) : -1L,
+					delta == null? -1L : delta));
+		}
+		threads.sort((a, b) -> Long.compare(b.recentCpuTime(), a.recentCpuTime()));
+
+		final long[] deadlocked = bean.isSynchronizerUsageSupported()?
+				bean.findDeadlockedThreads() : bean.findMonitorDeadlockedThreads();
+		final Set<Long> deadlockedIds = Sets.newHashSet();
+		if (deadlocked != null) for (final long id : deadlocked) deadlockedIds.add(id);
+		return new ThreadAnalysis(cpu? elapsed / 1000000L : 0L, threads, deadlockedIds);
+	}
+
+	private static boolean sample$enableCpuTime(@Nonnull final ThreadMXBean bean) {
+		if (!bean.isThreadCpuTimeSupported()) return false;
+		try {
+			if (!bean.isThreadCpuTimeEnabled()) bean.setThreadCpuTimeEnabled(true);
+			return true;
+		} catch (final UnsupportedOperationException | SecurityException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Gets how long the CPU time has been sampled for.
+	 *
+	 * @return
+	 *      The window in milliseconds, or 0 if CPU times aren't available.
+	 */
+	@Contract(pure = true)
+	public long window() {
+		return this.window;
+	}
+
+	/**
+	 * Gets all the threads, ranked by CPU time used during the window.
+	 */
+	@Contract(pure = true)
+	@Nonnull
+	public List<ThreadSample> threads() {
+		return this.threads;
+	}
+
+	@Contract(pure = true)
+	public boolean isDeadlocked(final long threadId) {
+		return this.deadlocked.contains(threadId);
+	}
+
+	@Contract(pure = true)
+	public boolean hasDeadlocks() {
+		return !this.deadlocked.isEmpty();
+	}
+
+	/**
+	 * Writes the analysis to the given writer.
+	 *
+	 * <p>Threads are written one at a time, so that the analysis of a big
+	 * amount of threads is never held in memory as a whole.</p>
+	 *
+	 * @param out
+	 *      The writer.
+	 * @param indent
+	 *      The indentation used for every level.
+	 * @throws IOException
+	 *      If the writer throws one.
+	 */
+	void writeTo(@Nonnull final Writer out, @Nonnull final String indent) throws IOException {
+		final StringBuilder builder = new StringBuilder(1024);
+		if (this.hasDeadlocks()) {
+			builder.append("Deadlocked threads:\n");
+			this.threads.stream().filter(thread -> this.isDeadlocked(thread.info().getThreadId())).forEach(thread ->
+					builder.append(indent).append('"').append(thread.info().getThreadName()).append("\" waiting for ")
+							.append(thread.info().getLockName()).append(" held by \"")
+							.append(thread.info().getLockOwnerName()).append("\"\n"));
+			builder.append("\n");
+		}
+
+		if (this.window > 0L) {
+			builder.append("Hot threads (CPU used over ").append(this.window).append(" ms):\n");
+			for (int i = 0; i < Math.min(HOT_THREADS, this.threads.size()); ++i) {
+				final ThreadSample thread = this.threads.get(i);
+				builder.append(indent).append(String.format("%5.1f%% ", thread.recentCpuTime() < 0L? 0.0
+						: thread.recentCpuTime() / 10000.0 / this.window));
+				builder.append('"').append(thread.info().getThreadName()).append("\" ")
+						.append(thread.info().getThreadState()).append("\n");
+			}
+			builder.append("\n");
+		} else {
+			builder.append("Hot threads: CPU times are unavailable\n\n");
+		}
+		out.append(builder);
+
+		for (final ThreadSample thread : this.threads) {
+			builder.setLength(0);
+			this.appendTo$thread(thread, builder, indent);
+			out.append(builder);
+		}
+	}
+
+	private void appendTo$thread(@Nonnull final ThreadSample thread, @Nonnull final StringBuilder builder,
+	                             @Nonnull final String indent) {
+		final ThreadInfo info = thread.info();
+		builder.append(indent).append("Thread: ").append(info.getThreadName()).append(" (id ")
+				.append(info.getThreadId()).append(")").append(this.isDeadlocked(info.getThreadId())? " DEADLOCKED" : "")
+				.append("\n");
+		builder.append(indent).append("State: ").append(info.getThreadState());
+		if (info.isSuspended()) builder.append(", suspended");
+		if (info.isInNative()) builder.append(", in native code");
+		builder.append("\n");
+		if (thread.cpuTime() >= 0L) {
+			builder.append(indent).append("CPU time: ").append(thread.cpuTime() / 1000000L).append(" ms total, ")
+					.append(thread.recentCpuTime() / 1000000L).append(" ms recently\n");
+		}
+		if (info.getLockName() != null) {
+			builder.append(indent).append("Waiting for: ").append(info.getLockName());
+			if (info.getLockOwnerName() != null) builder.append(" held by \"").append(info.getLockOwnerName())
+					.append("\" (id ").append(info.getLockOwnerId()).append(")");
+			builder.append("\n");
+		}
+		builder.append(indent).append("Stacktrace:\n");
+		final StackTraceElement[] stack = info.getStackTrace();
+		final MonitorInfo[] monitors = info.getLockedMonitors();
+		for (int depth = 0; depth < stack.length; ++depth) {
+			builder.append(indent).append(indent).append(stack[depth]).append("\n");
+			for (final MonitorInfo monitor : monitors) {
+				if (monitor.getLockedStackDepth() == depth) {
+					builder.append(indent).append(indent).append(indent).append("- locked ").append(monitor).append("\n");
+				}
+			}
+		}
+		final LockInfo[] synchronizers = info.getLockedSynchronizers();
+		if (synchronizers.length > 0) {
+			builder.append(indent).append("Locked synchronizers:\n");
+			for (final LockInfo synchronizer : synchronizers) {
+				builder.append(indent).append(indent).append(synchronizer).append("\n");
+			}
+		}
+		builder.append(indent).append("\n");
+	}
+
+	@Contract(value = "-> !null", pure = true)
+	@Nonnull
+	@Override
+	public String toString() {
+		final StringWriter writer = new StringWriter();
+		try {
+			this.writeTo(writer, "\t");
+		} catch (final IOException e) {
+			throw Throwables.propagate(e);
+		}
+		return writer.toString();
+	}
+}
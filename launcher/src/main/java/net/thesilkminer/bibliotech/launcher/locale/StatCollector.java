@@ -56,16 +56,14 @@ public enum StatCollector {
 	public void setLocale(@Nonnull final Languages language) {
 		// Micro-optimization: don't reload the same language
 		if (language == this.current) {
-			this.log().fine("Attempted to reload the same language " + language);
+			this.log().fine("Attempted to reload the same language {}", language);
 			this.log().fine("Stopped");
 			return;
 		}
 
 		this.log().info("Attempting to set language to " + language.toString());
-		this.log().fine("    Language code: " + language.languageCode());
-		this.log().debug(
-				String.format("    File location: /assets/biblio-tech/launcher/lang/%s.lang", language.languageCode())
-		);
+		this.log().fine("    Language code: {}", language.languageCode());
+		this.log().debug("    File location: /assets/biblio-tech/launcher/lang/{}.lang", language.languageCode());
 
 		final BufferedReader reader;
 		try {
@@ -95,39 +93,39 @@ public enum StatCollector {
 				.filter(line -> !line.isEmpty())
 				.filter(line -> {
 					if (!line.startsWith("#")) return true;
-					this.log().trace("Processing comment " + line);
+					this.log().trace("Processing comment {}", line);
 					this.log().fine("Found comment line in file -> skipping over it");
 					return false;
 				})
 				.filter(line -> {
 					if (line.contains("=")) return true;
-					this.log().trace("Processing invalid line " + line);
+					this.log().trace("Processing invalid line {}", line);
 					this.log().warning("Identified line not containing an equal sign");
 					this.log().warning("Currently skipping it, but the behaviour may change in future versions");
 					return false;
 				})
 				.forEachOrdered(line -> {
-					this.log().trace("Processing line " + line);
+					this.log().trace("Processing line {}", line);
 					final int equalLocation = line.indexOf('=');
 					if (equalLocation == -1) throw new RuntimeException("equalLocation == -1");
 					final String id = line.substring(0, equalLocation);
 					final String translation = line.substring(equalLocation).substring(1);
-					this.log().info("Registering translation for id " + id.trim());
+					this.log().info("Registering translation for id {}", id.trim());
 					if (id.trim().isEmpty() || translation.isEmpty()) {
 						this.log().warning("Id or translation is empty. Please check the translation");
 					}
 					this.locale.put(id.trim(), translation);
-					this.log().trace(String.format("Registering pair %s -> %s", id.trim(), translation));
+					this.log().trace("Registering pair {} -> {}", id.trim(), translation);
 				});
 
-		this.log().finer("Checking language code: it should match " + language.languageCode());
+		this.log().finer("Checking language code: it should match {}", language.languageCode());
 		final String langCode = language.languageCode();
 		final String reported = this.locale.get("language.code"); // Do not use StatCollector
 
 		if (!langCode.equals(reported)) {
 			this.log().error(String.format("Language file for language %s is invalid!", language));
-			this.log().debug(String.format("    Expected: %s", langCode));
-			this.log().debug(String.format("    Got: %s", reported));
+			this.log().debug("    Expected: {}", langCode);
+			this.log().debug("    Got: {}", reported);
 
 			if (language.equals(Languages.ENGLISH_USA)) {
 				this.log().error("Corrupted main file. Crashing...");
@@ -140,7 +138,7 @@ public enum StatCollector {
 		}
 
 		this.log().finest("Code matches. Completing process");
-		this.log().debug("Current language map: " + this.locale.toString());
+		this.log().debug("Current language map: {}", this.locale);
 
 		this.current = language;
 	}
@@ -0,0 +1,238 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import org.jetbrains.annotations.Contract;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Moves the writing of log messages off the calling threads.
+ *
+ * <p>Messages are stored into a bounded ring buffer of preallocated
+ * {@link LogEvent events}, which gets filled by any number of threads
+ * and drained by a single consumer thread. The consumer then fans
+ * the messages out to all the registered sinks.</p>
+ *
+ * <p>Failures of the sinks are printed to the standard error, but at most
+ * once a minute: a sink failing on every message, e.g. because the disk is
+ * full, would otherwise print a stack trace for each one of them.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+final class AsyncLogDispatcher {
+
+	private static final int MAX_BATCH = 256;
+	private static final long REPORT_INTERVAL = TimeUnit.MINUTES.toNanos(1L);
+
+	private final LogEvent[] slots;
+	private final int mask;
+	private final AtomicLongArray published;
+	private final AtomicLong cursor = new AtomicLong(-1L);
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile long consumed = -1L;
+
+	private final WaitStrategy waitStrategy;
+	private final OverflowPolicy overflowPolicy;
+	private final Level dropThreshold;
+	private final Consumer<LogEvent> handler;
+	private final Runnable endOfBatch;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = this.lock.newCondition();
+	private volatile boolean waiting;
+
+	private final Thread consumer;
+	private volatile boolean running = true;
+
+	// Only touched by the consumer thread
+	private boolean reported;
+	private long lastReport;
+	private long suppressed;
+
+	AsyncLogDispatcher(final int size,
+	                   @Nonnull final WaitStrategy waitStrategy,
+	                   @Nonnull final OverflowPolicy overflowPolicy,
+	                   @Nonnull final Level dropThreshold,
+	                   @Nonnull final Consumer<LogEvent> handler,
+	                   @Nonnull final Runnable endOfBatch) {
+		final int capacity = Integer.highestOneBit(Math.max(2, Math.min(size, 1 << 20)) * 2 - 1);
+		this.slots = new LogEvent[capacity];
+		this.mask = capacity - 1;
+		this.published = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; ++i) {
+			this.slots[i] = new LogEvent();
+			this.published.set(i, -1L);
+		}
+		this.waitStrategy = waitStrategy;
+		this.overflowPolicy = overflowPolicy;
+		this.dropThreshold = dropThreshold;
+		this.handler = handler;
+		this.endOfBatch = endOfBatch;
+		this.consumer = new Thread(this::run, "Logging Thread");
+		this.consumer.setDaemon(true);
+		this.consumer.start();
+	}
+
+	@Contract(pure = true)
+	boolean running() {
+		return this.running;
+	}
+
+	@Contract(pure = true)
+	long dropped() {
+		return this.dropped.get();
+	}
+
+	@Contract(pure = true)
+	int capacity() {
+		return this.slots.length;
+	}
+
+	/**
+	 * Publishes a new message to the consumer thread.
+	 *
+	 * @return
+	 *      {@code true} if the message has been enqueued, {@code false}
+	 *      if it has been dropped due to the overflow policy.
+	 */
+	boolean publish(@Nonnull final Level level, @Nonnull final String source, final long timestamp,
+	                @Nonnull final String message) {
+		final long sequence = this.claim(level);
+		if (sequence < 0) {
+			this.dropped.incrementAndGet();
+			return false;
+		}
+		final int index = (int) (sequence & this.mask);
+		this.slots[index].set(level, source, timestamp, message);
+		this.published.lazySet(index, sequence);
+		this.waitStrategy.signal(this);
+		return true;
+	}
+
+	private long claim(@Nonnull final Level level) {
+		int attempts = 0;
+		while (true) {
+			final long current = this.cursor.get();
+			final long next = current + 1;
+			if (next - this.slots.length > this.consumed) {
+				if (!this.canWaitForSpace(level)) return -1L;
+				// Wake up the consumer, just in case
+				this.waitStrategy.signal(this);
+				if (++attempts < 100) Thread.yield();
+				else LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+				continue;
+			}
+			if (this.cursor.compareAndSet(current, next)) return next;
+		}
+	}
+
+	private boolean canWaitForSpace(@Nonnull final Level level) {
+		// The logging thread can't wait on itself (e.g. a sink which logs)
+		if (!this.running || Thread.currentThread() == this.consumer) return false;
+		switch (this.overflowPolicy) {
+			case DROP: return false;
+			case DROP_BELOW_LEVEL: return level.ordinal() >= this.dropThreshold.ordinal();
+			default: return true;
+		}
+	}
+
+	private void run() {
+		long next = 0L;
+		int idleCount = 0;
+		while (true) {
+			int processed = 0;
+			for (int index = (int) (next & this.mask); this.published.get(index) == next;
+			     index = (int) (next & this.mask)) {
+				final LogEvent event = this.slots[index];
+				try {
+					this.handler.accept(event);
+				} catch (final Throwable t) {
+					// Never let a broken sink kill the logging thread
+					this.report(t);
+				}
+				event.clear();
+				this.consumed = next++;
+				if (++processed >= MAX_BATCH) break;
+			}
+			if (processed > 0) {
+				this.flushBatch();
+				idleCount = 0;
+				continue;
+			}
+			if (!this.running && this.cursor.get() < next) return;
+			this.waitStrategy.idle(this, idleCount++);
+		}
+	}
+
+	private void flushBatch() {
+		try {
+			this.endOfBatch.run();
+		} catch (final Throwable t) {
+			this.report(t);
+		}
+	}
+
+	private void report(@Nonnull final Throwable throwable) {
+		final long now = System.nanoTime();
+		if (this.reported && now - this.lastReport < REPORT_INTERVAL) {
+			++this.suppressed;
+			return;
+		}
+		if (this.suppressed > 0L) {
+			System.err.println("Suppressed " + this.suppressed + " log sink failures in the last minute");
+		}
+		this.reported = true;
+		this.lastReport = now;
+		this.suppressed = 0L;
+		throwable.printStackTrace();
+	}
+
+	void awaitSignal(final long nanos) {
+		this.lock.lock();
+		try {
+			this.waiting = true;
+			final long next = this.consumed + 1;
+			if (this.published.get((int) (next & this.mask)) == next || !this.running) return;
+			this.notEmpty.awaitNanos(nanos);
+		} catch (final InterruptedException ignored) {
+			// Shutdown will take care of it
+		} finally {
+			this.waiting = false;
+			this.lock.unlock();
+		}
+	}
+
+	void signal() {
+		if (!this.waiting) return;
+		this.lock.lock();
+		try {
+			this.notEmpty.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops accepting messages and waits for the consumer thread to
+	 * drain everything that has already been published.
+	 *
+	 * @param timeout
+	 *      The maximum amount of milliseconds to wait for.
+	 */
+	void shutdown(final long timeout) {
+		this.running = false;
+		this.signal();
+		try {
+			this.consumer.join(timeout);
+		} catch (final InterruptedException ignored) {}
+	}
+}
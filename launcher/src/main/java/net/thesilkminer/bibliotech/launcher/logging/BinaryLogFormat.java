@@ -0,0 +1,112 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import com.google.common.collect.Maps;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Holds the definition of the binary log file format.
+ *
+ * <p>A binary log file starts with the {@link #MAGIC magic number}, a
+ * version byte and the time the file has been opened at, as an 8 bytes
+ * big endian number of milliseconds. A sequence of records follows, each
+ * one starting with a tag byte:</p>
+ *
+ * <ul>
+ *     <li>{@link #TAG_SOURCE}: the variable length id assigned to a source,
+ *     followed by its name. Every source gets defined once per file,
+ *     right before its first message.</li>
+ *     <li>{@link #TAG_EVENT}: the ordinal of the {@link Level}, the variable
+ *     length id of the source, the zig-zag encoded difference between the
+ *     time of the message and the one of the previous message (or the
+ *     opening time of the file) and the message itself.</li>
+ * </ul>
+ *
+ * <p>All strings are encoded as UTF-8 and prefixed by their length in
+ * bytes. All variable length numbers use 7 bits per byte, with the most
+ * significant bit set on all but the last byte.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class BinaryLogFormat {
+
+	/**
+	 * Writes the binary format for a single file.
+	 */
+	static final class Encoder {
+		private final Map<String, Integer> sources = Maps.newHashMap();
+		private long lastTimestamp;
+
+		void start(@Nonnull final ChannelLogWriter out, final long timestamp) throws IOException {
+			this.sources.clear();
+			this.lastTimestamp = timestamp;
+			for (final byte b : MAGIC) out.writeByte(b);
+			out.writeByte(VERSION);
+			out.writeLong(timestamp);
+		}
+
+		/**
+		 * Gets how many bytes {@link #write(ChannelLogWriter, LogEvent) writing}
+		 * the given event takes, source definition included.
+		 */
+		@Contract(pure = true)
+		int length(@Nonnull final LogEvent event) {
+			final Integer known = this.sources.get(event.source());
+			final int id = known == null? this.sources.size() : known;
+			int length = 0;
+			if (known == null) length += 1 + ChannelLogWriter.varLongLength(id) + ChannelLogWriter.stringLength(event.source());
+			length += 2 + ChannelLogWriter.varLongLength(id);
+			length += ChannelLogWriter.varLongLength(zigZag(event.timestamp() - this.lastTimestamp));
+			return length + ChannelLogWriter.stringLength(event.message());
+		}
+
+		void write(@Nonnull final ChannelLogWriter out, @Nonnull final LogEvent event) throws IOException {
+			Integer id = this.sources.get(event.source());
+			if (id == null) {
+				id = this.sources.size();
+				this.sources.put(event.source(), id);
+				out.writeByte(TAG_SOURCE);
+				out.writeVarLong(id);
+				out.writeString(event.source());
+			}
+			out.writeByte(TAG_EVENT);
+			out.writeByte(event.level().ordinal());
+			out.writeVarLong(id);
+			out.writeVarLong(zigZag(event.timestamp() - this.lastTimestamp));
+			out.writeString(event.message());
+			this.lastTimestamp = event.timestamp();
+		}
+	}
+
+	public static final byte[] MAGIC = { 'B', 'T', 'L', 'G' };
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = MAGIC.length + 1 + 8;
+	public static final int TAG_SOURCE = 1;
+	public static final int TAG_EVENT = 2;
+
+	private BinaryLogFormat() {}
+
+	@Contract(pure = true)
+	public static boolean isBinary(@Nonnull final byte[] header, final int length) {
+		if (length < MAGIC.length) return false;
+		for (int i = 0; i < MAGIC.length; ++i) if (header[i] != MAGIC[i]) return false;
+		return true;
+	}
+
+	@Contract(pure = true)
+	static long zigZag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	@Contract(pure = true)
+	static long unZigZag(final long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,236 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Writes log lines to a file through a {@link FileChannel}, committing
+ * them in groups.
+ *
+ * <p>Lines are encoded straight into a direct buffer, which gets handed
+ * over to the channel only when a group is committed, so most lines
+ * don't cause any system call at all.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+final class ChannelLogWriter implements Closeable {
+
+	private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final Durability durability;
+	private final long flushInterval;
+	private ByteBuffer scratch = ByteBuffer.allocate(256);
+	private long size;
+	private boolean dirty;
+	private long lastCommit = System.currentTimeMillis();
+
+	ChannelLogWriter(@Nonnull final File file, final int bufferSize, @Nonnull final Durability durability,
+	                 final long flushInterval) throws IOException {
+		this.channel = new FileOutputStream(file).getChannel();
+		this.buffer = ByteBuffer.allocateDirect(Math.max(1024, bufferSize));
+		this.durability = durability;
+		this.flushInterval = Math.max(0L, flushInterval);
+	}
+
+	/**
+	 * Gets the size of the file, including the bytes that haven't been
+	 * committed yet.
+	 */
+	@Contract(pure = true)
+	long size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets how many bytes {@link #writeLine(CharSequence) writing} the given
+	 * line takes, separator included.
+	 */
+	@Contract(pure = true)
+	static int lineLength(@Nonnull final CharSequence line) {
+		return utf8Length(line) + LINE_SEPARATOR.length;
+	}
+
+	/**
+	 * Gets how many bytes {@link #writeString(CharSequence) writing} the
+	 * given string takes, length prefix included.
+	 */
+	@Contract(pure = true)
+	static int stringLength(@Nonnull final CharSequence string) {
+		final int length = utf8Length(string);
+		return varLongLength(length) + length;
+	}
+
+	@Contract(pure = true)
+	static int varLongLength(final long value) {
+		int length = 1;
+		for (long remaining = value; (remaining & ~0x7FL) != 0L; remaining >>>= 7) ++length;
+		return length;
+	}
+
+	/*
+	 * Matches the encoder, which replaces unpaired surrogates with a single '?'.
+	 */
+	@Contract(pure = true)
+	private static int utf8Length(@Nonnull final CharSequence chars) {
+		int length = 0;
+		for (int i = 0; i < chars.length(); ++i) {
+			final char c = chars.charAt(i);
+			if (c < 0x80) {
+				++length;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (!Character.isSurrogate(c)) {
+				length += 3;
+			} else if (Character.isHighSurrogate(c) && i + 1 < chars.length() && Character.isLowSurrogate(chars.charAt(i + 1))) {
+				length += 4;
+				++i;
+			} else {
+				++length;
+			}
+		}
+		return length;
+	}
+
+	void writeLine(@Nonnull final CharSequence line) throws IOException {
+		final CharBuffer chars = CharBuffer.wrap(line);
+		this.encoder.reset();
+		for (CoderResult result = this.encode(chars); result.isOverflow(); result = this.encode(chars)) this.drain();
+		while (this.flushEncoder().isOverflow()) this.drain();
+		if (this.buffer.remaining() < LINE_SEPARATOR.length) this.drain();
+		this.buffer.put(LINE_SEPARATOR);
+		this.size += LINE_SEPARATOR.length;
+		this.dirty = true;
+	}
+
+	void writeByte(final int value) throws IOException {
+		if (!this.buffer.hasRemaining()) this.drain();
+		this.buffer.put((byte) value);
+		++this.size;
+		this.dirty = true;
+	}
+
+	void writeLong(final long value) throws IOException {
+		for (int shift = 56; shift >= 0; shift -= 8) this.writeByte((int) (value >>> shift));
+	}
+
+	/**
+	 * Writes the given value using a variable amount of bytes: 7 bits per
+	 * byte, with the highest bit set on all but the last one.
+	 */
+	void writeVarLong(final long value) throws IOException {
+		long remaining = value;
+		while ((remaining & ~0x7FL) != 0L) {
+			this.writeByte((int) ((remaining & 0x7F) | 0x80));
+			remaining >>>= 7;
+		}
+		this.writeByte((int) remaining);
+	}
+
+	/**
+	 * Writes the given string as UTF-8, prefixed by its length in bytes.
+	 */
+	void writeString(@Nonnull final CharSequence string) throws IOException {
+		final CharBuffer chars = CharBuffer.wrap(string);
+		this.scratch.clear();
+		this.encoder.reset();
+		while (this.encoder.encode(chars, this.scratch, true).isOverflow()) this.growScratch();
+		while (this.encoder.flush(this.scratch).isOverflow()) this.growScratch();
+		this.scratch.flip();
+		this.writeVarLong(this.scratch.remaining());
+		while (this.scratch.hasRemaining()) {
+			if (!this.buffer.hasRemaining()) this.drain();
+			final int length = Math.min(this.scratch.remaining(), this.buffer.remaining());
+			final int limit = this.scratch.limit();
+			this.scratch.limit(this.scratch.position() + length);
+			this.buffer.put(this.scratch);
+			this.scratch.limit(limit);
+			this.size += length;
+		}
+		this.dirty = true;
+		// Don't keep huge buffers around just because of a single big message
+		if (this.scratch.capacity() > 64 * 1024) this.scratch = ByteBuffer.allocate(256);
+	}
+
+	private void growScratch() {
+		final ByteBuffer grown = ByteBuffer.allocate(this.scratch.capacity() * 2);
+		this.scratch.flip();
+		grown.put(this.scratch);
+		this.scratch = grown;
+	}
+
+	@Nonnull
+	private CoderResult encode(@Nonnull final CharBuffer chars) {
+		final int before = this.buffer.position();
+		final CoderResult result = this.encoder.encode(chars, this.buffer, true);
+		this.size += this.buffer.position() - before;
+		return result;
+	}
+
+	@Nonnull
+	private CoderResult flushEncoder() {
+		final int before = this.buffer.position();
+		final CoderResult result = this.encoder.flush(this.buffer);
+		this.size += this.buffer.position() - before;
+		return result;
+	}
+
+	/**
+	 * Commits the current group if it is due, or immediately if requested.
+	 *
+	 * @param force
+	 *      Whether the group should be committed regardless of the interval.
+	 */
+	void commit(final boolean force) throws IOException {
+		final long now = System.currentTimeMillis();
+		if (!force && now - this.lastCommit < this.flushInterval) return;
+		this.lastCommit = now;
+		if (!this.dirty) return;
+		this.dirty = false;
+		this.drain();
+		switch (this.durability) {
+			case FLUSH_PER_BATCH:
+				this.channel.force(false);
+				break;
+			case FSYNC_PER_BATCH:
+				this.channel.force(true);
+				break;
+			default:
+				break;
+		}
+	}
+
+	private void drain() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) this.channel.write(this.buffer);
+		this.buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			this.commit(true);
+		} finally {
+			this.channel.close();
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Identifies how hard the log file writer tries to make sure that
+ * committed messages survive a crash of the whole system.
+ *
+ * <p>Messages are always committed in groups: a group ends when the
+ * write buffer is full, when the flush interval elapses or when an
+ * {@link Level#ERROR error} gets logged.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public enum Durability {
+	/**
+	 * Committed messages are handed over to the operating system, which
+	 * decides when to write them to disk. They survive a crash of the
+	 * software, but not of the system.
+	 */
+	OS_BUFFERED,
+	/**
+	 * Committed messages are forced to disk, without waiting for the
+	 * file metadata to be updated.
+	 */
+	FLUSH_PER_BATCH,
+	/**
+	 * Committed messages and file metadata are both forced to disk.
+	 */
+	FSYNC_PER_BATCH;
+
+	@Nonnull
+	public static Durability defaultDurability() {
+		try {
+			return Durability.valueOf(System.getProperty("net.thesilkminer.bibliotech.shared.logging.file.durability",
+					"OS_BUFFERED"));
+		} catch (final IllegalArgumentException e) {
+			return OS_BUFFERED;
+		}
+	}
+}
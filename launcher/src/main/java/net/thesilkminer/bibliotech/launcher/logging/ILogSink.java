@@ -0,0 +1,72 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import net.thesilkminer.bibliotech.launcher.ui.console.ConsoleFrame;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Marks a destination for the messages produced by the various
+ * {@link Logger loggers}.
+ *
+ * <p>Sinks are always invoked by a single thread at a time, so
+ * they don't need to handle synchronization on their own.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public interface ILogSink {
+
+	/**
+	 * Type used to identify all the default log sinks.
+	 *
+	 * @author TheSilkMiner
+	 *
+	 * @since 0.1
+	 */
+	enum Defaults {
+		;
+		public static final ILogSink STANDARD_OUTPUT = new ILogSink() {
+			@Override
+			public void accept(@Nonnull final LogEvent event) {
+				if (!Logger.isShown(event.level())) return;
+				System.out.println(event.line());
+			}
+
+			@Override
+			public void endOfBatch() {
+				System.out.flush();
+			}
+		};
+		public static final ILogSink CONSOLE = event -> ConsoleFrame.INSTANCE.appendLine(event.level(), event.line());
+	}
+
+	/**
+	 * Writes the given event to this sink.
+	 *
+	 * <p>The event is reused after this method returns, so do
+	 * <strong>NOT</strong> keep any reference to it.</p>
+	 *
+	 * @param event
+	 *      The event to write.
+	 *
+	 * @since 0.1
+	 */
+	void accept(@Nonnull final LogEvent event);
+
+	/**
+	 * Called after a batch of events has been written to this sink.
+	 *
+	 * <p>Sinks which buffer their output should flush it here.</p>
+	 *
+	 * @since 0.1
+	 */
+	default void endOfBatch() {}
+
+	/**
+	 * Closes this sink, releasing all the resources it holds.
+	 *
+	 * @since 0.1
+	 */
+	default void close() {}
+}
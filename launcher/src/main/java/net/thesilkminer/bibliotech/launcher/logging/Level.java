@@ -82,4 +82,13 @@ public enum Level {
 			return INFO;
 		}
 	}
+
+	@Nonnull
+	public static Level captureLevel() {
+		try {
+			return Level.valueOf(System.getProperty("net.thesilkminer.bibliotech.shared.logging.capture", "TRACE"));
+		} catch (final IllegalArgumentException e) {
+			return TRACE;
+		}
+	}
 }
@@ -0,0 +1,220 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import com.google.common.collect.Lists;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Compresses rolled log segments and enforces the retention policy
+ * of the archived ones.
+ *
+ * <p>All the work is performed on a single, low-priority background
+ * thread. Segments waiting to be compressed are kept on disk with the
+ * {@code .pending} extension, so that they get picked up again on the
+ * next start if the software exits before they have been archived.
+ * Every archive gets a {@link LogIndex} next to it.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+final class LogArchiver {
+
+	static final String PENDING_EXTENSION = ".log.pending";
+	static final String ARCHIVE_EXTENSION = ".zip";
+	private static final String HEADER_DATE = "# Log opened on date ";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File directory;
+	private final int maxCount;
+	private final long maxBytes;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "Log Archiver");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+
+	LogArchiver(@Nonnull final File directory, final int maxCount, final long maxBytes) {
+		this.directory = directory;
+		this.maxCount = maxCount;
+		this.maxBytes = maxBytes;
+	}
+
+	@Nonnull
+	static LogArchiver fromProperties(@Nonnull final File directory) {
+		return new LogArchiver(directory,
+				Integer.getInteger("net.thesilkminer.bibliotech.shared.logging.retention.count", 0),
+				Long.getLong("net.thesilkminer.bibliotech.shared.logging.retention.bytes", 0L));
+	}
+
+	/**
+	 * Gets the name, without extensions, of the archive for a segment
+	 * opened on the given date.
+	 */
+	@Nonnull
+	static String segmentName(@Nonnull final String date, final long epochSeconds) {
+		return String.format("log_%s_%d", date, epochSeconds);
+	}
+
+	/**
+	 * Formats the given time as the date used in archive names.
+	 */
+	@Nonnull
+	static String archiveDate(final long timestamp) {
+		final Calendar cal = new GregorianCalendar();
+		cal.setTimeInMillis(timestamp);
+		return String.format("%04d-%02d-%02d",
+				cal.get(Calendar.YEAR),
+				cal.get(Calendar.MONTH) + 1,
+				cal.get(Calendar.DAY_OF_MONTH));
+	}
+
+	/**
+	 * Reads the opening date from the header of the given log file.
+	 *
+	 * <p>Only the first few lines are read, since the header is always
+	 * at the beginning of the file. Binary files store the opening time
+	 * right after the magic number instead.</p>
+	 */
+	@Nonnull
+	static String readHeaderDate(@Nonnull final File log) {
+		try (final DataInputStream in = new DataInputStream(new FileInputStream(log))) {
+			final byte[] magic = new byte[BinaryLogFormat.MAGIC.length];
+			final int read = in.read(magic);
+			if (BinaryLogFormat.isBinary(magic, read)) {
+				in.readUnsignedByte();
+				return archiveDate(in.readLong());
+			}
+		} catch (final IOException ignored) {
+			// Fall back to the modification date
+			return archiveDate(log.lastModified());
+		}
+		try (final BufferedReader in = new BufferedReader(new FileReader(log))) {
+			String line = in.readLine();
+			for (int i = 0; line != null && i < 5; ++i, line = in.readLine()) {
+				if (!line.startsWith(HEADER_DATE)) continue;
+				final String[] dates = line.substring(HEADER_DATE.length()).trim().split("\\.");
+				if (dates.length != 3) break;
+				return String.format("%s-%s-%s", dates[2], dates[1], dates[0]);
+			}
+		} catch (final IOException ignored) {
+			// Fall back to the modification date
+		}
+		return archiveDate(log.lastModified());
+	}
+
+	/**
+	 * Schedules the given pending segment for compression.
+	 */
+	void submit(@Nonnull final File pending) {
+		this.executor.execute(() -> this.archive(pending));
+	}
+
+	/**
+	 * Schedules all the segments left over by a previous run.
+	 */
+	void recover() {
+		final File[] pending = this.directory.listFiles((dir, name) -> name.endsWith(PENDING_EXTENSION));
+		if (pending == null) return;
+		Arrays.sort(pending);
+		Arrays.stream(pending).forEach(this::submit);
+	}
+
+	/**
+	 * Compresses the given pending segment immediately, on the calling thread.
+	 */
+	void archive(@Nonnull final File pending) {
+		final String name = pending.getName().substring(0, pending.getName().length() - PENDING_EXTENSION.length());
+		final File archive = new File(this.directory, name + ARCHIVE_EXTENSION);
+		final File partial = new File(this.directory, name + ARCHIVE_EXTENSION + ".part");
+		this.archive$index(pending, new File(this.directory, name + LogIndex.EXTENSION));
+		try (final InputStream input = new FileInputStream(pending);
+		     final ZipOutputStream stream = new ZipOutputStream(
+				     new BufferedOutputStream(new FileOutputStream(partial), BUFFER_SIZE))) {
+			stream.putNextEntry(new ZipEntry(entryName(name)));
+			final byte[] data = new byte[BUFFER_SIZE];
+			for (int size = input.read(data); size != -1; size = input.read(data)) stream.write(data, 0, size);
+			stream.closeEntry();
+		} catch (final IOException e) {
+			// Keep the pending file around: we'll retry on the next start
+			if (!partial.delete()) partial.deleteOnExit();
+			return;
+		}
+		if (!partial.renameTo(archive) || !pending.delete()) return;
+		this.applyRetention();
+	}
+
+	private void archive$index(@Nonnull final File pending, @Nonnull final File index) {
+		try (final LogReader reader = LogReader.open(new FileInputStream(pending))) {
+			LogIndex.build(reader).write(index);
+		} catch (final IOException ignored) {
+			// Searches fall back to reading the whole archive
+		}
+	}
+
+	@Nonnull
+	private static String entryName(@Nonnull final String segmentName) {
+		// log_<date>_<epoch> -> log_<date>.log
+		final int epochSeparator = segmentName.lastIndexOf('_');
+		return (epochSeparator > 0? segmentName.substring(0, epochSeparator) : segmentName) + ".log";
+	}
+
+	private void applyRetention() {
+		if (this.maxCount <= 0 && this.maxBytes <= 0L) return;
+		final File[] found = this.directory.listFiles((dir, name) -> name.startsWith("log_")
+				&& name.endsWith(ARCHIVE_EXTENSION));
+		if (found == null) return;
+		final List<File> archives = Lists.newArrayList(found);
+		// Newest first: the epoch is part of the name, but the date may be missing
+		archives.sort((a, b) -> Long.compare(epochOf(b), epochOf(a)));
+		long total = 0L;
+		for (int i = 0; i < archives.size(); ++i) {
+			final File archive = archives.get(i);
+			total += archive.length();
+			final boolean tooMany = this.maxCount > 0 && i >= this.maxCount;
+			final boolean tooBig = this.maxBytes > 0L && total > this.maxBytes && i > 0;
+			if (tooMany || tooBig) this.delete(archive);
+		}
+	}
+
+	private void delete(@Nonnull final File archive) {
+		if (!archive.delete()) archive.deleteOnExit();
+		final String name = archive.getName();
+		final File index = new File(this.directory, name.substring(0, name.length() - ARCHIVE_EXTENSION.length())
+				+ LogIndex.EXTENSION);
+		if (index.exists() && !index.delete()) index.deleteOnExit();
+	}
+
+	@Contract(pure = true)
+	static long epochOf(@Nonnull final File archive) {
+		final String name = archive.getName();
+		final int end = name.indexOf('.');
+		final int start = name.lastIndexOf('_', end) + 1;
+		try {
+			return Long.parseLong(name.substring(start, end));
+		} catch (final NumberFormatException | StringIndexOutOfBoundsException e) {
+			return archive.lastModified() / 1000L;
+		}
+	}
+}
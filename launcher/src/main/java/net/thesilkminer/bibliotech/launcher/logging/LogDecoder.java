@@ -0,0 +1,111 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import com.google.common.collect.Lists;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Command line tool which converts log files back to the text layout.
+ *
+ * <p>Both text and binary files are accepted, either as they are (e.g.
+ * {@code latest.log}) or compressed in the archives created when rolling
+ * the log file ({@code log_*.zip}). Usage:</p>
+ *
+ * <pre>
+ * LogDecoder [--level LEVEL] [--source SOURCE]... [--from TIME] [--to TIME] [--grep TEXT] FILE...
+ * </pre>
+ *
+ * <p>Times are specified as {@code yyyy-MM-dd}, {@code yyyy-MM-dd'T'HH:mm}
+ * or {@code yyyy-MM-dd'T'HH:mm:ss}, in the local time zone.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class LogDecoder {
+
+	private final LogFilter filter;
+	private final Writer out;
+
+	private LogDecoder(@Nonnull final LogFilter filter, @Nonnull final Writer out) {
+		this.filter = filter;
+		this.out = out;
+	}
+
+	public static void main(@Nonnull final String... args) throws IOException {
+		final LogFilter.Builder filter = LogFilter.Builder.of();
+		final List<File> files = Lists.newArrayList();
+		try {
+			for (int i = 0; i < args.length; ++i) {
+				switch (args[i]) {
+					case "--level": filter.minimum(Level.valueOf(args[++i].toUpperCase(Locale.ENGLISH))); break;
+					case "--source": filter.source(args[++i]); break;
+					case "--from": filter.from(LogFilter.parseTime(args[++i])); break;
+					case "--to": filter.to(LogFilter.parseTime(args[++i])); break;
+					case "--grep": filter.text(args[++i]); break;
+					default: files.add(new File(args[i])); break;
+				}
+			}
+		} catch (final ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+			files.clear();
+		}
+		if (files.isEmpty()) {
+			System.err.println("Usage: LogDecoder [--level LEVEL] [--source SOURCE]... [--from TIME] [--to TIME]"
+					+ " [--grep TEXT] FILE...");
+			System.err.println("TIME is yyyy-MM-dd, yyyy-MM-dd'T'HH:mm or yyyy-MM-dd'T'HH:mm:ss");
+			System.exit(1);
+			return;
+		}
+
+		final Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 64 * 1024);
+		final LogDecoder decoder = new LogDecoder(filter.build(), out);
+		for (final File file : files) decoder.decode(file);
+		out.flush();
+	}
+
+	private void decode(@Nonnull final File file) throws IOException {
+		if (!file.getName().endsWith(LogArchiver.ARCHIVE_EXTENSION)) {
+			try (final InputStream in = new FileInputStream(file)) {
+				this.decode(in);
+			}
+			return;
+		}
+		try (final ZipInputStream zip = new ZipInputStream(new FileInputStream(file))) {
+			for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+				if (!entry.isDirectory()) this.decode(decode$keepOpen(zip));
+			}
+		}
+	}
+
+	private void decode(@Nonnull final InputStream in) throws IOException {
+		final LogReader reader = LogReader.open(in);
+		while (reader.next()) {
+			if (!this.filter.accepts(reader.timestamp(), reader.source(), reader.level(), reader.message())) continue;
+			this.out.write(reader.line());
+			this.out.write(System.lineSeparator());
+		}
+	}
+
+	@Nonnull
+	private static InputStream decode$keepOpen(@Nonnull final ZipInputStream zip) {
+		// Every entry shares the same stream, which must survive the reader
+		return new FilterInputStream(zip) {
+			@Override
+			public void close() {}
+		};
+	}
+}
@@ -0,0 +1,84 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import org.jetbrains.annotations.Contract;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Represents a single message travelling from a {@link Logger} to
+ * the various {@link ILogSink sinks}.
+ *
+ * <p>Instances of this class are preallocated and reused by the
+ * logging pipeline, so a sink must never hold a reference to an event
+ * after {@link ILogSink#accept(LogEvent)} has returned. Copy the
+ * needed values instead.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class LogEvent {
+
+	private Level level;
+	private String source;
+	private long timestamp;
+	private String message;
+	private String line;
+
+	LogEvent() {}
+
+	@Contract(pure = true)
+	@Nonnull
+	public Level level() {
+		return this.level;
+	}
+
+	@Contract(pure = true)
+	@Nonnull
+	public String source() {
+		return this.source;
+	}
+
+	@Contract(pure = true)
+	public long timestamp() {
+		return this.timestamp;
+	}
+
+	@Contract(pure = true)
+	@Nonnull
+	public String message() {
+		return this.message;
+	}
+
+	/**
+	 * Gets the fully formatted line, as it should appear in the log.
+	 *
+	 * @return
+	 *      The formatted line.
+	 *
+	 * @since 0.1
+	 */
+	@Contract(pure = true)
+	@Nonnull
+	public String line() {
+		return this.line;
+	}
+
+	void set(@Nonnull final Level level, @Nonnull final String source, final long timestamp, @Nonnull final String message) {
+		this.level = level;
+		this.source = source;
+		this.timestamp = timestamp;
+		this.message = message;
+		this.line = null;
+	}
+
+	void line(@Nonnull final String line) {
+		this.line = line;
+	}
+
+	void clear() {
+		this.source = null;
+		this.message = null;
+		this.line = null;
+	}
+}
@@ -0,0 +1,34 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Identifies the encoding used to write the log file.
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public enum LogFileFormat {
+	/**
+	 * Human readable lines, in the same layout used by the console.
+	 */
+	TEXT,
+	/**
+	 * Compact binary records, which need to be converted back to text
+	 * through the {@link LogDecoder}.
+	 *
+	 * @see BinaryLogFormat
+	 */
+	BINARY;
+
+	@Nonnull
+	public static LogFileFormat defaultFormat() {
+		try {
+			return LogFileFormat.valueOf(System.getProperty("net.thesilkminer.bibliotech.shared.logging.file.format",
+					"TEXT"));
+		} catch (final IllegalArgumentException e) {
+			return TEXT;
+		}
+	}
+}
@@ -0,0 +1,273 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import org.jetbrains.annotations.Contract;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Selects which log messages should be kept when reading back a log file.
+ *
+ * <p>Sources are matched hierarchically, so that the source {@code Auth}
+ * also selects {@code Auth.Database}. An empty set of sources selects
+ * every source.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class LogFilter {
+
+	public static final class Builder {
+
+		private Level minimum = Level.TRACE;
+		private final ImmutableSet.Builder<String> sources = ImmutableSet.builder();
+		private long from = Long.MIN_VALUE;
+		private long to = Long.MAX_VALUE;
+		private String text;
+
+		@Contract("-> !null")
+		@Nonnull
+		public static Builder of() {
+			return new Builder();
+		}
+
+		@Contract("-> !null")
+		@Nonnull
+		public LogFilter build() {
+			return new LogFilter(this.minimum, this.sources.build(), this.from, this.to, this.text);
+		}
+
+		@Contract("!null -> !null; null -> fail")
+		@Nonnull
+		public Builder minimum(@Nonnull final Level minimum) {
+			this.minimum = Preconditions.checkNotNull(minimum);
+			return this;
+		}
+
+		@Contract("!null -> !null; null -> fail")
+		@Nonnull
+		public Builder source(@Nonnull final String source) {
+			this.sources.add(Preconditions.checkNotNull(source));
+			return this;
+		}
+
+		@Contract("_ -> !null")
+		@Nonnull
+		public Builder from(final long from) {
+			this.from = from;
+			return this;
+		}
+
+		@Contract("_ -> !null")
+		@Nonnull
+		public Builder to(final long to) {
+			this.to = to;
+			return this;
+		}
+
+		@Contract("_ -> !null")
+		@Nonnull
+		public Builder text(@Nullable final String text) {
+			this.text = text == null || text.isEmpty()? null : text;
+			return this;
+		}
+	}
+
+	private static final String[] TIME_FORMATS = { "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd'T'HH:mm", "yyyy-MM-dd" };
+
+	private final Level minimum;
+	private final Set<String> sources;
+	private final long from;
+	private final long to;
+	private final String text;
+
+	private LogFilter(@Nonnull final Level minimum, @Nonnull final Set<String> sources, final long from, final long to,
+	                  @Nullable final String text) {
+		this.minimum = minimum;
+		this.sources = sources;
+		this.from = from;
+		this.to = to;
+		this.text = text;
+	}
+
+	/**
+	 * Parses a textual query into a filter.
+	 *
+	 * <p>The query is made of words separated by spaces, which can be
+	 * grouped with double quotes. The words {@code level:LEVEL},
+	 * {@code source:SOURCE} (repeatable), {@code from:TIME} and
+	 * {@code to:TIME} set the corresponding filter, while all the other
+	 * words are searched in the message text. E.g.
+	 * {@code level:error source:"Crash Handler" from:2016-05-10T09:00 to:2016-05-10T10:00}.</p>
+	 *
+	 * @param query
+	 *      The query.
+	 * @return
+	 *      The corresponding filter.
+	 * @throws IllegalArgumentException
+	 *      If the query contains an invalid level or time.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static LogFilter parse(@Nonnull final String query) {
+		final Builder builder = Builder.of();
+		final StringBuilder text = new StringBuilder();
+		for (final String word : parse$words(query)) {
+			final int separator = word.indexOf(':');
+			final String key = separator == -1? "" : word.substring(0, separator).toLowerCase(Locale.ENGLISH);
+			final String value = word.substring(separator + 1);
+			switch (key) {
+				case "level": builder.minimum(Level.valueOf(value.toUpperCase(Locale.ENGLISH))); break;
+				case "source": builder.source(value); break;
+				case "from": builder.from(parseTime(value)); break;
+				case "to": builder.to(parseTime(value)); break;
+				default: text.append(text.length() == 0? "" : " ").append(word); break;
+			}
+		}
+		return builder.text(text.toString()).build();
+	}
+
+	@Nonnull
+	private static List<String> parse$words(@Nonnull final String query) {
+		final List<String> words = Lists.newArrayList();
+		final StringBuilder word = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < query.length(); ++i) {
+			final char c = query.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (Character.isWhitespace(c) && !quoted) {
+				if (word.length() > 0) words.add(word.toString());
+				word.setLength(0);
+			} else {
+				word.append(c);
+			}
+		}
+		if (word.length() > 0) words.add(word.toString());
+		return words;
+	}
+
+	/**
+	 * Parses a time specified as {@code yyyy-MM-dd}, {@code yyyy-MM-dd'T'HH:mm}
+	 * or {@code yyyy-MM-dd'T'HH:mm:ss}, in the local time zone.
+	 *
+	 * @param time
+	 *      The time.
+	 * @return
+	 *      The time in milliseconds.
+	 * @throws IllegalArgumentException
+	 *      If the time doesn't match any of the formats.
+	 *
+	 * @since 0.1
+	 */
+	public static long parseTime(@Nonnull final String time) {
+		for (final String format : TIME_FORMATS) {
+			try {
+				final SimpleDateFormat parser = new SimpleDateFormat(format);
+				parser.setLenient(false);
+				return parser.parse(time).getTime();
+			} catch (final ParseException ignored) {
+				// Try the next format
+			}
+		}
+		throw new IllegalArgumentException("Invalid time " + time);
+	}
+
+	@Contract(pure = true)
+	@Nonnull
+	public Level minimum() {
+		return this.minimum;
+	}
+
+	@Contract(pure = true)
+	@Nonnull
+	public Set<String> sources() {
+		return this.sources;
+	}
+
+	@Contract(pure = true)
+	public long from() {
+		return this.from;
+	}
+
+	@Contract(pure = true)
+	public long to() {
+		return this.to;
+	}
+
+	@Contract(pure = true)
+	@Nullable
+	public String text() {
+		return this.text;
+	}
+
+	@Contract(pure = true)
+	public boolean acceptsLevel(@Nonnull final Level level) {
+		return level.ordinal() >= this.minimum.ordinal();
+	}
+
+	@Contract(pure = true)
+	public boolean acceptsSource(@Nonnull final String source) {
+		if (this.sources.isEmpty()) return true;
+		for (final String accepted : this.sources) {
+			if (source.equals(accepted)) return true;
+			if (source.startsWith(accepted) && source.length() > accepted.length()
+					&& source.charAt(accepted.length()) == '.') return true;
+		}
+		return false;
+	}
+
+	@Contract(pure = true)
+	public boolean acceptsTime(final long timestamp) {
+		return timestamp >= this.from && timestamp <= this.to;
+	}
+
+	/**
+	 * Gets whether the given message should be kept.
+	 *
+	 * @param timestamp
+	 *      The time of the message.
+	 * @param source
+	 *      The source of the message.
+	 * @param level
+	 *      The level of the message.
+	 * @param message
+	 *      The message itself.
+	 * @return
+	 *      If the message should be kept.
+	 *
+	 * @since 0.1
+	 */
+	@Contract(pure = true)
+	public boolean accepts(final long timestamp, @Nonnull final String source, @Nonnull final Level level,
+	                       @Nonnull final String message) {
+		return this.acceptsLevel(level) && this.acceptsTime(timestamp) && this.acceptsSource(source)
+				&& (this.text == null || message.contains(this.text));
+	}
+
+	@Contract(value = "-> !null", pure = true)
+	@Nonnull
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("minimum", this.minimum)
+				.add("sources", this.sources)
+				.add("from", this.from)
+				.add("to", this.to)
+				.add("text", this.text)
+				.toString();
+	}
+}
@@ -0,0 +1,181 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import org.jetbrains.annotations.Contract;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Formats log messages into the layout used by the log file and
+ * the console.
+ *
+ * <p>The layout is {@code dd/MM/yyyy hh:mm:ss AM [Source] [LEVEL] Message}.
+ * The date and time part only changes once per second, so it is
+ * rendered once and then shared by all the messages logged during
+ * that second. Everything else is written into a builder owned by
+ * the current thread, so formatting a message does not produce any
+ * garbage apart from the resulting string.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class LogFormatter {
+
+	private static final class Prefix {
+		private final long second;
+		private final char[] chars;
+
+		private Prefix(final long second, @Nonnull final char[] chars) {
+			this.second = second;
+			this.chars = chars;
+		}
+	}
+
+	private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+	private static final int MAX_RETAINED_CAPACITY = 8192;
+
+	private static volatile Prefix prefix = new Prefix(Long.MIN_VALUE, new char[0]);
+
+	private LogFormatter() {}
+
+	/**
+	 * Formats the given message.
+	 *
+	 * @param timestamp
+	 *      The time the message has been logged at, in milliseconds.
+	 * @param source
+	 *      The source of the message.
+	 * @param level
+	 *      The level of the message.
+	 * @param message
+	 *      The message itself.
+	 * @return
+	 *      The formatted line.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static String format(final long timestamp, @Nonnull final String source, @Nonnull final Level level,
+	                            @Nonnull final CharSequence message) {
+		StringBuilder builder = BUILDER.get();
+		if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+			// Don't keep huge buffers around just because of a single big message
+			builder = new StringBuilder(256);
+			BUILDER.set(builder);
+		}
+		builder.setLength(0);
+		return formatTo(builder, timestamp, source, level, message).toString();
+	}
+
+	/**
+	 * Formats the given message into the specified builder.
+	 *
+	 * @param builder
+	 *      The builder the line should be appended to.
+	 * @param timestamp
+	 *      The time the message has been logged at, in milliseconds.
+	 * @param source
+	 *      The source of the message.
+	 * @param level
+	 *      The level of the message.
+	 * @param message
+	 *      The message itself.
+	 * @return
+	 *      The given builder, for chaining.
+	 *
+	 * @since 0.1
+	 */
+	@Contract("_, _, _, _, _ -> param1")
+	@Nonnull
+	public static StringBuilder formatTo(@Nonnull final StringBuilder builder, final long timestamp,
+	                                     @Nonnull final String source, @Nonnull final Level level,
+	                                     @Nonnull final CharSequence message) {
+		builder.append(prefix(timestamp));
+		builder.append('[').append(source).append("] [").append(level.name()).append("] ");
+		builder.append(message);
+		return builder;
+	}
+
+	/**
+	 * Replaces every {@code {}} placeholder in the given pattern with
+	 * the corresponding argument.
+	 *
+	 * <p>Placeholders without a matching argument are left as they are,
+	 * while extra arguments are ignored. Arrays are expanded.</p>
+	 *
+	 * @param pattern
+	 *      The pattern.
+	 * @param arguments
+	 *      The arguments which should replace the placeholders.
+	 * @return
+	 *      The resulting message.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static String substitute(@Nonnull final String pattern, @Nullable final Object... arguments) {
+		if (arguments == null || arguments.length == 0) return pattern;
+		final StringBuilder builder = new StringBuilder(pattern.length() + 16 * arguments.length);
+		int start = 0;
+		int argument = 0;
+		for (int placeholder = pattern.indexOf("{}"); placeholder != -1 && argument < arguments.length;
+		     placeholder = pattern.indexOf("{}", start)) {
+			builder.append(pattern, start, placeholder);
+			appendArgument(builder, arguments[argument++]);
+			start = placeholder + 2;
+		}
+		return builder.append(pattern, start, pattern.length()).toString();
+	}
+
+	private static void appendArgument(@Nonnull final StringBuilder builder, @Nullable final Object argument) {
+		if (argument instanceof Object[]) builder.append(Arrays.deepToString((Object[]) argument));
+		else if (argument instanceof int[]) builder.append(Arrays.toString((int[]) argument));
+		else if (argument instanceof long[]) builder.append(Arrays.toString((long[]) argument));
+		else if (argument instanceof byte[]) builder.append(Arrays.toString((byte[]) argument));
+		else if (argument instanceof char[]) builder.append(Arrays.toString((char[]) argument));
+		else if (argument instanceof double[]) builder.append(Arrays.toString((double[]) argument));
+		else if (argument instanceof float[]) builder.append(Arrays.toString((float[]) argument));
+		else if (argument instanceof short[]) builder.append(Arrays.toString((short[]) argument));
+		else if (argument instanceof boolean[]) builder.append(Arrays.toString((boolean[]) argument));
+		else builder.append(argument);
+	}
+
+	@Nonnull
+	private static char[] prefix(final long timestamp) {
+		final long second = Math.floorDiv(timestamp, 1000L);
+		final Prefix current = prefix;
+		if (current.second == second) return current.chars;
+		final Prefix updated = new Prefix(second, renderPrefix(second * 1000L));
+		prefix = updated;
+		return updated.chars;
+	}
+
+	@Nonnull
+	private static char[] renderPrefix(final long timestamp) {
+		final Calendar cal = new GregorianCalendar();
+		cal.setTimeInMillis(timestamp);
+		final StringBuilder builder = new StringBuilder(24);
+		twoDigits(builder, cal.get(Calendar.DAY_OF_MONTH)).append('/');
+		twoDigits(builder, cal.get(Calendar.MONTH) + 1).append('/');
+		twoDigits(builder, cal.get(Calendar.YEAR)).append(' ');
+		twoDigits(builder, cal.get(Calendar.HOUR)).append(':');
+		twoDigits(builder, cal.get(Calendar.MINUTE)).append(':');
+		twoDigits(builder, cal.get(Calendar.SECOND)).append(' ');
+		builder.append(cal.get(Calendar.AM_PM) == Calendar.PM? "PM" : "AM").append(' ');
+		final char[] chars = new char[builder.length()];
+		builder.getChars(0, chars.length, chars, 0);
+		return chars;
+	}
+
+	@Contract("_, _ -> param1")
+	@Nonnull
+	private static StringBuilder twoDigits(@Nonnull final StringBuilder builder, final int value) {
+		if (value < 10) builder.append('0');
+		return builder.append(value);
+	}
+}
@@ -0,0 +1,377 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import org.jetbrains.annotations.Contract;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Holds the most recent formatted log lines, which the console reads
+ * and replays when the shown logging level changes.
+ *
+ * <p>The history is a ring buffer bounded both in the amount of
+ * lines and in the (estimated) amount of memory they take up: when
+ * either limit gets exceeded, the oldest lines are discarded.</p>
+ *
+ * <p>Every level also keeps an index of the positions of its own
+ * lines, so that replaying only the lines above a certain level
+ * costs proportionally to the amount of matching lines rather than
+ * to the size of the whole history.</p>
+ *
+ * <p>Every line is identified by a sequence number, which grows by one
+ * with every added line, so that readers such as the console can keep
+ * track of which lines they have already read and of which ones have
+ * been discarded in the meantime.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class LogHistory {
+
+	/**
+	 * Receives the lines replayed from a history.
+	 *
+	 * @author TheSilkMiner
+	 *
+	 * @since 0.1
+	 */
+	@FunctionalInterface
+	public interface IEntryConsumer {
+		/**
+		 * Receives a single line.
+		 *
+		 * @param sequence
+		 *      The sequence number of the line.
+		 * @param level
+		 *      The level of the line.
+		 * @param line
+		 *      The line itself.
+		 *
+		 * @since 0.1
+		 */
+		void accept(final long sequence, @Nonnull final Level level, @Nonnull final String line);
+	}
+
+	/**
+	 * Growable ring of sequence numbers, used as a per-level index.
+	 */
+	private static final class SequenceIndex {
+		private long[] data = new long[16];
+		private int head;
+		private int size;
+
+		private void add(final long sequence) {
+			if (this.size == this.data.length) {
+				final long[] grown = new long[this.data.length * 2];
+				for (int i = 0; i < this.size; ++i) grown[i] = this.get(i);
+				this.data = grown;
+				this.head = 0;
+			}
+			this.data[(this.head + this.size) % this.data.length] = sequence;
+			++this.size;
+		}
+
+		private void removeFirst() {
+			this.head = (this.head + 1) % this.data.length;
+			--this.size;
+		}
+
+		private long get(final int index) {
+			return this.data[(this.head + index) % this.data.length];
+		}
+
+		/*
+		 * Sequences are added in increasing order, so the index is sorted.
+		 */
+		private int indexOf(final long sequence) {
+			int low = 0;
+			int high = this.size;
+			while (low < high) {
+				final int middle = (low + high) >>> 1;
+				if (this.get(middle) < sequence) low = middle + 1;
+				else high = middle;
+			}
+			return low;
+		}
+
+		private void clear() {
+			this.data = new long[16];
+			this.head = 0;
+			this.size = 0;
+		}
+	}
+
+	// Rough size of a String instance and of its array, without the characters
+	private static final long LINE_OVERHEAD = 56L;
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final Level[] levels;
+	private final String[] lines;
+	private final SequenceIndex[] indexes = new SequenceIndex[Level.values().length];
+	private final long[] discarded = new long[Level.values().length];
+	private long head;
+	private long tail;
+	private long bytes;
+
+	public LogHistory(final int maxEntries, final long maxBytes) {
+		this.maxEntries = Math.max(1, maxEntries);
+		this.maxBytes = Math.max(1L, maxBytes);
+		this.levels = new Level[this.maxEntries];
+		this.lines = new String[this.maxEntries];
+		for (int i = 0; i < this.indexes.length; ++i) this.indexes[i] = new SequenceIndex();
+	}
+
+	@Nonnull
+	public static LogHistory fromProperties() {
+		return new LogHistory(
+				Integer.getInteger("net.thesilkminer.bibliotech.shared.logging.history.entries", 10000),
+				Long.getLong("net.thesilkminer.bibliotech.shared.logging.history.bytes", 4L * 1024L * 1024L)
+		);
+	}
+
+	@Contract(pure = true)
+	private static long weight(@Nonnull final String line) {
+		return LINE_OVERHEAD + 2L * line.length();
+	}
+
+	/**
+	 * Adds the given line, discarding the oldest ones if needed.
+	 *
+	 * @param level
+	 *      The level of the line.
+	 * @param line
+	 *      The line.
+	 * @return
+	 *      The sequence number of the line.
+	 *
+	 * @since 0.1
+	 */
+	public synchronized long add(@Nonnull final Level level, @Nonnull final String line) {
+		final long weight = weight(line);
+		while (this.tail > this.head && (this.tail - this.head >= this.maxEntries || this.bytes + weight > this.maxBytes)) {
+			this.evict();
+		}
+		final int slot = (int) (this.tail % this.maxEntries);
+		this.levels[slot] = level;
+		this.lines[slot] = line;
+		this.indexes[level.ordinal()].add(this.tail);
+		this.bytes += weight;
+		return this.tail++;
+	}
+
+	private void evict() {
+		final int slot = (int) (this.head % this.maxEntries);
+		this.bytes -= weight(this.lines[slot]);
+		this.indexes[this.levels[slot].ordinal()].removeFirst();
+		++this.discarded[this.levels[slot].ordinal()];
+		this.levels[slot] = null;
+		this.lines[slot] = null;
+		++this.head;
+	}
+
+	@Contract(pure = true)
+	public synchronized int size() {
+		return (int) (this.tail - this.head);
+	}
+
+	@Contract(pure = true)
+	public synchronized long bytes() {
+		return this.bytes;
+	}
+
+	/**
+	 * Gets the maximum amount of lines the history retains.
+	 */
+	@Contract(pure = true)
+	public int capacity() {
+		return this.maxEntries;
+	}
+
+	/**
+	 * Gets the sequence number of the oldest retained line.
+	 */
+	@Contract(pure = true)
+	public synchronized long first() {
+		return this.head;
+	}
+
+	/**
+	 * Gets the sequence number the next added line will get.
+	 */
+	@Contract(pure = true)
+	public synchronized long next() {
+		return this.tail;
+	}
+
+	/**
+	 * Gets the line with the given sequence number.
+	 *
+	 * @param sequence
+	 *      The sequence number.
+	 * @return
+	 *      The line, or {@code null} if it has been discarded or hasn't
+	 *      been added yet.
+	 *
+	 * @since 0.1
+	 */
+	@Nullable
+	public synchronized String line(final long sequence) {
+		if (sequence < this.head || sequence >= this.tail) return null;
+		return this.lines[(int) (sequence % this.maxEntries)];
+	}
+
+	/**
+	 * Gets the level of the line with the given sequence number.
+	 *
+	 * @param sequence
+	 *      The sequence number.
+	 * @return
+	 *      The level, or {@code null} if the line has been discarded or
+	 *      hasn't been added yet.
+	 *
+	 * @since 0.1
+	 */
+	@Nullable
+	public synchronized Level level(final long sequence) {
+		if (sequence < this.head || sequence >= this.tail) return null;
+		return this.levels[(int) (sequence % this.maxEntries)];
+	}
+
+	/**
+	 * Gets the amount of retained lines whose level is at least the given one.
+	 *
+	 * @param minimum
+	 *      The minimum level.
+	 * @return
+	 *      The amount of matching lines.
+	 *
+	 * @since 0.1
+	 */
+	public synchronized int count(@Nonnull final Level minimum) {
+		int count = 0;
+		for (int i = minimum.ordinal(); i < this.indexes.length; ++i) count += this.indexes[i].size;
+		return count;
+	}
+
+	/**
+	 * Gets how many lines whose level is at least the given one have been
+	 * added before the given sequence number, discarded ones included.
+	 *
+	 * <p>Discarded lines can't be told apart anymore, so all of them are
+	 * counted even if the sequence number is older than the first retained
+	 * line. A reader can compare this amount with the lines it has read to
+	 * know how many matching lines it missed.</p>
+	 *
+	 * @param minimum
+	 *      The minimum level.
+	 * @param sequence
+	 *      The sequence number.
+	 * @return
+	 *      The amount of matching lines.
+	 *
+	 * @since 0.1
+	 */
+	public synchronized long count(@Nonnull final Level minimum, final long sequence) {
+		long count = 0L;
+		for (int i = minimum.ordinal(); i < this.indexes.length; ++i) {
+			count += this.discarded[i] + this.indexes[i].indexOf(sequence);
+		}
+		return count;
+	}
+
+	/**
+	 * Replays all the retained lines whose level is at least the given one,
+	 * in the order they were logged.
+	 *
+	 * <p>The consumer is invoked outside of the history lock, so it is
+	 * free to perform expensive operations.</p>
+	 *
+	 * @param minimum
+	 *      The minimum level.
+	 * @param consumer
+	 *      The consumer which will receive the lines.
+	 *
+	 * @since 0.1
+	 */
+	public void replay(@Nonnull final Level minimum, @Nonnull final BiConsumer<Level, String> consumer) {
+		this.replay(minimum, Long.MIN_VALUE, (sequence, level, line) -> consumer.accept(level, line));
+	}
+
+	/**
+	 * Replays the retained lines whose level is at least the given one and
+	 * whose sequence number is at least the given one, in the order they
+	 * were logged.
+	 *
+	 * <p>The consumer is invoked outside of the history lock, so it is
+	 * free to perform expensive operations.</p>
+	 *
+	 * @param minimum
+	 *      The minimum level.
+	 * @param from
+	 *      The sequence number of the first line to replay.
+	 * @param consumer
+	 *      The consumer which will receive the lines.
+	 * @return
+	 *      The sequence number of the first line which hasn't been replayed,
+	 *      i.e. the one to start from to replay only the lines added later.
+	 *
+	 * @since 0.1
+	 */
+	public long replay(@Nonnull final Level minimum, final long from, @Nonnull final IEntryConsumer consumer) {
+		final long[] matchingSequences;
+		final Level[] matchingLevels;
+		final String[] matchingLines;
+		final long next;
+		synchronized (this) {
+			final int first = minimum.ordinal();
+			final int[] positions = new int[this.indexes.length];
+			int count = 0;
+			for (int i = first; i < this.indexes.length; ++i) {
+				positions[i] = this.indexes[i].indexOf(from);
+				count += this.indexes[i].size - positions[i];
+			}
+			matchingSequences = new long[count];
+			matchingLevels = new Level[count];
+			matchingLines = new String[count];
+			for (int found = 0; found < count; ++found) {
+				// Merge the per-level indexes, picking the oldest sequence each time
+				int best = -1;
+				long bestSequence = Long.MAX_VALUE;
+				for (int i = first; i < this.indexes.length; ++i) {
+					if (positions[i] >= this.indexes[i].size) continue;
+					final long sequence = this.indexes[i].get(positions[i]);
+					if (sequence < bestSequence) {
+						bestSequence = sequence;
+						best = i;
+					}
+				}
+				++positions[best];
+				final int slot = (int) (bestSequence % this.maxEntries);
+				matchingSequences[found] = bestSequence;
+				matchingLevels[found] = this.levels[slot];
+				matchingLines[found] = this.lines[slot];
+			}
+			next = this.tail;
+		}
+		for (int i = 0; i < matchingLines.length; ++i) {
+			consumer.accept(matchingSequences[i], matchingLevels[i], matchingLines[i]);
+		}
+		return next;
+	}
+
+	public synchronized void clear() {
+		Arrays.fill(this.levels, null);
+		Arrays.fill(this.lines, null);
+		for (int i = 0; i < this.indexes.length; ++i) {
+			this.discarded[i] += this.indexes[i].size;
+			this.indexes[i].clear();
+		}
+		this.head = this.tail;
+		this.bytes = 0L;
+	}
+}
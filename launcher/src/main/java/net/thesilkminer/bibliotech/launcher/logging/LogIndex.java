@@ -0,0 +1,256 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Sparse index of a single log segment.
+ *
+ * <p>The segment is split into blocks of roughly {@link #BLOCK_SIZE} bytes.
+ * For every block the index stores where it begins, the time range it
+ * covers, which levels and which sources appear in it. The sources
+ * are stored once per segment, in the order they first appear in, and
+ * referenced by their position in that dictionary. For binary files this
+ * matches the ids used in the file itself.</p>
+ *
+ * <p>The index is written next to the archive of the segment, with the
+ * {@link #EXTENSION} extension, so that searches only need to decompress
+ * the blocks which may contain matching messages.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class LogIndex {
+
+	/**
+	 * Summary of a single block of messages.
+	 */
+	static final class Block {
+		private final long offset;
+		private final long previousTimestamp;
+		private long first = Long.MAX_VALUE;
+		private long last = Long.MIN_VALUE;
+		private int levels;
+		private final BitSet sources;
+
+		private Block(final long offset, final long previousTimestamp, @Nonnull final BitSet sources) {
+			this.offset = offset;
+			this.previousTimestamp = previousTimestamp;
+			this.sources = sources;
+		}
+
+		@Contract(pure = true)
+		long offset() {
+			return this.offset;
+		}
+
+		@Contract(pure = true)
+		long previousTimestamp() {
+			return this.previousTimestamp;
+		}
+
+		@Contract(pure = true)
+		boolean matches(@Nonnull final LogFilter filter, @Nonnull final BitSet acceptedSources) {
+			if (this.last < filter.from() || this.first > filter.to()) return false;
+			if ((this.levels >>> filter.minimum().ordinal()) == 0) return false;
+			return this.sources.intersects(acceptedSources);
+		}
+	}
+
+	public static final String EXTENSION = ".idx";
+	static final int BLOCK_SIZE = 64 * 1024;
+	private static final int MAGIC = 0x42544C49; // BTLI
+	private static final int VERSION = 1;
+
+	private final List<String> sources;
+	private final List<Block> blocks;
+
+	private LogIndex(@Nonnull final List<String> sources, @Nonnull final List<Block> blocks) {
+		this.sources = ImmutableList.copyOf(sources);
+		this.blocks = ImmutableList.copyOf(blocks);
+	}
+
+	/**
+	 * Builds the index of a segment by reading it entirely.
+	 *
+	 * @param reader
+	 *      A reader positioned at the beginning of the segment.
+	 * @return
+	 *      The index of the segment.
+	 * @throws IOException
+	 *      If the segment can't be read.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static LogIndex build(@Nonnull final LogReader reader) throws IOException {
+		final List<String> sources = Lists.newArrayList();
+		final Map<String, Integer> ids = Maps.newHashMap();
+		final List<Block> blocks = Lists.newArrayList();
+		Block current = null;
+		long previous = reader.timestamp();
+		while (reader.next()) {
+			if (current == null || reader.recordPosition() - current.offset >= BLOCK_SIZE) {
+				current = new Block(reader.recordPosition(), previous, new BitSet());
+				blocks.add(current);
+			}
+			Integer id = ids.get(reader.source());
+			if (id == null) {
+				id = sources.size();
+				ids.put(reader.source(), id);
+				sources.add(reader.source());
+			}
+			current.first = Math.min(current.first, reader.timestamp());
+			current.last = Math.max(current.last, reader.timestamp());
+			current.levels |= 1 << reader.level().ordinal();
+			current.sources.set(id);
+			previous = reader.timestamp();
+		}
+		return new LogIndex(sources, blocks);
+	}
+
+	/**
+	 * Reads an index previously {@link #write(File) written} to disk.
+	 *
+	 * @param file
+	 *      The index file.
+	 * @return
+	 *      The index.
+	 * @throws IOException
+	 *      If the file can't be read or it isn't an index.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static LogIndex read(@Nonnull final File file) throws IOException {
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) throw new IOException(file + " is not a log index");
+			final int version = in.readUnsignedByte();
+			if (version != VERSION) throw new IOException("Unsupported log index version " + version);
+			final int sourceCount = in.readInt();
+			final List<String> sources = Lists.newArrayListWithCapacity(sourceCount);
+			for (int i = 0; i < sourceCount; ++i) sources.add(in.readUTF());
+			final int blockCount = in.readInt();
+			final List<Block> blocks = Lists.newArrayListWithCapacity(blockCount);
+			for (int i = 0; i < blockCount; ++i) {
+				final long offset = in.readLong();
+				final long previousTimestamp = in.readLong();
+				final long first = in.readLong();
+				final long last = in.readLong();
+				final int levels = in.readInt();
+				final long[] words = new long[in.readUnsignedShort()];
+				for (int j = 0; j < words.length; ++j) words[j] = in.readLong();
+				final Block block = new Block(offset, previousTimestamp, BitSet.valueOf(words));
+				block.first = first;
+				block.last = last;
+				block.levels = levels;
+				blocks.add(block);
+			}
+			return new LogIndex(sources, blocks);
+		}
+	}
+
+	/**
+	 * Writes the index to the given file, replacing it atomically.
+	 *
+	 * @param file
+	 *      The index file.
+	 * @throws IOException
+	 *      If the file can't be written.
+	 *
+	 * @since 0.1
+	 */
+	public void write(@Nonnull final File file) throws IOException {
+		final File partial = new File(file.getParentFile(), file.getName() + ".part");
+		try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partial)))) {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeInt(this.sources.size());
+			for (final String source : this.sources) out.writeUTF(source);
+			out.writeInt(this.blocks.size());
+			for (final Block block : this.blocks) {
+				out.writeLong(block.offset);
+				out.writeLong(block.previousTimestamp);
+				out.writeLong(block.first);
+				out.writeLong(block.last);
+				out.writeInt(block.levels);
+				final long[] words = block.sources.toLongArray();
+				out.writeShort(words.length);
+				for (final long word : words) out.writeLong(word);
+			}
+		}
+		try {
+			Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			if (!partial.delete()) partial.deleteOnExit();
+			throw e;
+		}
+	}
+
+	@Contract(pure = true)
+	@Nonnull
+	public List<String> sources() {
+		return this.sources;
+	}
+
+	@Contract(pure = true)
+	@Nonnull
+	List<Block> blocks() {
+		return this.blocks;
+	}
+
+	/**
+	 * Gets the blocks which may contain messages accepted by the given filter.
+	 *
+	 * @param filter
+	 *      The filter.
+	 * @return
+	 *      The matching blocks, in file order.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	List<Block> matching(@Nonnull final LogFilter filter) {
+		final BitSet accepted = new BitSet(this.sources.size());
+		for (int i = 0; i < this.sources.size(); ++i) if (filter.acceptsSource(this.sources.get(i))) accepted.set(i);
+		if (accepted.isEmpty()) return ImmutableList.of();
+		final List<Block> matching = Lists.newArrayList();
+		for (final Block block : this.blocks) if (block.matches(filter, accepted)) matching.add(block);
+		return matching;
+	}
+
+	/**
+	 * Gets the position where the block following the given one begins.
+	 *
+	 * @param block
+	 *      The block.
+	 * @return
+	 *      Where the next block begins, or {@link Long#MAX_VALUE} for the
+	 *      last block.
+	 */
+	long end(@Nonnull final Block block) {
+		final int index = this.blocks.indexOf(block);
+		return index + 1 < this.blocks.size()? this.blocks.get(index + 1).offset : Long.MAX_VALUE;
+	}
+}
@@ -0,0 +1,359 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import com.google.common.collect.Lists;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Reads back the messages stored in a log file, be it in the
+ * {@link LogFileFormat#TEXT text} or in the {@link LogFileFormat#BINARY binary}
+ * format.
+ *
+ * <p>The format is detected automatically. Text lines which don't
+ * follow the log layout (e.g. continuations of multi-line messages)
+ * are reported as messages with the same level, source and time of
+ * the previous one.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class LogReader implements Closeable {
+
+	private static final Level[] LEVELS = Level.values();
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[64 * 1024];
+	private int bufferPosition;
+	private int bufferLimit;
+	private long position;
+	private byte[] scratch = new byte[256];
+
+	private final boolean binary;
+	private final List<String> sources = Lists.newArrayList();
+	private final Calendar calendar = new GregorianCalendar();
+	private long lastTimestamp;
+
+	private long recordPosition;
+	private long timestamp;
+	private Level level = Level.INFO;
+	private String source = "";
+	private String message;
+	private String line;
+
+	private LogReader(@Nonnull final InputStream in) throws IOException {
+		this.in = in;
+		this.fill();
+		final byte[] header = new byte[BinaryLogFormat.MAGIC.length];
+		final int available = Math.min(header.length, this.bufferLimit);
+		System.arraycopy(this.buffer, 0, header, 0, available);
+		this.binary = BinaryLogFormat.isBinary(header, available);
+		if (!this.binary) return;
+		this.bufferPosition = header.length;
+		this.position = header.length;
+		final int version = this.readByte();
+		if (version != BinaryLogFormat.VERSION) throw new IOException("Unsupported binary log version " + version);
+		this.lastTimestamp = this.readLong();
+		this.timestamp = this.lastTimestamp;
+	}
+
+	/**
+	 * Opens a reader over the given stream, detecting its format.
+	 *
+	 * @param in
+	 *      The stream. It gets closed together with the reader.
+	 * @return
+	 *      A new reader.
+	 * @throws IOException
+	 *      If the stream can't be read.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static LogReader open(@Nonnull final InputStream in) throws IOException {
+		return new LogReader(in);
+	}
+
+	@Contract(pure = true)
+	public boolean binary() {
+		return this.binary;
+	}
+
+	/**
+	 * Moves to the next message.
+	 *
+	 * @return
+	 *      {@code true} if there is a message, {@code false} if the end of
+	 *      the file has been reached. A truncated last record (e.g. in a
+	 *      file which is still being written) is treated as the end of the
+	 *      file.
+	 * @throws IOException
+	 *      If the file can't be read or is corrupted.
+	 *
+	 * @since 0.1
+	 */
+	public boolean next() throws IOException {
+		try {
+			return this.binary? this.nextBinary() : this.nextText();
+		} catch (final EOFException e) {
+			return false;
+		}
+	}
+
+	private boolean nextBinary() throws IOException {
+		while (true) {
+			this.recordPosition = this.position;
+			final int tag = this.read();
+			if (tag == -1) return false;
+			if (tag == BinaryLogFormat.TAG_SOURCE) {
+				final int id = (int) this.readVarLong();
+				final String name = this.readString();
+				while (this.sources.size() <= id) this.sources.add("");
+				this.sources.set(id, name);
+				continue;
+			}
+			if (tag != BinaryLogFormat.TAG_EVENT) throw new IOException("Corrupted binary log: unknown tag " + tag);
+			final int ordinal = this.readByte();
+			final int id = (int) this.readVarLong();
+			final long delta = BinaryLogFormat.unZigZag(this.readVarLong());
+			final String text = this.readString();
+			this.level = ordinal < LEVELS.length? LEVELS[ordinal] : Level.INFO;
+			this.source = id < this.sources.size()? this.sources.get(id) : "#" + id;
+			this.timestamp = this.lastTimestamp + delta;
+			this.lastTimestamp = this.timestamp;
+			this.message = text;
+			this.line = null;
+			return true;
+		}
+	}
+
+	private boolean nextText() throws IOException {
+		while (true) {
+			this.recordPosition = this.position;
+			final String raw = this.readTextLine();
+			if (raw == null) return false;
+			if (raw.startsWith("# ") || raw.isEmpty()) continue;
+			this.line = raw;
+			if (!this.parseText(raw)) this.message = raw;
+			return true;
+		}
+	}
+
+	private boolean parseText(@Nonnull final String raw) {
+		// dd/MM/yyyy hh:mm:ss AM [Source] [LEVEL] Message
+		try {
+			final int firstSlash = raw.indexOf('/');
+			final int secondSlash = raw.indexOf('/', firstSlash + 1);
+			final int dateEnd = raw.indexOf(' ', secondSlash);
+			final int timeEnd = raw.indexOf(' ', dateEnd + 1);
+			final int markerEnd = raw.indexOf(' ', timeEnd + 1);
+			if (firstSlash != 2 || secondSlash != 5 || raw.charAt(markerEnd + 1) != '[') return false;
+			final int sourceEnd = raw.indexOf("] [", markerEnd);
+			final int levelEnd = raw.indexOf("] ", sourceEnd + 3);
+			if (sourceEnd == -1 || levelEnd == -1) return false;
+
+			final int day = Integer.parseInt(raw.substring(0, firstSlash));
+			final int month = Integer.parseInt(raw.substring(firstSlash + 1, secondSlash));
+			final int year = Integer.parseInt(raw.substring(secondSlash + 1, dateEnd));
+			final String[] time = raw.substring(dateEnd + 1, timeEnd).split(":");
+			if (time.length != 3) return false;
+			final boolean pm = "PM".equals(raw.substring(timeEnd + 1, markerEnd));
+			final Level parsedLevel = Level.valueOf(raw.substring(sourceEnd + 3, levelEnd));
+
+			this.calendar.clear();
+			this.calendar.set(year, month - 1, day, Integer.parseInt(time[0]) + (pm? 12 : 0),
+					Integer.parseInt(time[1]), Integer.parseInt(time[2]));
+			this.timestamp = this.calendar.getTimeInMillis();
+			this.level = parsedLevel;
+			this.source = raw.substring(markerEnd + 2, sourceEnd);
+			this.message = raw.substring(levelEnd + 2);
+			return true;
+		} catch (final RuntimeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the position in the file of the current message, in bytes.
+	 *
+	 * @return
+	 *      The position of the current message.
+	 *
+	 * @since 0.1
+	 */
+	@Contract(pure = true)
+	public long recordPosition() {
+		return this.recordPosition;
+	}
+
+	/**
+	 * Gets the position in the file right after the current message, in bytes.
+	 *
+	 * @return
+	 *      The position after the current message.
+	 *
+	 * @since 0.1
+	 */
+	@Contract(pure = true)
+	public long position() {
+		return this.position;
+	}
+
+	/**
+	 * Skips forward to the given position, which must be the beginning of
+	 * a message, as if all the previous messages had been read.
+	 *
+	 * @param target
+	 *      The position to skip to.
+	 * @param previousTimestamp
+	 *      The time of the message before the target one, needed to decode
+	 *      binary files.
+	 * @param dictionary
+	 *      The sources defined before the target position, in the order in
+	 *      which they have been defined, needed to decode binary files.
+	 * @throws IOException
+	 *      If the file can't be read or the position is behind the current one.
+	 */
+	void skipTo(final long target, final long previousTimestamp, @Nonnull final List<String> dictionary)
+			throws IOException {
+		if (target < this.position) throw new IOException("Unable to skip backwards to " + target);
+		final int buffered = (int) Math.min(target - this.position, this.bufferLimit - this.bufferPosition);
+		this.bufferPosition += buffered;
+		this.position += buffered;
+		while (this.position < target) {
+			final long skipped = this.in.skip(target - this.position);
+			if (skipped <= 0L) {
+				if (this.read() == -1) throw new EOFException();
+				continue;
+			}
+			this.position += skipped;
+		}
+		if (!this.binary) return;
+		this.lastTimestamp = previousTimestamp;
+		this.sources.clear();
+		this.sources.addAll(dictionary);
+	}
+
+	@Contract(pure = true)
+	public long timestamp() {
+		return this.timestamp;
+	}
+
+	@Contract(pure = true)
+	@Nonnull
+	public Level level() {
+		return this.level;
+	}
+
+	@Contract(pure = true)
+	@Nonnull
+	public String source() {
+		return this.source;
+	}
+
+	@Contract(pure = true)
+	@Nonnull
+	public String message() {
+		return this.message;
+	}
+
+	/**
+	 * Gets the current message in the text layout used by the log file.
+	 *
+	 * @return
+	 *      The message as a text line.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public String line() {
+		if (this.line == null) this.line = LogFormatter.format(this.timestamp, this.source, this.level, this.message);
+		return this.line;
+	}
+
+	private void fill() throws IOException {
+		this.bufferPosition = 0;
+		this.bufferLimit = Math.max(0, this.in.read(this.buffer));
+	}
+
+	private int read() throws IOException {
+		if (this.bufferPosition >= this.bufferLimit) {
+			this.fill();
+			if (this.bufferLimit == 0) return -1;
+		}
+		++this.position;
+		return this.buffer[this.bufferPosition++] & 0xFF;
+	}
+
+	private int readByte() throws IOException {
+		final int value = this.read();
+		if (value == -1) throw new EOFException();
+		return value;
+	}
+
+	private long readLong() throws IOException {
+		long value = 0L;
+		for (int i = 0; i < 8; ++i) value = (value << 8) | this.readByte();
+		return value;
+	}
+
+	private long readVarLong() throws IOException {
+		long value = 0L;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final int b = this.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw new IOException("Corrupted binary log: variable length number too long");
+	}
+
+	@Nonnull
+	private String readString() throws IOException {
+		final long length = this.readVarLong();
+		if (length < 0 || length > Integer.MAX_VALUE - 8) throw new IOException("Corrupted binary log: string too long");
+		final byte[] bytes = this.scratch((int) length);
+		for (int i = 0; i < length; ++i) bytes[i] = (byte) this.readByte();
+		return new String(bytes, 0, (int) length, StandardCharsets.UTF_8);
+	}
+
+	@Nullable
+	private String readTextLine() throws IOException {
+		int length = 0;
+		int b = this.read();
+		if (b == -1) return null;
+		while (b != -1 && b != '\n') {
+			final byte[] bytes = this.scratch(length + 1);
+			bytes[length++] = (byte) b;
+			b = this.read();
+		}
+		if (length > 0 && this.scratch[length - 1] == '\r') --length;
+		return new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+	@Nonnull
+	private byte[] scratch(final int size) {
+		if (this.scratch.length < size) {
+			final byte[] grown = new byte[Math.max(size, this.scratch.length * 2)];
+			System.arraycopy(this.scratch, 0, grown, 0, this.scratch.length);
+			this.scratch = grown;
+		}
+		return this.scratch;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.in.close();
+	}
+}
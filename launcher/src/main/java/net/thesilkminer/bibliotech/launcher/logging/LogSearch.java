@@ -0,0 +1,191 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import com.google.common.collect.Lists;
+
+import org.jetbrains.annotations.Contract;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Searches the messages stored in the current log file and in all the
+ * archived ones.
+ *
+ * <p>Archives with a {@link LogIndex} are only decompressed up to the last
+ * block which may contain matching messages, and the blocks in between
+ * which can't are skipped without being decoded. Archives which can't
+ * contain any matching message aren't opened at all.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class LogSearch {
+
+	/**
+	 * A message found by a search.
+	 */
+	public static final class Match {
+		private final String segment;
+		private final long timestamp;
+		private final Level level;
+		private final String source;
+		private final String message;
+		private final String line;
+
+		private Match(@Nonnull final String segment, @Nonnull final LogReader reader) {
+			this.segment = segment;
+			this.timestamp = reader.timestamp();
+			this.level = reader.level();
+			this.source = reader.source();
+			this.message = reader.message();
+			this.line = reader.line();
+		}
+
+		/**
+		 * Gets the name of the file the message has been found in.
+		 */
+		@Contract(pure = true)
+		@Nonnull
+		public String segment() {
+			return this.segment;
+		}
+
+		@Contract(pure = true)
+		public long timestamp() {
+			return this.timestamp;
+		}
+
+		@Contract(pure = true)
+		@Nonnull
+		public Level level() {
+			return this.level;
+		}
+
+		@Contract(pure = true)
+		@Nonnull
+		public String source() {
+			return this.source;
+		}
+
+		@Contract(pure = true)
+		@Nonnull
+		public String message() {
+			return this.message;
+		}
+
+		@Contract(pure = true)
+		@Nonnull
+		public String line() {
+			return this.line;
+		}
+	}
+
+	private final File directory;
+
+	public LogSearch(@Nonnull final File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Gets a search over the log directory of the software.
+	 *
+	 * @return
+	 *      A search over the log directory.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public static LogSearch inLogDirectory() {
+		return new LogSearch(Logger.logDirectory());
+	}
+
+	/**
+	 * Finds all the messages accepted by the given filter.
+	 *
+	 * <p>Archives are searched from the oldest to the newest, followed by
+	 * the current log file, so the matches are in chronological order.</p>
+	 *
+	 * @param filter
+	 *      The filter the messages must be accepted by.
+	 * @param limit
+	 *      The maximum amount of messages to find.
+	 * @return
+	 *      The matching messages.
+	 * @throws IOException
+	 *      If a log file can't be read.
+	 *
+	 * @since 0.1
+	 */
+	@Nonnull
+	public List<Match> search(@Nonnull final LogFilter filter, final int limit) throws IOException {
+		final List<Match> matches = Lists.newArrayList();
+		final File[] archives = this.directory.listFiles((dir, name) -> name.startsWith("log_")
+				&& name.endsWith(LogArchiver.ARCHIVE_EXTENSION));
+		if (archives != null) {
+			Arrays.sort(archives, (a, b) -> Long.compare(LogArchiver.epochOf(a), LogArchiver.epochOf(b)));
+			for (final File archive : archives) {
+				if (matches.size() >= limit) return matches;
+				this.searchArchive(archive, filter, limit, matches);
+			}
+		}
+		final File latest = new File(this.directory, "latest.log");
+		if (latest.exists() && matches.size() < limit) {
+			try (final LogReader reader = LogReader.open(new FileInputStream(latest))) {
+				this.scan(latest.getName(), reader, Long.MAX_VALUE, filter, limit, matches);
+			}
+		}
+		return matches;
+	}
+
+	private void searchArchive(@Nonnull final File archive, @Nonnull final LogFilter filter, final int limit,
+	                           @Nonnull final List<Match> matches) throws IOException {
+		final String name = archive.getName();
+		final File indexFile = new File(this.directory, name.substring(0, name.length()
+				- LogArchiver.ARCHIVE_EXTENSION.length()) + LogIndex.EXTENSION);
+		LogIndex index = null;
+		if (indexFile.exists()) {
+			try {
+				index = LogIndex.read(indexFile);
+			} catch (final IOException ignored) {
+				// Corrupted index: read the whole archive
+			}
+		}
+		final List<LogIndex.Block> blocks = index == null? null : index.matching(filter);
+		if (blocks != null && blocks.isEmpty()) return;
+
+		try (final ZipInputStream zip = new ZipInputStream(new FileInputStream(archive))) {
+			final ZipEntry entry = zip.getNextEntry();
+			if (entry == null) return;
+			final LogReader reader = LogReader.open(zip);
+			if (blocks == null) {
+				this.scan(name, reader, Long.MAX_VALUE, filter, limit, matches);
+				return;
+			}
+			for (final LogIndex.Block block : blocks) {
+				if (reader.position() < block.offset()) {
+					reader.skipTo(block.offset(), block.previousTimestamp(), index.sources());
+				}
+				if (!this.scan(name, reader, index.end(block), filter, limit, matches)) return;
+			}
+		}
+	}
+
+	private boolean scan(@Nonnull final String segment, @Nonnull final LogReader reader, final long end,
+	                     @Nonnull final LogFilter filter, final int limit, @Nonnull final List<Match> matches)
+			throws IOException {
+		while (reader.position() < end && reader.next()) {
+			if (!filter.accepts(reader.timestamp(), reader.source(), reader.level(), reader.message())) continue;
+			matches.add(new Match(segment, reader));
+			if (matches.size() >= limit) return false;
+		}
+		return true;
+	}
+}
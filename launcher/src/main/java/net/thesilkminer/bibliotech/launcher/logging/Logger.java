@@ -1,6 +1,5 @@
 package net.thesilkminer.bibliotech.launcher.logging;
 
-import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -8,26 +7,17 @@ import net.thesilkminer.bibliotech.launcher.crash.ReportedException;
 import net.thesilkminer.bibliotech.launcher.os.Os;
 import net.thesilkminer.bibliotech.launcher.ui.console.ConsoleFrame;
 
-import org.apache.commons.lang3.tuple.Pair;
+import org.jetbrains.annotations.Contract;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.awt.GraphicsEnvironment;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.function.Supplier;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Logger class used to print out all the various messages to
@@ -39,42 +29,83 @@ import javax.annotation.Nonnull;
  */
 public final class Logger {
 
-	private static final Map<String, Logger> CACHE = Maps.newLinkedHashMap();
-	private static Logger loggerLogger;
-	private static PrintWriter out;
-	private static Level minimum;
-	private static List<Pair<Level, String>> messagesCache;
+	private static final String LEVEL_PROPERTY = "net.thesilkminer.bibliotech.shared.logging.capture.";
+
+	private static final Map<String, Logger> CACHE = Maps.newConcurrentMap();
+	private static final Map<String, Level> LEVELS = Maps.newConcurrentMap();
+	private static final Object LEVELS_LOCK = new Object();
+	private static final Object LOCK = new Object();
+	private static final LogEvent SYNC_EVENT = new LogEvent();
+	private static final List<ILogSink> SINKS = Lists.newCopyOnWriteArrayList();
+	private static final LogHistory HISTORY = LogHistory.fromProperties();
+	private static volatile Logger loggerLogger;
+	private static volatile Level minimum = Level.defaultLevel();
+	private static volatile Level rootThreshold = Level.captureLevel();
+	private static volatile AsyncLogDispatcher dispatcher;
 	private final String source;
+	private volatile Level threshold;
 
 	private Logger(final String source) {
+		this.source = source;
+		this.threshold = resolveThreshold(source);
+		if (loggerLogger != null) loggerLogger.finer("Requested new logger for source {}", source);
+	}
+
+	static {
+		System.getProperties().stringPropertyNames().stream()
+				.filter(name -> name.startsWith(LEVEL_PROPERTY))
+				.forEach(name -> {
+					try {
+						LEVELS.put(name.substring(LEVEL_PROPERTY.length()), Level.valueOf(System.getProperty(name)));
+					} catch (final IllegalArgumentException ignored) {
+						// Invalid level: just use the inherited one
+					}
+				});
+
 		try {
-			initLogFile();
-			this.source = source;
-			if (messagesCache == null) messagesCache = Lists.newLinkedList();
-			if (minimum == null) minimum = Level.defaultLevel();
-			if (loggerLogger != null) loggerLogger.finer(String.format("Requested new logger for source %s", source));
+			SINKS.add(RollingFileSink.fromProperties(logDirectory()));
 		} catch (final IOException e) {
-			Throwables.propagate(e);
-			throw new RuntimeException(e); // Dead code, but who cares?
+			// Logging to the other sinks is better than not logging at all
+			System.err.println("Unable to open the log file: file logging has been disabled");
+			e.printStackTrace();
 		}
-	}
+		SINKS.add(ILogSink.Defaults.STANDARD_OUTPUT);
+		// No windows at all when headless: touching the console would initialize Swing
+		if (!GraphicsEnvironment.isHeadless()) SINKS.add(ILogSink.Defaults.CONSOLE);
 
-	static {
 		final String mainSource = "Logger";
 		loggerLogger = Logger.obtain(mainSource);
-		loggerLogger.finer(String.format("Requested new logger for source %s", mainSource));
+		loggerLogger.finer("Requested new logger for source {}", mainSource);
+
+		if (Boolean.parseBoolean(System.getProperty("net.thesilkminer.bibliotech.shared.logging.async", "false"))) {
+			dispatcher = new AsyncLogDispatcher(
+					Integer.getInteger("net.thesilkminer.bibliotech.shared.logging.async.size", 4096),
+					WaitStrategy.defaultStrategy(),
+					OverflowPolicy.defaultPolicy(),
+					OverflowPolicy.dropThreshold(),
+					Logger::dispatch,
+					Logger::endOfBatch
+			);
+			loggerLogger.fine("Asynchronous logging enabled ({} slots)", dispatcher.capacity());
+		}
 
-		Runtime.getRuntime().addShutdownHook(new Thread(out::close));
+		Runtime.getRuntime().addShutdownHook(new Thread(Logger::shutdown, "Logger Shutdown"));
 	}
 
 	@Nonnull
-	public static Logger obtain(final String source) {
-		if (!CACHE.containsKey(source)) CACHE.put(source, new Logger(source));
-		return CACHE.get(source);
+	public static Logger obtain(@Nonnull final String source) {
+		final Logger cached = CACHE.get(source);
+		if (cached != null) return cached;
+		final Logger created = CACHE.computeIfAbsent(source, Logger::new);
+		// A level may have changed while the logger was being created
+		synchronized (LEVELS_LOCK) {
+			created.threshold = resolveThreshold(source);
+		}
+		return created;
 	}
 
-	private static void initLogFile() throws IOException {
-		if (out != null) return;
+	@Nonnull
+	static File logDirectory() {
 		if (!Os.getCurrentOs().workingDir().exists() || !Os.getCurrentOs().workingDir().isDirectory()) {
 			if (!Os.getCurrentOs().workingDir().mkdirs()) {
 				final ReportedException exception = new ReportedException("Unable to create software directory");
@@ -83,131 +114,340 @@ public final class Logger {
 				throw exception;
 			}
 		}
-		out = new PrintWriter(new BufferedWriter(new FileWriter(obtainLogFile(Os.getCurrentOs().workingDir()))), true);
-		out.println("# Biblio-Tech v0.1 - LogFile");
-		final Calendar cal = new GregorianCalendar();
-		out.println(String.format("# Log opened on date %02d.%02d.%02d",
-				cal.get(Calendar.DAY_OF_MONTH),
-				cal.get(Calendar.MONTH) + 1,
-				cal.get(Calendar.YEAR)));
-	}
-
-	@Nonnull
-	@SuppressWarnings("ResultOfMethodCallIgnored")
-	private static File obtainLogFile(final File workingDir) {
-		final File logDir = new File(workingDir, "logs");
+		final File logDir = new File(Os.getCurrentOs().workingDir(), "logs");
 		if (!logDir.exists() && !logDir.mkdirs()) {
 			final ReportedException exception = new ReportedException("Unable to create logs directory");
 			exception.description("Unable to create log directory. Does this software have read/write "
 					+ "permissions for " + logDir.getAbsolutePath());
 			throw exception;
 		}
-		final File latest = new File(logDir, "latest.log");
-		if (latest.exists()) {
-			try {
-				final BufferedReader in = new BufferedReader(new FileReader(latest));
-				String date = "";
-				for (String line = ""; line != null; line = in.readLine()) {
-					if (!line.startsWith("# Log opened on date ")) continue;
-					line = line.replace("# Log opened on date ", "");
-					final String[] dates = line.replace('.', '-').split("-");
-					if (dates.length != 3) continue;
-					date = String.format("%s-%s-%s", dates[2], dates[1], dates[0]);
-				}
-				in.close();
-				final File backup = new File(logDir, String.format("log_%s_%d.zip", date,
-						System.currentTimeMillis() / 1000));
-				final ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(backup));
-				final ZipEntry log = new ZipEntry(String.format("log_%s.log", date));
-				stream.putNextEntry(log);
-				final byte[] data = new byte[2048];
-				final BufferedInputStream input = new BufferedInputStream(new FileInputStream(latest), 2048);
-				for (int size = -2; size != -1; size = input.read(data, 0, 2048)) {
-					if (size == -2) continue;
-					stream.write(data, 0, size);
-				}
-				input.close();
-				stream.closeEntry();
-				stream.close();
-				latest.delete();
-			} catch (final IOException e) {
-				Throwables.propagate(e);
-			}
-		}
-		try {
-			latest.createNewFile();
-		} catch (final IOException e) {
-			Throwables.propagate(e);
-		}
-		return latest;
+		return logDir;
+	}
+
+	/**
+	 * Gets the history of the most recent log lines, which the console
+	 * reads its lines from.
+	 *
+	 * <p>The history is only filled while the console is shown.</p>
+	 *
+	 * @return
+	 *      The log history.
+	 *
+	 * @since 0.1
+	 */
+	@Contract(pure = true)
+	@Nonnull
+	public static LogHistory history() {
+		return HISTORY;
 	}
 
 	public static void minimum(@Nonnull final Level minimum) {
 		Logger.minimum = minimum;
-		ConsoleFrame.INSTANCE.purge();
-		for (final Pair<Level, String> pair : messagesCache) {
-			if (pair.getLeft().ordinal() < minimum.ordinal()) continue;
-			ConsoleFrame.INSTANCE.appendLine(pair.getLeft(), pair.getRight());
+		if (!GraphicsEnvironment.isHeadless()) ConsoleFrame.INSTANCE.minimum(minimum);
+	}
+
+	/**
+	 * Sets the minimum level a message needs to have in order to be
+	 * recorded at all, both in the log file and in the console history.
+	 *
+	 * <p>This is the root threshold, which is used by all the sources
+	 * that don't have a specific one.</p>
+	 *
+	 * @param threshold
+	 *      The new threshold.
+	 *
+	 * @since 0.1
+	 */
+	public static void threshold(@Nonnull final Level threshold) {
+		synchronized (LEVELS_LOCK) {
+			rootThreshold = threshold;
+			refreshThresholds();
+		}
+	}
+
+	/**
+	 * Sets the minimum level a message coming from the given source needs
+	 * to have in order to be recorded.
+	 *
+	 * <p>Sources are hierarchical, using dots as separators: the threshold
+	 * set for {@code Launcher} also applies to {@code Launcher.Login},
+	 * unless the latter has a threshold of its own.</p>
+	 *
+	 * @param source
+	 *      The source.
+	 * @param threshold
+	 *      The new threshold, or {@code null} to inherit it from the parent.
+	 *
+	 * @since 0.1
+	 */
+	public static void threshold(@Nonnull final String source, @Nullable final Level threshold) {
+		synchronized (LEVELS_LOCK) {
+			if (threshold == null) LEVELS.remove(source);
+			else LEVELS.put(source, threshold);
+			refreshThresholds();
 		}
 	}
 
 	@Nonnull
-	private String format(@Nonnull final Level level, @Nonnull final String message) {
-		// Is GregorianCalendar cache-able?
-		final Calendar cal = new GregorianCalendar();
-		return String.format("%02d/%02d/%02d %02d:%02d:%02d %s [%s] [%s] %s",
-				cal.get(Calendar.DAY_OF_MONTH),
-				cal.get(Calendar.MONTH) + 1,
-				cal.get(Calendar.YEAR),
-				cal.get(Calendar.HOUR),
-				cal.get(Calendar.MINUTE),
-				cal.get(Calendar.SECOND),
-				cal.get(Calendar.AM_PM) == Calendar.SUNDAY? "PM" : "AM", //What? Why do I need to check against Sunday?
-				this.source,
-				level.toString(),
-				message);
+	private static Level resolveThreshold(@Nonnull final String source) {
+		for (String name = source; ; name = name.substring(0, name.lastIndexOf('.'))) {
+			final Level level = LEVELS.get(name);
+			if (level != null) return level;
+			if (name.lastIndexOf('.') == -1) return rootThreshold;
+		}
 	}
 
-	public void log(@Nonnull final Level level, @Nonnull final String message) {
-		final String msg = this.format(level, message);
-		out.println(msg);
-		messagesCache.add(Pair.of(level, msg));
+	private static void refreshThresholds() {
+		CACHE.values().forEach(logger -> logger.threshold = resolveThreshold(logger.source));
+	}
+
+	static boolean isShown(@Nonnull final Level level) {
+		return level.ordinal() >= minimum.ordinal();
+	}
 
-		if (level.ordinal() < minimum.ordinal()) return;
+	private static void shutdown() {
+		final AsyncLogDispatcher current = dispatcher;
+		if (current != null) {
+			current.shutdown(5000L);
+			dispatcher = null;
+			if (current.dropped() > 0) {
+				loggerLogger.warning("Dropped {} messages due to a full logging buffer", current.dropped());
+			}
+		}
+		synchronized (LOCK) {
+			SINKS.forEach(ILogSink::close);
+		}
+	}
+
+	private static void dispatch(@Nonnull final LogEvent event) {
+		final String msg = LogFormatter.format(event.timestamp(), event.source(), event.level(), event.message());
+		event.line(msg);
+		for (final ILogSink sink : SINKS) sink.accept(event);
+	}
+
+	private static void endOfBatch() {
+		SINKS.forEach(ILogSink::endOfBatch);
+	}
+
+	/**
+	 * Gets whether messages with the given level are recorded at all.
+	 *
+	 * <p>Use this to guard expensive message construction. Note that a
+	 * message may be recorded even if it is not currently shown in the
+	 * console, so that it can be shown later if the user lowers the
+	 * logging level.</p>
+	 *
+	 * @param level
+	 *      The level to check.
+	 * @return
+	 *      If messages with the given level are recorded.
+	 *
+	 * @since 0.1
+	 */
+	@Contract(pure = true)
+	public boolean isEnabled(@Nonnull final Level level) {
+		return level.ordinal() >= this.threshold.ordinal();
+	}
+
+	public void log(@Nonnull final Level level, @Nonnull final Supplier<String> message) {
+		if (!this.isEnabled(level)) return;
+		this.log$record(level, String.valueOf(message.get()));
+	}
+
+	public void log(@Nonnull final Level level, @Nonnull final String pattern, @Nullable final Object argument) {
+		if (!this.isEnabled(level)) return;
+		this.log$record(level, LogFormatter.substitute(pattern, argument));
+	}
+
+	public void log(@Nonnull final Level level, @Nonnull final String pattern, @Nullable final Object first,
+	                @Nullable final Object second) {
+		if (!this.isEnabled(level)) return;
+		this.log$record(level, LogFormatter.substitute(pattern, first, second));
+	}
 
-		System.out.println(msg);
-		ConsoleFrame.INSTANCE.appendLine(level, msg);
+	public void log(@Nonnull final Level level, @Nonnull final String pattern, @Nonnull final Object... arguments) {
+		if (!this.isEnabled(level)) return;
+		this.log$record(level, LogFormatter.substitute(pattern, arguments));
+	}
+
+	public void log(@Nonnull final Level level, @Nonnull final String message) {
+		if (!this.isEnabled(level)) return;
+		this.log$record(level, message);
+	}
+
+	private void log$record(@Nonnull final Level level, @Nonnull final String message) {
+		final long timestamp = System.currentTimeMillis();
+		final AsyncLogDispatcher current = dispatcher;
+		if (current != null && current.running()) {
+			// Dropped messages are accounted for by the dispatcher itself
+			current.publish(level, this.source, timestamp, message);
+			return;
+		}
+		synchronized (LOCK) {
+			SYNC_EVENT.set(level, this.source, timestamp, message);
+			dispatch(SYNC_EVENT);
+			endOfBatch();
+			SYNC_EVENT.clear();
+		}
 	}
 
 	public void trace(@Nonnull final String message) {
 		this.log(Level.TRACE, message);
 	}
 
+	public void trace(@Nonnull final Supplier<String> message) {
+		this.log(Level.TRACE, message);
+	}
+
+	public void trace(@Nonnull final String pattern, @Nullable final Object argument) {
+		this.log(Level.TRACE, pattern, argument);
+	}
+
+	public void trace(@Nonnull final String pattern, @Nullable final Object first, @Nullable final Object second) {
+		this.log(Level.TRACE, pattern, first, second);
+	}
+
+	public void trace(@Nonnull final String pattern, @Nonnull final Object... arguments) {
+		this.log(Level.TRACE, pattern, arguments);
+	}
+
 	public void debug(@Nonnull final String message) {
 		this.log(Level.DEBUG, message);
 	}
 
+	public void debug(@Nonnull final Supplier<String> message) {
+		this.log(Level.DEBUG, message);
+	}
+
+	public void debug(@Nonnull final String pattern, @Nullable final Object argument) {
+		this.log(Level.DEBUG, pattern, argument);
+	}
+
+	public void debug(@Nonnull final String pattern, @Nullable final Object first, @Nullable final Object second) {
+		this.log(Level.DEBUG, pattern, first, second);
+	}
+
+	public void debug(@Nonnull final String pattern, @Nonnull final Object... arguments) {
+		this.log(Level.DEBUG, pattern, arguments);
+	}
+
 	public void finest(@Nonnull final String message) {
 		this.log(Level.FINEST, message);
 	}
 
+	public void finest(@Nonnull final Supplier<String> message) {
+		this.log(Level.FINEST, message);
+	}
+
+	public void finest(@Nonnull final String pattern, @Nullable final Object argument) {
+		this.log(Level.FINEST, pattern, argument);
+	}
+
+	public void finest(@Nonnull final String pattern, @Nullable final Object first, @Nullable final Object second) {
+		this.log(Level.FINEST, pattern, first, second);
+	}
+
+	public void finest(@Nonnull final String pattern, @Nonnull final Object... arguments) {
+		this.log(Level.FINEST, pattern, arguments);
+	}
+
 	public void finer(@Nonnull final String message) {
 		this.log(Level.FINER, message);
 	}
 
+	public void finer(@Nonnull final Supplier<String> message) {
+		this.log(Level.FINER, message);
+	}
+
+	public void finer(@Nonnull final String pattern, @Nullable final Object argument) {
+		this.log(Level.FINER, pattern, argument);
+	}
+
+	public void finer(@Nonnull final String pattern, @Nullable final Object first, @Nullable final Object second) {
+		this.log(Level.FINER, pattern, first, second);
+	}
+
+	public void finer(@Nonnull final String pattern, @Nonnull final Object... arguments) {
+		this.log(Level.FINER, pattern, arguments);
+	}
+
 	public void fine(@Nonnull final String message) {
 		this.log(Level.FINE, message);
 	}
 
+	public void fine(@Nonnull final Supplier<String> message) {
+		this.log(Level.FINE, message);
+	}
+
+	public void fine(@Nonnull final String pattern, @Nullable final Object argument) {
+		this.log(Level.FINE, pattern, argument);
+	}
+
+	public void fine(@Nonnull final String pattern, @Nullable final Object first, @Nullable final Object second) {
+		this.log(Level.FINE, pattern, first, second);
+	}
+
+	public void fine(@Nonnull final String pattern, @Nonnull final Object... arguments) {
+		this.log(Level.FINE, pattern, arguments);
+	}
+
 	public void info(@Nonnull final String message) {
 		this.log(Level.INFO, message);
 	}
 
+	public void info(@Nonnull final Supplier<String> message) {
+		this.log(Level.INFO, message);
+	}
+
+	public void info(@Nonnull final String pattern, @Nullable final Object argument) {
+		this.log(Level.INFO, pattern, argument);
+	}
+
+	public void info(@Nonnull final String pattern, @Nullable final Object first, @Nullable final Object second) {
+		this.log(Level.INFO, pattern, first, second);
+	}
+
+	public void info(@Nonnull final String pattern, @Nonnull final Object... arguments) {
+		this.log(Level.INFO, pattern, arguments);
+	}
+
 	public void warning(@Nonnull final String message) {
 		this.log(Level.WARNING, message);
 	}
 
+	public void warning(@Nonnull final Supplier<String> message) {
+		this.log(Level.WARNING, message);
+	}
+
+	public void warning(@Nonnull final String pattern, @Nullable final Object argument) {
+		this.log(Level.WARNING, pattern, argument);
+	}
+
+	public void warning(@Nonnull final String pattern, @Nullable final Object first, @Nullable final Object second) {
+		this.log(Level.WARNING, pattern, first, second);
+	}
+
+	public void warning(@Nonnull final String pattern, @Nonnull final Object... arguments) {
+		this.log(Level.WARNING, pattern, arguments);
+	}
+
 	public void error(@Nonnull final String message) {
 		this.log(Level.ERROR, message);
 	}
+
+	public void error(@Nonnull final Supplier<String> message) {
+		this.log(Level.ERROR, message);
+	}
+
+	public void error(@Nonnull final String pattern, @Nullable final Object argument) {
+		this.log(Level.ERROR, pattern, argument);
+	}
+
+	public void error(@Nonnull final String pattern, @Nullable final Object first, @Nullable final Object second) {
+		this.log(Level.ERROR, pattern, first, second);
+	}
+
+	public void error(@Nonnull final String pattern, @Nonnull final Object... arguments) {
+		this.log(Level.ERROR, pattern, arguments);
+	}
 }
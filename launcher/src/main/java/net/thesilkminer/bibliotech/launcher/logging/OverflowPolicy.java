@@ -0,0 +1,48 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Identifies what happens to a message when the asynchronous
+ * logging buffer is full.
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public enum OverflowPolicy {
+	/**
+	 * The logging thread waits until there is enough space.
+	 */
+	BLOCK,
+	/**
+	 * The message gets discarded.
+	 */
+	DROP,
+	/**
+	 * The message gets discarded if its level is lower than the
+	 * {@link #dropThreshold() threshold}, otherwise the logging thread
+	 * waits as with {@link #BLOCK}.
+	 */
+	DROP_BELOW_LEVEL;
+
+	@Nonnull
+	public static OverflowPolicy defaultPolicy() {
+		try {
+			return OverflowPolicy.valueOf(System.getProperty(
+					"net.thesilkminer.bibliotech.shared.logging.async.overflow", "BLOCK"));
+		} catch (final IllegalArgumentException e) {
+			return BLOCK;
+		}
+	}
+
+	@Nonnull
+	public static Level dropThreshold() {
+		try {
+			return Level.valueOf(System.getProperty(
+					"net.thesilkminer.bibliotech.shared.logging.async.overflow.level", "WARNING"));
+		} catch (final IllegalArgumentException e) {
+			return Level.WARNING;
+		}
+	}
+}
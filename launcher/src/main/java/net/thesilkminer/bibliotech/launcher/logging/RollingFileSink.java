@@ -0,0 +1,233 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Writes all the log messages to {@code logs/latest.log}, rolling it
+ * over when it grows too big or when the day changes.
+ *
+ * <p>Messages are committed to the file in groups, according to the
+ * configured {@link Durability}: a group is committed when the write
+ * buffer is full, when an {@link Level#ERROR error} is logged or when
+ * the flush interval elapses, even if nothing else gets logged.</p>
+ *
+ * <p>Rolled segments are handed over to a {@link LogArchiver}, which
+ * compresses them in the background, so neither the logging thread
+ * nor the startup ever wait for the compression.</p>
+ *
+ * <p>Depending on the {@link LogFileFormat}, messages are either written
+ * as text lines or as {@link BinaryLogFormat binary records}.</p>
+ *
+ * <p>Once the file can't be written anymore, e.g. because the disk is
+ * full, the problem is reported on the standard error and the sink stops
+ * writing: later messages are dropped instead of failing the caller, so
+ * the other sinks and the crash handler keep working.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public final class RollingFileSink implements ILogSink {
+
+	private static final String LATEST = "latest.log";
+
+	private final File directory;
+	private final File latest;
+	private final long maxSize;
+	private final boolean daily;
+	private final LogArchiver archiver;
+	private final int bufferSize;
+	private final Durability durability;
+	private final long flushInterval;
+	private final LogFileFormat format;
+	private final BinaryLogFormat.Encoder encoder = new BinaryLogFormat.Encoder();
+
+	private ScheduledExecutorService flusher;
+	private ChannelLogWriter out;
+	private boolean closed;
+	private long headerSize;
+	private long openedAt;
+	private long nextRollover;
+
+	RollingFileSink(@Nonnull final File directory, final long maxSize, final boolean daily,
+	                @Nonnull final LogArchiver archiver, final int bufferSize, @Nonnull final Durability durability,
+	                final long flushInterval, @Nonnull final LogFileFormat format) throws IOException {
+		this.directory = directory;
+		this.latest = new File(directory, LATEST);
+		this.maxSize = maxSize;
+		this.daily = daily;
+		this.archiver = archiver;
+		this.bufferSize = bufferSize;
+		this.durability = durability;
+		this.flushInterval = flushInterval;
+		this.format = format;
+
+		// Leftovers first, otherwise the previous latest.log would be picked up twice
+		this.archiver.recover();
+		if (this.latest.exists()) this.roll$archive(this.latest, LogArchiver.readHeaderDate(this.latest));
+		this.open(System.currentTimeMillis());
+
+		if (flushInterval > 0L) {
+			this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, "Log Flusher");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.flusher.scheduleWithFixedDelay(this::tick, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Nonnull
+	static RollingFileSink fromProperties(@Nonnull final File directory) throws IOException {
+		return new RollingFileSink(directory,
+				Long.getLong("net.thesilkminer.bibliotech.shared.logging.rolling.size", 10L * 1024L * 1024L),
+				Boolean.parseBoolean(System.getProperty("net.thesilkminer.bibliotech.shared.logging.rolling.daily",
+						"true")),
+				LogArchiver.fromProperties(directory),
+				Integer.getInteger("net.thesilkminer.bibliotech.shared.logging.file.buffer", 64 * 1024),
+				Durability.defaultDurability(),
+				Long.getLong("net.thesilkminer.bibliotech.shared.logging.file.interval", 200L),
+				LogFileFormat.defaultFormat());
+	}
+
+	@Override
+	public synchronized void accept(@Nonnull final LogEvent event) {
+		if (this.closed) return;
+		final boolean binary = this.format == LogFileFormat.BINARY;
+		try {
+			final int length = binary? this.encoder.length(event) : ChannelLogWriter.lineLength(event.line());
+			if (this.shouldRoll(event.timestamp(), length)) this.roll(event.timestamp());
+			if (binary) this.encoder.write(this.out, event);
+			else this.out.writeLine(event.line());
+			if (event.level() == Level.ERROR) this.out.commit(true);
+		} catch (final IOException e) {
+			this.fail(e);
+		}
+	}
+
+	@Override
+	public synchronized void endOfBatch() {
+		if (this.closed) return;
+		try {
+			this.out.commit(false);
+		} catch (final IOException e) {
+			this.fail(e);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (this.closed) return;
+		try {
+			this.closed = true;
+			this.stopFlusher();
+			this.out.close();
+		} catch (final IOException e) {
+			this.fail(e);
+		}
+	}
+
+	private void stopFlusher() {
+		// The flusher holds the sink: leaving it running would leak both
+		if (this.flusher != null) this.flusher.shutdownNow();
+	}
+
+	private synchronized void tick() {
+		if (this.closed) return;
+		try {
+			this.out.commit(false);
+		} catch (final IOException e) {
+			this.fail(e);
+		} catch (final Throwable ignored) {
+			// Never kill the flusher
+		}
+	}
+
+	/*
+	 * Reported only once: the sink is closed, so nothing else gets written.
+	 */
+	private void fail(@Nonnull final IOException exception) {
+		this.closed = true;
+		this.stopFlusher();
+		System.err.println("Unable to write the log file " + this.latest + ": file logging has been disabled");
+		exception.printStackTrace();
+		try {
+			this.out.close();
+		} catch (final IOException ignored) {
+			// Already broken
+		}
+	}
+
+	private boolean shouldRoll(final long timestamp, final int length) {
+		if (this.daily && timestamp >= this.nextRollover) return true;
+		// Never roll a segment without messages, even if a single line exceeds the limit
+		return this.maxSize > 0L && this.out.size() > this.headerSize && this.out.size() + length > this.maxSize;
+	}
+
+	private void roll(final long timestamp) throws IOException {
+		this.out.close();
+		this.roll$archive(this.latest, LogArchiver.archiveDate(this.openedAt));
+		this.open(timestamp);
+	}
+
+	private boolean exists(@Nonnull final String segmentName) {
+		return new File(this.directory, segmentName + LogArchiver.PENDING_EXTENSION).exists()
+				|| new File(this.directory, segmentName + LogArchiver.ARCHIVE_EXTENSION).exists();
+	}
+
+	private void roll$archive(@Nonnull final File log, @Nonnull final String date) throws IOException {
+		long epoch = System.currentTimeMillis() / 1000L;
+		// Multiple segments may roll in the same second when rolling by size
+		while (this.exists(LogArchiver.segmentName(date, epoch))) ++epoch;
+		final File pending = new File(this.directory, LogArchiver.segmentName(date, epoch)
+				+ LogArchiver.PENDING_EXTENSION);
+		if (log.renameTo(pending)) {
+			this.archiver.submit(pending);
+			return;
+		}
+		// Unable to rename (e.g. file locked by another program): archive a copy synchronously
+		Files.copy(log.toPath(), pending.toPath());
+		this.archiver.archive(pending);
+		if (!log.delete()) throw new IOException("Unable to delete " + log);
+	}
+
+	private void open(final long timestamp) throws IOException {
+		this.out = new ChannelLogWriter(this.latest, this.bufferSize, this.durability, this.flushInterval);
+		this.openedAt = timestamp;
+		this.nextRollover = startOfNextDay(timestamp);
+
+		if (this.format == LogFileFormat.BINARY) {
+			this.encoder.start(this.out, timestamp);
+		} else {
+			final Calendar cal = new GregorianCalendar();
+			cal.setTimeInMillis(timestamp);
+			this.out.writeLine("# Biblio-Tech v0.1 - LogFile");
+			this.out.writeLine(String.format("# Log opened on date %02d.%02d.%02d",
+					cal.get(Calendar.DAY_OF_MONTH),
+					cal.get(Calendar.MONTH) + 1,
+					cal.get(Calendar.YEAR)));
+		}
+		this.headerSize = this.out.size();
+		this.out.commit(true);
+	}
+
+	private static long startOfNextDay(final long timestamp) {
+		final Calendar cal = new GregorianCalendar();
+		cal.setTimeInMillis(timestamp);
+		cal.set(Calendar.HOUR_OF_DAY, 0);
+		cal.set(Calendar.MINUTE, 0);
+		cal.set(Calendar.SECOND, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+		cal.add(Calendar.DAY_OF_MONTH, 1);
+		return cal.getTimeInMillis();
+	}
+}
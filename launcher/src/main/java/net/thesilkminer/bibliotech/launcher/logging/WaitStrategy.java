@@ -0,0 +1,78 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Identifies how the logging thread waits for new messages when
+ * asynchronous logging is enabled.
+ *
+ * <p>Strategies are listed from the cheapest in terms of CPU usage
+ * to the one with the lowest latency.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public enum WaitStrategy {
+	/**
+	 * Parks the logging thread until a producer wakes it up.
+	 */
+	BLOCKING {
+		@Override
+		void idle(@Nonnull final AsyncLogDispatcher dispatcher, final int idleCount) {
+			dispatcher.awaitSignal(TimeUnit.MILLISECONDS.toNanos(10));
+		}
+
+		@Override
+		void signal(@Nonnull final AsyncLogDispatcher dispatcher) {
+			dispatcher.signal();
+		}
+	},
+	/**
+	 * Spins for a while, then sleeps for short periods of time.
+	 */
+	SLEEPING {
+		@Override
+		void idle(@Nonnull final AsyncLogDispatcher dispatcher, final int idleCount) {
+			if (idleCount < 100) return;
+			if (idleCount < 200) {
+				Thread.yield();
+				return;
+			}
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+		}
+	},
+	/**
+	 * Yields the logging thread's time slice continuously.
+	 */
+	YIELDING {
+		@Override
+		void idle(@Nonnull final AsyncLogDispatcher dispatcher, final int idleCount) {
+			Thread.yield();
+		}
+	},
+	/**
+	 * Keeps the logging thread spinning: burns a whole core.
+	 */
+	BUSY_SPIN {
+		@Override
+		void idle(@Nonnull final AsyncLogDispatcher dispatcher, final int idleCount) {}
+	};
+
+	abstract void idle(@Nonnull final AsyncLogDispatcher dispatcher, final int idleCount);
+
+	void signal(@Nonnull final AsyncLogDispatcher dispatcher) {}
+
+	@Nonnull
+	public static WaitStrategy defaultStrategy() {
+		try {
+			return WaitStrategy.valueOf(System.getProperty("net.thesilkminer.bibliotech.shared.logging.async.wait",
+					"BLOCKING"));
+		} catch (final IllegalArgumentException e) {
+			return BLOCKING;
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package net.thesilkminer.bibliotech.launcher.ui;
+
+import net.thesilkminer.bibliotech.launcher.logging.Logger;
+
+import org.jetbrains.annotations.Contract;
+
+import java.awt.EventQueue;
+import java.awt.Window;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Watches the event dispatcher thread, reporting when it stops responding.
+ *
+ * <p>A heartbeat is posted to the event queue at a fixed interval, and the
+ * time it takes to be dispatched is recorded into a {@link Histogram}. If a
+ * heartbeat isn't dispatched within the threshold, the stack of the event
+ * dispatcher thread and the lock it waits for are logged, so that the code
+ * freezing the user interface can be found.</p>
+ *
+ * <p>The interval and the threshold, in milliseconds, are set through the
+ * {@code net.thesilkminer.bibliotech.shared.ui.watchdog.interval} (100 by
+ * default) and {@code net.thesilkminer.bibliotech.shared.ui.watchdog.threshold}
+ * (500 by default) properties. A threshold of 0 disables the watchdog.
+ * No heartbeat is posted while there are no windows, so that the watchdog
+ * doesn't keep AWT alive.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+public enum EdtWatchdog {
+
+	INSTANCE;
+
+	/**
+	 * Distribution of the time heartbeats took to be dispatched.
+	 *
+	 * <p>Latencies are counted in buckets whose bounds are powers of two, in
+	 * milliseconds: the first bucket holds latencies below 1 ms, the second
+	 * ones below 2 ms, the third ones below 4 ms and so on.</p>
+	 */
+	public static final class Histogram {
+		private static final int BUCKETS = 32;
+
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+		private Histogram() {}
+
+		private void record(final long millis) {
+			this.counts.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis)));
+		}
+
+		/**
+		 * Gets how many latencies have been recorded.
+		 */
+		public long count() {
+			long count = 0L;
+			for (int i = 0; i < BUCKETS; ++i) count += this.counts.get(i);
+			return count;
+		}
+
+		/**
+		 * Gets the latency below which the given fraction of the heartbeats
+		 * has been dispatched.
+		 *
+		 * @param fraction
+		 *      The fraction, between 0 and 1, e.g. 0.99 for the 99th percentile.
+		 * @return
+		 *      The upper bound, in milliseconds, of the bucket containing the
+		 *      percentile, or 0 if nothing has been recorded.
+		 *
+		 * @since 0.1
+		 */
+		public long percentile(final double fraction) {
+			final long[] snapshot = new long[BUCKETS];
+			long total = 0L;
+			for (int i = 0; i < BUCKETS; ++i) total += snapshot[i] = this.counts.get(i);
+			if (total == 0L) return 0L;
+			final long target = Math.max(1L, (long) Math.ceil(total * fraction));
+			long seen = 0L;
+			for (int i = 0; i < BUCKETS; ++i) {
+				seen += snapshot[i];
+				if (seen >= target) return upperBound(i);
+			}
+			return upperBound(BUCKETS - 1);
+		}
+
+		/**
+		 * Gets the upper bound of the highest non empty bucket.
+		 *
+		 * @return
+		 *      The upper bound in milliseconds, or 0 if nothing has been recorded.
+		 */
+		public long max() {
+			for (int i = BUCKETS - 1; i >= 0; --i) {
+				if (this.counts.get(i) > 0L) return upperBound(i);
+			}
+			return 0L;
+		}
+
+		private static long upperBound(final int bucket) {
+			return 1L << bucket;
+		}
+
+		@Contract(value = "-> !null", pure = true)
+		@Nonnull
+		@Override
+		public String toString() {
+			final StringBuilder builder = new StringBuilder();
+			builder.append(this.count()).append(" heartbeats, 50% < ").append(this.percentile(0.5))
+					.append(" ms, 90% < ").append(this.percentile(0.9))
+					.append(" ms, 99% < ").append(this.percentile(0.99))
+					.append(" ms, max < ").append(this.max()).append(" ms");
+			for (int i = 0; i < BUCKETS; ++i) {
+				final long count = this.counts.get(i);
+				if (count > 0L) builder.append("\n< ").append(upperBound(i)).append(" ms: ").append(count);
+			}
+			return builder.toString();
+		}
+	}
+
+	private final class Heartbeat implements Runnable {
+		private final long posted = System.nanoTime();
+		private final CountDownLatch dispatched = new CountDownLatch(1);
+
+		@Override
+		public void run() {
+			EdtWatchdog.this.histogram.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.posted));
+			EdtWatchdog.this.edt = Thread.currentThread().getId();
+			this.dispatched.countDown();
+		}
+	}
+
+	private final Histogram histogram = new Histogram();
+	private volatile long edt = -1L;
+	private Thread thread;
+
+	/**
+	 * Starts watching the event dispatcher thread, unless it is already
+	 * being watched or the watchdog is disabled.
+	 *
+	 * @since 0.1
+	 */
+	public synchronized void start() {
+		final long threshold = Long.getLong("net.thesilkminer.bibliotech.shared.ui.watchdog.threshold", 500L);
+		if (this.thread != null || threshold <= 0L) return;
+		final long interval = Long.getLong("net.thesilkminer.bibliotech.shared.ui.watchdog.interval", 100L);
+		this.thread = new Thread(() -> this.watch(interval, threshold), "EDT Watchdog");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Gets the distribution of the latencies of the event dispatcher thread.
+	 *
+	 * @return
+	 *      The live histogram of the latencies.
+	 *
+	 * @since 0.1
+	 */
+	@Contract(pure = true)
+	@Nonnull
+	public Histogram latencies() {
+		return this.histogram;
+	}
+
+	private void watch(final long interval, final long threshold) {
+		final Logger log = Logger.obtain("EDT Watchdog");
+		final long poll = Math.max(10L, threshold / 4L);
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				if (!this.watch$windows()) {
+					Thread.sleep(interval);
+					continue;
+				}
+				final Heartbeat heartbeat = new Heartbeat();
+				EventQueue.invokeLater(heartbeat);
+				boolean stalled = false;
+				while (!heartbeat.dispatched.await(poll, TimeUnit.MILLISECONDS)) {
+					final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - heartbeat.posted);
+					if (stalled || elapsed < threshold) continue;
+					stalled = true;
+					log.warning("The event dispatcher thread has not responded for {} ms:\n{}", elapsed, this.watch$stack());
+				}
+				if (stalled) {
+					log.warning("The event dispatcher thread responded again after {} ms",
+							TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - heartbeat.posted));
+				}
+				Thread.sleep(interval);
+			}
+		} catch (final InterruptedException ignored) {
+			// Stop watching
+		}
+	}
+
+	/*
+	 * Pending events keep AWT alive: without windows, heartbeats would prevent it from shutting down.
+	 */
+	private boolean watch$windows() {
+		for (final Window window : Window.getWindows()) {
+			if (window.isDisplayable()) return true;
+		}
+		return false;
+	}
+
+	@Nonnull
+	private String watch$stack() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		final ThreadInfo info = this.watch$edt(bean);
+		if (info == null) return "\t[the event dispatcher thread can't be found]";
+		final StringBuilder builder = new StringBuilder();
+		builder.append('\t').append(info.getThreadName()).append(" (").append(info.getThreadState()).append(")");
+		if (info.getLockName() != null) {
+			builder.append(" waiting for ").append(info.getLockName());
+			if (info.getLockOwnerName() != null) builder.append(" held by \"").append(info.getLockOwnerName()).append('"');
+		}
+		final StackTraceElement[] stack = info.getStackTrace();
+		final MonitorInfo[] monitors = info.getLockedMonitors();
+		for (int depth = 0; depth < stack.length; ++depth) {
+			builder.append("\n\t\tat ").append(stack[depth]);
+			for (final MonitorInfo monitor : monitors) {
+				if (monitor.getLockedStackDepth() == depth) builder.append("\n\t\t- locked ").append(monitor);
+			}
+		}
+		for (final LockInfo synchronizer : info.getLockedSynchronizers()) {
+			builder.append("\n\t\t- holds ").append(synchronizer);
+		}
+		return builder.toString();
+	}
+
+	@Nullable
+	private ThreadInfo watch$edt(@Nonnull final ThreadMXBean bean) {
+		final boolean monitors = bean.isObjectMonitorUsageSupported();
+		final boolean synchronizers = bean.isSynchronizerUsageSupported();
+		if (this.edt != -1L) {
+			final ThreadInfo[] infos = bean.getThreadInfo(new long[] { this.edt }, monitors, synchronizers);
+			if (infos.length > 0 && infos[0] != null) return infos[0];
+		}
+		// No heartbeat has been dispatched yet, or the thread has been replaced
+		for (final ThreadInfo info : bean.dumpAllThreads(monitors, synchronizers)) {
+			if (info != null && info.getThreadName().startsWith("AWT-EventQueue")) return info;
+		}
+		return null;
+	}
+}
@@ -1,11 +1,11 @@
 package net.thesilkminer.bibliotech.launcher.ui;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
 
 import net.thesilkminer.bibliotech.launcher.Launcher;
 import net.thesilkminer.bibliotech.launcher.auth.AuthData;
-import net.thesilkminer.bibliotech.launcher.auth.AuthDatabase;
-import net.thesilkminer.bibliotech.launcher.crash.ReportedException;
+import net.thesilkminer.bibliotech.launcher.auth.LoginThrottle;
 import net.thesilkminer.bibliotech.launcher.locale.Languages;
 import net.thesilkminer.bibliotech.launcher.locale.StatCollector;
 import net.thesilkminer.bibliotech.launcher.logging.Level;
@@ -15,6 +15,7 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.Nls;
 
 import java.awt.Color;
+import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
@@ -22,9 +23,11 @@ import java.awt.GridLayout;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -37,6 +40,8 @@ import javax.swing.JPasswordField;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.WindowConstants;
 
 /**
@@ -50,6 +55,7 @@ public class LauncherFrame extends JFrame {
 
 	@Nls private static final String BRUTE$MESSAGE = "launcher.login.bruteForce.message";
 	@Nls private static final String BRUTE$TITLE = "launcher.login.bruteForce.title";
+	@Nls private static final String CANCEL = "launcher.login.button.cancel";
 	@Nls private static final String CLEAR = "launcher.login.button.clear";
 	@Nls private static final String INVALID$MESSAGE = "launcher.login.wrongDetails.message";
 	@Nls private static final String INVALID$TITLE = "launcher.login.wrongDetails.title";
@@ -73,7 +79,9 @@ public class LauncherFrame extends JFrame {
 	private final JCheckBox updates;
 	private final Map<String, JLabel> labels = Maps.newHashMap();
 
-	private int loginTimes;
+	private final String station = LoginThrottle.localClient();
+	private CompletableFuture<String> login;
+	private String session;
 
 	public LauncherFrame() {
 		super();
@@ -315,56 +323,24 @@ public class LauncherFrame extends JFrame {
 		this.log.setEnabled(true);
 		this.setAutoRequestFocus(true);
 		this.log.addActionListener(e -> {
+			if (this.login != null) {
+				this.login.cancel(false);
+				Launcher.logger().info("Login cancelled");
+				this.login$reset();
+				return;
+			}
 			final AuthData data = new AuthData.Builder().user(this.userNameField.getText())
 					.pass(this.passField.getPassword()).build();
 			this.passField.setText("");
-			this.log.setEnabled(false);
 			this.log.setText(StatCollector.INSTANCE.translateToLocal(LOGGING));
-			Launcher.logger().trace("Attempting login with specified data " + data);
-			if (!AuthDatabase.DATABASE.populated()) AuthDatabase.DATABASE.populate();
-			final boolean isValid = AuthDatabase.DATABASE.isValidData(data);
-			if (!isValid) {
-				this.log.setEnabled(true);
-				this.log.setText(StatCollector.INSTANCE.translateToLocal(LOGIN));
-				Launcher.logger().warning("Wrong login details");
-				JOptionPane.showMessageDialog(this,
-						StatCollector.INSTANCE.translateToLocal(INVALID$MESSAGE),
-						StatCollector.INSTANCE.translateToLocal(INVALID$TITLE),
-						JOptionPane.ERROR_MESSAGE,
-						null);
-				this.loginTimes++;
-
-				if (this.loginTimes >= 5) {
-					Launcher.logger().error("Wrong login details 5 times in a row");
-					Launcher.logger().error("Assuming brute force attack");
-					Launcher.logger().error("Shutting down...");
-					JOptionPane.showMessageDialog(this,
-							StatCollector.INSTANCE.translateToLocal(BRUTE$MESSAGE),
-							StatCollector.INSTANCE.translateToLocal(BRUTE$TITLE),
-							JOptionPane.ERROR_MESSAGE,
-							null);
-					final ReportedException exception = new ReportedException();
-					exception.description("Brute force attack detected");
-					// Now let's have some fun...
-					final byte[] bytes = new byte[1024]; // 1 kb of information, wow!
-					//final byte[] bytes = new byte[1024 * 1024] // Let's avoid being evil with 1 MB of characters
-					//final byte[] bytes = new byte[1024 * 1024 * 1024] // Or even a GB
-					new Random(new Random(System.currentTimeMillis()).nextLong()).nextBytes(bytes); // Randomness...
-					bytes[0] = 'i'; // Let's avoid crashing right as soon as a "toString()" is invoked
-					bytes[1] = 'd'; // Just complete the word
-					for (int i = 0; i < bytes.length; ++i) {
-						if (bytes[i] == '\n') bytes[i] = -100; // Whatever -100 is in characters...
-						if (bytes[i] == '\r') bytes[i] = 100; // Whatever 100 is in characters...
-					}
-					exception.addCustomProvider(new String(bytes), (report, builder) -> {
-						throw new RuntimeException();
-					});
-					throw exception;
-				}
-				return;
-			}
-
-			// TODO Launch software
+			this.log.setToolTipText(StatCollector.INSTANCE.translateToLocal(CANCEL));
+			this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+			Launcher.logger().trace("Attempting login with specified data {}", data);
+			final String user = data.userName();
+			final CompletableFuture<String> attempt = LoginWorker.submit(data, this.station);
+			this.login = attempt;
+			attempt.whenComplete((session, error) ->
+					SwingUtilities.invokeLater(() -> this.login$complete(attempt, user, session, error)));
 		});
 
 		c.gridx = 1;
@@ -390,12 +366,62 @@ public class LauncherFrame extends JFrame {
 		this.setVisible(true);
 	}
 
+	private void login$reset() {
+		this.login = null;
+		this.log.setText(StatCollector.INSTANCE.translateToLocal(LOGIN));
+		this.log.setToolTipText(null);
+		this.setCursor(Cursor.getDefaultCursor());
+	}
+
+	/*
+	 * Runs on the event dispatcher thread once the login worker is done: failed attempts have already been counted by
+	 * the login throttle.
+	 */
+	private void login$complete(@Nonnull final CompletableFuture<String> attempt, @Nonnull final String user,
+	                            @Nullable final String session, @Nullable final Throwable error) {
+		// Cancelled, so the user is not waiting for it anymore
+		if (this.login != attempt) return;
+		this.login$reset();
+		if (error != null) throw Throwables.propagate(error);
+		if (session == null) {
+			final long delay = LoginThrottle.INSTANCE.delay(user, this.station);
+			if (delay <= 0L) {
+				Launcher.logger().warning("Wrong login details");
+				JOptionPane.showMessageDialog(this,
+						StatCollector.INSTANCE.translateToLocal(INVALID$MESSAGE),
+						StatCollector.INSTANCE.translateToLocal(INVALID$TITLE),
+						JOptionPane.ERROR_MESSAGE,
+						null);
+				return;
+			}
+			final long seconds = TimeUnit.MILLISECONDS.toSeconds(delay + 999L);
+			Launcher.logger().warning("Too many failed logins: next login allowed in {} seconds", seconds);
+			// A timer re-enables the button, so that no thread has to wait
+			this.log.setEnabled(false);
+			final Timer timer = new Timer((int) Math.min(Integer.MAX_VALUE, delay), e -> this.log.setEnabled(true));
+			timer.setRepeats(false);
+			timer.start();
+			JOptionPane.showMessageDialog(this,
+					String.format(StatCollector.INSTANCE.translateToLocal(BRUTE$MESSAGE), seconds),
+					StatCollector.INSTANCE.translateToLocal(BRUTE$TITLE),
+					JOptionPane.ERROR_MESSAGE,
+					null);
+			return;
+		}
+
+		this.session = session;
+		Launcher.logger().info("Logged in");
+
+		// TODO Launch software
+	}
+
 	private void refreshLabels() {
 		Launcher.logger().trace("Reloading labels");
 		this.labels.entrySet().stream().forEach(entry ->
 				entry.getValue().setText(StatCollector.INSTANCE.translateToLocal(entry.getKey())));
 		this.updates.setText(StatCollector.INSTANCE.translateToLocal(UPDATES$SEARCH));
-		this.log.setText(StatCollector.INSTANCE.translateToLocal(LOGIN));
+		this.log.setText(StatCollector.INSTANCE.translateToLocal(this.login == null? LOGIN : LOGGING));
+		if (this.login != null) this.log.setToolTipText(StatCollector.INSTANCE.translateToLocal(CANCEL));
 		this.clear.setText(StatCollector.INSTANCE.translateToLocal(CLEAR));
 
 		// Wait for a second. Just as a safety thing
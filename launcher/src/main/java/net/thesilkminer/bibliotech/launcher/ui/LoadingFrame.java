@@ -78,7 +78,7 @@ public class LoadingFrame extends JFrame {
 		this.bar.setStringPainted(false);
 		this.bar.setString(message);
 		this.bar.setStringPainted(true);
-		Launcher.logger().trace("New progress bar message set: " + message);
+		Launcher.logger().trace("New progress bar message set: {}", message);
 	}
 
 	@SuppressWarnings("WeakerAccess")
@@ -87,29 +87,28 @@ public class LoadingFrame extends JFrame {
 		this.updateProgressBarMessage(message);
 		this.bar.setValue(val);
 
-		Launcher.logger().trace("New progress bar progress set: " + newVal);
+		Launcher.logger().trace("New progress bar progress set: {}", newVal);
 
 		if (val >= 100) this.setVisible(false); // We think the task is completed.
 	}
 
 	@SuppressWarnings("WeakerAccess")
 	public final void updateProgressBarGently(final int newVal, final String message) {
-		Launcher.logger().trace("Updating progress bar gently to " + newVal);
+		Launcher.logger().trace("Updating progress bar gently to {}", newVal);
 		final int val = Math.max(0, Math.min(100, Math.max(this.bar.getValue(), newVal)));
 		int start = this.bar.getValue();
 		for (; start <= val; ++start) {
 			final int newV = start;
 
 			try {
-				EventQueue.invokeAndWait(() -> {
-					try {
-						Thread.sleep(50);
-					} catch (final InterruptedException e) {
-						throw new RuntimeException("Unable to update progress bar gently");
-					}
-
-					this.updateProgressBar(newV, message);
-				});
+				// Wait here: sleeping on the event dispatcher thread would freeze every window
+				Thread.sleep(50);
+			} catch (final InterruptedException e) {
+				throw new RuntimeException("Unable to update progress bar gently");
+			}
+
+			try {
+				EventQueue.invokeAndWait(() -> this.updateProgressBar(newV, message));
 			} catch (final Exception e) {
 				throw new RuntimeException(e);
 			}
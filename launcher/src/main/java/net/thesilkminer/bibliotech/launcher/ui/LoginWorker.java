@@ -0,0 +1,71 @@
+package net.thesilkminer.bibliotech.launcher.ui;
+
+import net.thesilkminer.bibliotech.launcher.auth.AuthData;
+import net.thesilkminer.bibliotech.launcher.auth.AuthDatabase;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Checks login data away from the event dispatcher thread.
+ *
+ * <p>Loading the accounts and hashing the password take long enough to
+ * freeze the user interface, so they are run by a dedicated thread. The
+ * result is given as a future which can be cancelled: a login which hasn't
+ * started yet is skipped, while one already running is left to complete,
+ * but its result is discarded.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+final class LoginWorker {
+
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, "Login Worker");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private LoginWorker() {}
+
+	/**
+	 * Starts checking the given data.
+	 *
+	 * <p>The password in the data is cleared once it has been checked, or
+	 * once the login has been cancelled.</p>
+	 *
+	 * @param data
+	 *      The data to check.
+	 * @param client
+	 *      The client the login comes from.
+	 * @return
+	 *      A future completed with the token of the new session, {@code null}
+	 *      if the data isn't valid or the login has been throttled, or with
+	 *      the exception thrown while checking it.
+	 */
+	@Nonnull
+	static CompletableFuture<String> submit(@Nonnull final AuthData data, @Nonnull final String client) {
+		final CompletableFuture<String> result = new CompletableFuture<>();
+		final Future<?> task = EXECUTOR.submit(() -> {
+			try {
+				if (result.isDone()) return;
+				if (!AuthDatabase.DATABASE.populated()) AuthDatabase.DATABASE.populate();
+				result.complete(AuthDatabase.DATABASE.authenticate(data, client));
+			} catch (final Throwable t) {
+				result.completeExceptionally(t);
+			} finally {
+				data.secure();
+			}
+		});
+		result.whenComplete((session, error) -> {
+			// The password is cleared by the task itself, so it must not be interrupted
+			if (result.isCancelled() && task.cancel(false)) data.secure();
+		});
+		return result;
+	}
+}
@@ -4,19 +4,34 @@ import com.google.common.base.Throwables;
 
 import net.thesilkminer.bibliotech.launcher.crash.ReportedException;
 import net.thesilkminer.bibliotech.launcher.logging.Level;
+import net.thesilkminer.bibliotech.launcher.logging.LogFilter;
+import net.thesilkminer.bibliotech.launcher.logging.LogHistory;
+import net.thesilkminer.bibliotech.launcher.logging.LogSearch;
+import net.thesilkminer.bibliotech.launcher.logging.Logger;
 
+import org.jetbrains.annotations.Contract;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
 import java.awt.Dimension;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.annotation.Nonnull;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JDialog;
 import javax.swing.JFrame;
+import javax.swing.JList;
+import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
-import javax.swing.JTextPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.WindowConstants;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.Document;
-import javax.swing.text.SimpleAttributeSet;
-import javax.swing.text.StyleConstants;
 
 /**
  * Holds the frame where the console will be shown.
@@ -34,7 +49,16 @@ public class ConsoleFrame extends JFrame {
 	 */
 	public final void init() {}
 
-	private final JTextPane logBox;
+	private static final int SEARCH_LIMIT = 5000;
+	private static final int SCROLL_TOLERANCE = 16;
+
+	// The console can't show more lines than the history retains, so it shows all of them by default
+	private final ConsoleModel model = new ConsoleModel(Logger.history(), Integer.getInteger(
+			"net.thesilkminer.bibliotech.shared.logging.console.lines", Logger.history().capacity()), Level.defaultLevel());
+	private final JList<String> logBox;
+	private final JScrollPane scrollPane;
+	private final JTextField searchBox;
+	private int longestWidth;
 
 	private ConsoleFrame() {
 		super();
@@ -44,33 +68,40 @@ public class ConsoleFrame extends JFrame {
 		this.setMinimumSize(new Dimension(800, 400));
 		this.setSize(new Dimension(800, 400));
 
-		this.logBox = new JTextPane() {
-			@Override
-			public boolean getScrollableTracksViewportHeight() {
-				return false;
-			}
-
+		// Only the visible rows are ever rendered, so the amount of lines doesn't matter.
+		// We hate line-wrapping too: if you want to see the whole message, just scroll.
+		this.logBox = new JList<>(this.model);
+		this.logBox.setCellRenderer(new DefaultListCellRenderer() {
 			@Override
-			public boolean getScrollableTracksViewportWidth() {
-				// We hate line-wrapping: we really do.
-				// If you want to see the whole message, just scroll.
-				// Usually line wrapping means that a log line gets split
-				// into various lines and I really don't like that behaviour.
-				// I may make this configurable, though.
-				// TODO Ask my UX experts
-				return false;
+			public Component getListCellRendererComponent(final JList<?> list, final Object value, final int index,
+			                                              final boolean isSelected, final boolean cellHasFocus) {
+				super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+				if (!isSelected) this.setForeground(ConsoleFrame.this.model.levelAt(index).color());
+				return this;
 			}
-		};
-		this.logBox.setEditable(false);
-		this.logBox.setMargin(null);
+		});
+		// A fixed size avoids measuring every line whenever the model changes
+		this.logBox.setFixedCellHeight(this.logBox.getFontMetrics(this.logBox.getFont()).getHeight() + 2);
+		this.logBox.setFixedCellWidth(800);
 
-		final JScrollPane scrollPane = new JScrollPane(this.logBox,
+		this.scrollPane = new JScrollPane(this.logBox,
 				ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS,
 				ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
 
-		this.add(scrollPane);
+		this.searchBox = new JTextField();
+		this.searchBox.setToolTipText("Search all logs, e.g. level:error source:\"Crash Handler\" "
+				+ "from:2016-05-10T09:00 to:2016-05-10T10:00 text");
+		this.searchBox.addActionListener(event -> this.search(this.searchBox.getText()));
+
+		this.add(this.searchBox, BorderLayout.NORTH);
+		this.add(this.scrollPane, BorderLayout.CENTER);
 		this.pack();
 		this.setVisible(true);
+
+		final Timer refresher = new Timer(Integer.getInteger(
+				"net.thesilkminer.bibliotech.shared.logging.console.refresh", 50), event -> this.refresh());
+		refresher.setCoalesce(true);
+		refresher.start();
 	}
 
 	@Deprecated
@@ -79,40 +110,150 @@ public class ConsoleFrame extends JFrame {
 		this.appendLine(Level.INFO, line);
 	}
 
+	/**
+	 * Adds the given line to the {@link Logger#history() log history} the
+	 * console shows.
+	 *
+	 * <p>This method can be called from any thread: the event dispatcher
+	 * thread pulls the new lines from the history in batches, at most once
+	 * every refresh interval. Lines are retained even if their level is
+	 * below the {@link #minimum(Level) minimum} one, so that they can be
+	 * shown if the minimum gets lowered. Lines spanning multiple rows are
+	 * split, so that every row can be rendered on its own.</p>
+	 *
+	 * <p>If the console can't keep up, the history discards some lines
+	 * before they are pulled. Those lines are counted as dropped, and the
+	 * amount is logged.</p>
+	 *
+	 * @param level
+	 *      The level of the line, which determines its color.
+	 * @param line
+	 *      The line.
+	 *
+	 * @since 0.1
+	 */
 	public final void appendLine(@Nonnull final Level level, @Nonnull final String line) {
-		final Document doc = this.logBox.getDocument();
-		final SimpleAttributeSet color = new SimpleAttributeSet();
-		StyleConstants.setForeground(color, level.color());
-		try {
-			doc.insertString(doc.getLength(), line + (line.endsWith("\n")? "" : "\n"), color);
-		} catch (final BadLocationException exception) {
-			Throwables.propagate(exception);
+		final LogHistory history = Logger.history();
+		if (line.indexOf('\n') == -1) {
+			history.add(level, line);
+			return;
 		}
-		this.logBox.setCaretPosition(doc.getLength());
+		for (final String row : line.split("\r?\n")) history.add(level, row);
+	}
+
+	/**
+	 * Gets how many lines have been dropped because the console couldn't
+	 * keep up with them.
+	 *
+	 * @return
+	 *      The amount of dropped lines.
+	 *
+	 * @since 0.1
+	 */
+	@Contract(pure = true)
+	public final long dropped() {
+		return this.model.dropped();
+	}
+
+	/**
+	 * Changes the minimum level of the lines shown in the console.
+	 *
+	 * <p>Only the view over the history is rebuilt, without copying the
+	 * lines themselves.</p>
+	 *
+	 * @param minimum
+	 *      The new minimum level.
+	 *
+	 * @since 0.1
+	 */
+	public final void minimum(@Nonnull final Level minimum) {
+		SwingUtilities.invokeLater(() -> {
+			this.model.minimum(minimum);
+			this.scrollToBottom();
+		});
+	}
+
+	private void refresh() {
+		final JScrollBar bar = this.scrollPane.getVerticalScrollBar();
+		final boolean atBottom = bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - SCROLL_TOLERANCE;
+		final long dropped = this.model.dropped();
+		final boolean changed = this.model.pull();
+		if (this.model.dropped() > dropped) {
+			Logger.obtain("Console").warning("{} lines were discarded before the console could show them",
+					this.model.dropped() - dropped);
+		}
+		if (!changed) return;
+		this.updateWidth();
+		if (atBottom) this.scrollToBottom();
+	}
+
+	private void updateWidth() {
+		final String longest = this.model.longest();
+		if (longest.length() <= this.longestWidth) return;
+		this.longestWidth = longest.length();
+		final int width = this.logBox.getFontMetrics(this.logBox.getFont()).stringWidth(longest) + 16;
+		if (width > this.logBox.getFixedCellWidth()) this.logBox.setFixedCellWidth(width);
+	}
+
+	private void scrollToBottom() {
+		final int size = this.model.getSize();
+		if (size > 0) this.logBox.ensureIndexIsVisible(size - 1);
+	}
+
+	private void search(@Nonnull final String query) {
+		if (query.trim().isEmpty()) return;
+		this.searchBox.setEnabled(false);
+		new SwingWorker<String, Void>() {
+			@Override
+			protected String doInBackground() throws Exception {
+				final List<LogSearch.Match> matches = LogSearch.inLogDirectory().search(LogFilter.parse(query),
+						SEARCH_LIMIT);
+				final StringBuilder builder = new StringBuilder();
+				matches.forEach(match -> builder.append(match.line()).append('\n'));
+				if (matches.size() >= SEARCH_LIMIT) builder.append("... (only the first ").append(SEARCH_LIMIT)
+						.append(" results are shown)\n");
+				return builder.toString();
+			}
+
+			@Override
+			protected void done() {
+				ConsoleFrame.this.searchBox.setEnabled(true);
+				String results;
+				try {
+					results = this.get();
+				} catch (final InterruptedException | ExecutionException e) {
+					results = "Invalid search: " + Throwables.getRootCause(e).getMessage();
+				}
+				ConsoleFrame.this.search$show(query, results);
+			}
+		}.execute();
+	}
+
+	private void search$show(@Nonnull final String query, @Nonnull final String results) {
+		final JDialog dialog = new JDialog(this, "Search: " + query);
+		final JTextArea area = new JTextArea(results.isEmpty()? "No results" : results);
+		area.setEditable(false);
+		area.setCaretPosition(0);
+		dialog.add(new JScrollPane(area));
+		dialog.setSize(new Dimension(800, 400));
+		dialog.setLocationRelativeTo(this);
+		dialog.setVisible(true);
 	}
 
 	public final void purge() {
+		if (SwingUtilities.isEventDispatchThread()) {
+			this.model.clear();
+			return;
+		}
 		try {
-			java.awt.EventQueue.invokeAndWait(() -> this.logBox.setText(""));
-		} catch (final Error error) {
-			if (!error.getMessage().contains("event dispatcher thread")) throw error;
-			// Async call not available for the event dispatcher thread
-			// Try with a sync call
-			this.logBox.setText("");
-		} catch (final Throwable e) {
+			SwingUtilities.invokeAndWait(this.model::clear);
+		} catch (final InterruptedException | InvocationTargetException e) {
 			final ReportedException report = new ReportedException(e.getMessage(), e);
 			report.description("Exception while purging console");
 			report.addCustomProvider("Console status", (crash, builder) -> {
-				builder.append("Console text length: ").append(this.logBox.getDocument().getLength()).append("\n");
-				builder.append("Last console line: ");
-				try {
-					final String text = this.logBox.getText().substring(0, this.logBox.getText().length() - 1);
-					builder.append(
-							text.substring(text.lastIndexOf('\n') + 1)).append("\n");
-				} catch (final Exception ex) {
-					builder.append("~~ERROR~~ ").append(ex.getMessage()).append("\n");
-				}
-				throw new RuntimeException();
+				builder.append("History lines: ").append(Logger.history().size()).append("\n");
+				builder.append("Visible console lines: ").append(this.model.getSize()).append("\n");
+				builder.append("Dropped console lines: ").append(this.dropped()).append("\n");
 			});
 			throw report;
 		}
@@ -0,0 +1,190 @@
+package net.thesilkminer.bibliotech.launcher.ui.console;
+
+import net.thesilkminer.bibliotech.launcher.logging.Level;
+import net.thesilkminer.bibliotech.launcher.logging.LogHistory;
+
+import org.jetbrains.annotations.Contract;
+
+import javax.annotation.Nonnull;
+import javax.swing.AbstractListModel;
+
+/**
+ * Exposes the lines of a {@link LogHistory} to the console.
+ *
+ * <p>The model doesn't hold any line itself: it keeps a view with the
+ * sequence numbers of the lines whose level is at least the current
+ * minimum, and reads the lines from the history only when they are
+ * rendered. Changing the minimum level only rebuilds that view, using
+ * the per-level indexes of the history. At most a fixed amount of lines
+ * is shown, never more than the history itself retains: the oldest ones
+ * leave the view when new ones get pulled, or when the history discards
+ * them.</p>
+ *
+ * <p>Lines which match the minimum level but are discarded by the history
+ * before being pulled are counted as dropped. Lines below the minimum are
+ * filtered out on purpose, so they are never counted.</p>
+ *
+ * <p>This class must only be used from the event dispatcher thread.</p>
+ *
+ * @author TheSilkMiner
+ *
+ * @since 0.1
+ */
+@SuppressWarnings("serial")
+final class ConsoleModel extends AbstractListModel<String> {
+
+	private final LogHistory history;
+	private final long[] view;
+	private int viewHead;
+	private int viewSize;
+
+	private Level minimum;
+	private long pulled;
+	private long cleared;
+	// Matching lines before the first one the model had to read, and matching lines read since
+	private long countedBefore;
+	private long received;
+	private long droppedBefore;
+	private volatile long dropped;
+	private int removedInBatch;
+	private int sizeBeforeBatch;
+	private String longest = "";
+
+	ConsoleModel(@Nonnull final LogHistory history, final int capacity, @Nonnull final Level minimum) {
+		this.history = history;
+		// An empty view would have no slot to wrap around to, and lines the history doesn't retain can't be shown
+		this.view = new long[Math.max(1, Math.min(capacity, history.capacity()))];
+		this.minimum = minimum;
+		this.pulled = history.first();
+		this.countedBefore = history.count(minimum, this.pulled);
+	}
+
+	@Contract(pure = true)
+	@Override
+	public int getSize() {
+		return this.viewSize;
+	}
+
+	@Nonnull
+	@Override
+	public String getElementAt(final int index) {
+		// The history may have discarded the line before the view got trimmed
+		final String line = this.history.line(this.viewAt(index));
+		return line == null? "" : line;
+	}
+
+	@Nonnull
+	Level levelAt(final int index) {
+		final Level level = this.history.level(this.viewAt(index));
+		return level == null? this.minimum : level;
+	}
+
+	/**
+	 * Gets the longest line pulled so far, used to size the rows.
+	 */
+	@Contract(pure = true)
+	@Nonnull
+	String longest() {
+		return this.longest;
+	}
+
+	@Contract(pure = true)
+	int capacity() {
+		return this.view.length;
+	}
+
+	/**
+	 * Gets how many lines matching the minimum level have been discarded by
+	 * the history before they could be pulled.
+	 */
+	@Contract(pure = true)
+	long dropped() {
+		return this.dropped;
+	}
+
+	/**
+	 * Pulls the lines added to the history since the previous pull and
+	 * notifies the listeners of all the lines shown or discarded since then.
+	 *
+	 * @return
+	 *      Whether the shown lines have changed.
+	 */
+	boolean pull() {
+		final long first = this.history.first();
+		while (this.viewSize > 0 && this.view[this.viewHead] < first) this.viewRemoveFirst();
+		this.pulled = this.history.replay(this.minimum, this.pulled, this::push);
+		// Whatever matched and hasn't been read by now has been discarded
+		final long missed = this.history.count(this.minimum, this.pulled) - this.countedBefore - this.received;
+		this.dropped = this.droppedBefore + Math.max(0L, missed);
+		return this.endBatch();
+	}
+
+	private void restartCounting() {
+		this.droppedBefore = this.dropped;
+		this.countedBefore = this.history.count(this.minimum, this.pulled);
+		this.received = 0L;
+	}
+
+	/**
+	 * Changes the minimum level of the visible lines.
+	 */
+	void minimum(@Nonnull final Level minimum) {
+		this.endBatch();
+		this.minimum = minimum;
+		final int previous = this.viewSize;
+		this.viewHead = 0;
+		this.viewSize = 0;
+		if (previous > 0) this.fireIntervalRemoved(this, 0, previous - 1);
+		this.pulled = this.history.replay(minimum, this.cleared, this::push);
+		this.restartCounting();
+		this.removedInBatch = 0;
+		this.sizeBeforeBatch = this.viewSize;
+		if (this.viewSize > 0) this.fireIntervalAdded(this, 0, this.viewSize - 1);
+	}
+
+	/**
+	 * Hides all the lines added to the history so far, even if the minimum
+	 * level gets changed later.
+	 */
+	void clear() {
+		this.endBatch();
+		final int previous = this.viewSize;
+		this.cleared = this.history.next();
+		this.pulled = this.cleared;
+		this.restartCounting();
+		this.viewHead = 0;
+		this.viewSize = 0;
+		this.sizeBeforeBatch = 0;
+		this.longest = "";
+		if (previous > 0) this.fireIntervalRemoved(this, 0, previous - 1);
+	}
+
+	private boolean endBatch() {
+		// Lines shown and removed within the same batch were never notified
+		final int removed = Math.min(this.removedInBatch, this.sizeBeforeBatch);
+		final int remaining = this.sizeBeforeBatch - removed;
+		this.removedInBatch = 0;
+		this.sizeBeforeBatch = this.viewSize;
+		if (removed > 0) this.fireIntervalRemoved(this, 0, removed - 1);
+		if (this.viewSize > remaining) this.fireIntervalAdded(this, remaining, this.viewSize - 1);
+		return removed > 0 || this.viewSize > remaining;
+	}
+
+	private void push(final long sequence, @Nonnull final Level level, @Nonnull final String line) {
+		++this.received;
+		if (line.length() > this.longest.length()) this.longest = line;
+		if (this.viewSize == this.view.length) this.viewRemoveFirst();
+		this.view[(this.viewHead + this.viewSize) % this.view.length] = sequence;
+		++this.viewSize;
+	}
+
+	private void viewRemoveFirst() {
+		this.viewHead = (this.viewHead + 1) % this.view.length;
+		--this.viewSize;
+		++this.removedInBatch;
+	}
+
+	private long viewAt(final int index) {
+		return this.view[(this.viewHead + index) % this.view.length];
+	}
+}
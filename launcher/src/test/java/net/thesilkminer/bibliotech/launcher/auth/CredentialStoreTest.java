@@ -0,0 +1,143 @@
+package net.thesilkminer.bibliotech.launcher.auth;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public final class CredentialStoreTest {
+
+	private static final String ITERATIONS = "net.thesilkminer.bibliotech.shared.auth.iterations";
+
+	private Path directory;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		// The real cost would only make the tests slower
+		System.setProperty(ITERATIONS, "1");
+		this.directory = Files.createTempDirectory("bibliotech-accounts");
+		this.file = new File(this.directory.toFile(), CredentialStore.FILE_NAME);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		System.clearProperty(ITERATIONS);
+		try (final Stream<Path> paths = Files.walk(this.directory)) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void startsEmpty() throws IOException {
+		final CredentialStore store = CredentialStore.open(this.file);
+		Assert.assertTrue(this.file.exists());
+		Assert.assertEquals(0, store.size());
+		Assert.assertFalse(store.contains("admin"));
+		Assert.assertFalse(store.verify("admin", "secret".toCharArray()));
+	}
+
+	@Test
+	public void verifiesStoredPasswords() throws IOException {
+		final CredentialStore store = CredentialStore.open(this.file);
+		store.put("admin", "secret".toCharArray());
+		store.put("volunteer", "other".toCharArray());
+		Assert.assertEquals(2, store.size());
+		Assert.assertTrue(store.verify("admin", "secret".toCharArray()));
+		Assert.assertFalse(store.verify("admin", "other".toCharArray()));
+		Assert.assertTrue(store.verify("volunteer", "other".toCharArray()));
+		Assert.assertFalse(store.verify("nobody", "secret".toCharArray()));
+	}
+
+	@Test
+	public void newerPasswordsShadowOlderOnes() throws IOException {
+		final CredentialStore store = CredentialStore.open(this.file);
+		store.put("admin", "first".toCharArray());
+		store.put("admin", "second".toCharArray());
+		Assert.assertEquals(1, store.size());
+		Assert.assertFalse(store.verify("admin", "first".toCharArray()));
+		Assert.assertTrue(store.verify("admin", "second".toCharArray()));
+	}
+
+	@Test
+	public void removesUsers() throws IOException {
+		final CredentialStore store = CredentialStore.open(this.file);
+		store.put("admin", "secret".toCharArray());
+		Assert.assertTrue(store.remove("admin"));
+		Assert.assertFalse(store.remove("admin"));
+		Assert.assertEquals(0, store.size());
+		Assert.assertFalse(store.contains("admin"));
+		Assert.assertFalse(store.verify("admin", "secret".toCharArray()));
+		store.put("admin", "again".toCharArray());
+		Assert.assertTrue(store.verify("admin", "again".toCharArray()));
+	}
+
+	@Test
+	public void keepsEverythingWhenReopened() throws IOException {
+		final CredentialStore store = CredentialStore.open(this.file);
+		store.put("admin", "secret".toCharArray());
+		store.put("volunteer", "other".toCharArray());
+		store.put("admin", "changed".toCharArray());
+		store.remove("volunteer");
+
+		final CredentialStore reopened = CredentialStore.open(this.file);
+		Assert.assertEquals(1, reopened.size());
+		Assert.assertTrue(reopened.verify("admin", "changed".toCharArray()));
+		Assert.assertFalse(reopened.contains("volunteer"));
+	}
+
+	@Test
+	public void compactsShadowedRecords() throws IOException {
+		final CredentialStore store = CredentialStore.open(this.file);
+		store.put("volunteer", "other".toCharArray());
+		for (int i = 0; i < 2000; ++i) store.put("admin", ("password " + i).toCharArray());
+		// Without compaction the file would hold every shadowed password hash
+		Assert.assertTrue(this.file.length() < 2000L * store.find("admin").encode().length());
+		Assert.assertFalse(new File(this.directory.toFile(), CredentialStore.FILE_NAME + ".part").exists());
+		Assert.assertEquals(2, store.size());
+		Assert.assertTrue(store.verify("admin", "password 1999".toCharArray()));
+		Assert.assertTrue(store.verify("volunteer", "other".toCharArray()));
+
+		final CredentialStore reopened = CredentialStore.open(this.file);
+		Assert.assertEquals(2, reopened.size());
+		Assert.assertTrue(reopened.verify("admin", "password 1999".toCharArray()));
+		Assert.assertTrue(reopened.verify("volunteer", "other".toCharArray()));
+	}
+
+	@Test
+	public void growsTheBucketsWhenCrowded() throws IOException {
+		final CredentialStore store = CredentialStore.open(this.file);
+		for (int i = 0; i < 5000; ++i) store.put("user " + i, ("password " + i).toCharArray());
+		Assert.assertEquals(5000, store.size());
+		for (int i = 0; i < 5000; i += 499) Assert.assertTrue(store.verify("user " + i, ("password " + i).toCharArray()));
+
+		final CredentialStore reopened = CredentialStore.open(this.file);
+		Assert.assertEquals(5000, reopened.size());
+		Assert.assertTrue(reopened.verify("user 4999", "password 4999".toCharArray()));
+	}
+
+	@Test(expected = IOException.class)
+	public void reportsCorruptedHashes() throws IOException {
+		CredentialStore.open(this.file).put("admin", "secret".toCharArray());
+		final byte[] bytes = Files.readAllBytes(this.file.toPath());
+		final int at = new String(bytes, StandardCharsets.ISO_8859_1).indexOf("pbkdf2-sha256$");
+		Assert.assertTrue(at > 0);
+		bytes[at] = 'x';
+		Files.write(this.file.toPath(), bytes);
+		CredentialStore.open(this.file).verify("admin", "secret".toCharArray());
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws IOException {
+		Files.write(this.file.toPath(), "not an account file at all, really".getBytes("US-ASCII"));
+		CredentialStore.open(this.file);
+	}
+}
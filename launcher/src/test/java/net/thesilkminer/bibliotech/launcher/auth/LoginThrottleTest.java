@@ -0,0 +1,126 @@
+package net.thesilkminer.bibliotech.launcher.auth;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public final class LoginThrottleTest {
+
+	private static final String PREFIX = "net.thesilkminer.bibliotech.shared.auth.throttle.";
+	private static final String[] PROPERTIES = { "window", "userLimit", "clientLimit", "baseDelay", "maxDelay",
+			"maxEntries" };
+
+	private LoginThrottle throttle;
+
+	@BeforeClass
+	public static void setUpClass() {
+		// Set before the throttle is first referenced, so that it never touches the working directory
+		System.setProperty(PREFIX + "persist", "false");
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		System.clearProperty(PREFIX + "persist");
+	}
+
+	@Before
+	public void setUp() {
+		System.setProperty(PREFIX + "userLimit", "3");
+		System.setProperty(PREFIX + "clientLimit", "100");
+		System.setProperty(PREFIX + "baseDelay", "10");
+		System.setProperty(PREFIX + "maxDelay", "60");
+		this.throttle = LoginThrottle.INSTANCE;
+		this.throttle.clear();
+	}
+
+	@After
+	public void tearDown() {
+		this.throttle.clear();
+		for (final String property : PROPERTIES) System.clearProperty(PREFIX + property);
+	}
+
+	private static void assertDelay(final long expected, final long actual) {
+		// Some time passes between recording the failure and reading the delay
+		Assert.assertTrue("Expected about " + expected + " but was " + actual, actual <= expected && actual > expected - 1000L);
+	}
+
+	@Test
+	public void allowsFailuresBelowTheLimit() {
+		this.throttle.failure("admin", "station");
+		this.throttle.failure("admin", "station");
+		Assert.assertEquals(0L, this.throttle.delay("admin", "station"));
+	}
+
+	@Test
+	public void doublesTheDelayWithEveryFailure() {
+		for (int i = 0; i < 3; ++i) this.throttle.failure("admin", "station");
+		assertDelay(10000L, this.throttle.delay("admin", "station"));
+		this.throttle.failure("admin", "station");
+		assertDelay(20000L, this.throttle.delay("admin", "station"));
+		this.throttle.failure("admin", "station");
+		assertDelay(40000L, this.throttle.delay("admin", "station"));
+		this.throttle.failure("admin", "station");
+		assertDelay(60000L, this.throttle.delay("admin", "station"));
+		for (int i = 0; i < 100; ++i) this.throttle.failure("admin", "station");
+		assertDelay(60000L, this.throttle.delay("admin", "station"));
+	}
+
+	@Test
+	public void delaysTheUserFromEveryClient() {
+		for (int i = 0; i < 3; ++i) this.throttle.failure("admin", "station " + i);
+		Assert.assertTrue(this.throttle.delay("admin", "another station") > 0L);
+		Assert.assertEquals(0L, this.throttle.delay("volunteer", "station 0"));
+	}
+
+	@Test
+	public void delaysEveryUserFromTheClient() {
+		System.setProperty(PREFIX + "clientLimit", "3");
+		for (int i = 0; i < 3; ++i) this.throttle.failure("user " + i, "station");
+		Assert.assertTrue(this.throttle.delay("volunteer", "station") > 0L);
+		Assert.assertEquals(0L, this.throttle.delay("volunteer", "another station"));
+	}
+
+	@Test
+	public void successClearsOnlyTheUser() {
+		System.setProperty(PREFIX + "clientLimit", "3");
+		for (int i = 0; i < 3; ++i) this.throttle.failure("admin", "station");
+		this.throttle.success("admin", "station");
+		Assert.assertEquals(0L, this.throttle.delay("admin", "another station"));
+		Assert.assertTrue(this.throttle.delay("admin", "station") > 0L);
+	}
+
+	@Test
+	public void forgetsFailuresOutsideTheWindow() throws InterruptedException {
+		System.setProperty(PREFIX + "window", "1");
+		this.throttle.failure("admin", "station");
+		this.throttle.failure("admin", "station");
+		// Two whole windows, so that the previous one doesn't overlap anymore
+		Thread.sleep(2100L);
+		this.throttle.failure("admin", "station");
+		this.throttle.failure("admin", "station");
+		Assert.assertEquals(0L, this.throttle.delay("admin", "station"));
+	}
+
+	@Test
+	public void evictsIdleUsersButKeepsTheClient() {
+		System.setProperty(PREFIX + "maxEntries", "4");
+		System.setProperty(PREFIX + "clientLimit", "20");
+		for (int i = 0; i < 20; ++i) {
+			this.throttle.failure("user " + i, "station");
+			Assert.assertTrue(this.throttle.size() <= 5);
+		}
+		// Attempts spread over many users are still throttled by the client
+		Assert.assertTrue(this.throttle.delay("volunteer", "station") > 0L);
+	}
+
+	@Test
+	public void neverEvictsDelayedUsers() {
+		System.setProperty(PREFIX + "maxEntries", "4");
+		for (int i = 0; i < 3; ++i) this.throttle.failure("admin", "station");
+		for (int i = 0; i < 20; ++i) this.throttle.failure("user " + i, "station");
+		Assert.assertTrue(this.throttle.delay("admin", "another station") > 0L);
+	}
+}
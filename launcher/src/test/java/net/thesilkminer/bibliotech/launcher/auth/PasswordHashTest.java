@@ -0,0 +1,73 @@
+package net.thesilkminer.bibliotech.launcher.auth;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class PasswordHashTest {
+
+	private static final String ITERATIONS = "net.thesilkminer.bibliotech.shared.auth.iterations";
+
+	@Before
+	public void setUp() {
+		// The real cost would only make the tests slower
+		System.setProperty(ITERATIONS, "1000");
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty(ITERATIONS);
+	}
+
+	@Test
+	public void verifiesOnlyTheRightPassword() {
+		final PasswordHash hash = PasswordHash.create("secret".toCharArray());
+		Assert.assertTrue(hash.verify("secret".toCharArray()));
+		Assert.assertFalse(hash.verify("Secret".toCharArray()));
+		Assert.assertFalse(hash.verify(new char[0]));
+	}
+
+	@Test
+	public void saltsEveryHash() {
+		final PasswordHash first = PasswordHash.create("secret".toCharArray());
+		final PasswordHash second = PasswordHash.create("secret".toCharArray());
+		Assert.assertNotEquals(first.encode(), second.encode());
+	}
+
+	@Test
+	public void survivesEncoding() {
+		final PasswordHash hash = PasswordHash.create("secret".toCharArray());
+		final String encoded = hash.encode();
+		Assert.assertTrue(encoded.startsWith("pbkdf2-sha256$1000$"));
+		final PasswordHash decoded = PasswordHash.decode(encoded);
+		Assert.assertEquals(encoded, decoded.encode());
+		Assert.assertEquals(1000, decoded.iterations());
+		Assert.assertTrue(decoded.verify("secret".toCharArray()));
+		Assert.assertFalse(decoded.verify("other".toCharArray()));
+	}
+
+	@Test
+	public void neverPrintsTheHash() {
+		final PasswordHash hash = PasswordHash.create("secret".toCharArray());
+		Assert.assertEquals("pbkdf2-sha256$1000$...", hash.toString());
+	}
+
+	@Test
+	public void needsRehashWhenTheCostIsRaised() {
+		final PasswordHash hash = PasswordHash.create("secret".toCharArray());
+		Assert.assertFalse(hash.needsRehash());
+		System.setProperty(ITERATIONS, "2000");
+		Assert.assertTrue(hash.needsRehash());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsOtherFormats() {
+		PasswordHash.decode("md5$abc");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidIterations() {
+		PasswordHash.decode("pbkdf2-sha256$0$AAAA$AAAA");
+	}
+}
@@ -0,0 +1,113 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import com.google.common.base.Strings;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public final class BinaryLogFormatTest {
+
+	private static final long OPENED = 1458000000000L;
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		this.file = File.createTempFile("bibliotech", ".log");
+	}
+
+	@After
+	public void tearDown() {
+		if (!this.file.delete()) this.file.deleteOnExit();
+	}
+
+	private void write(final Object[]... events) throws IOException {
+		final BinaryLogFormat.Encoder encoder = new BinaryLogFormat.Encoder();
+		try (final ChannelLogWriter out = new ChannelLogWriter(this.file, 1024, Durability.OS_BUFFERED, 0L)) {
+			encoder.start(out, OPENED);
+			final LogEvent event = new LogEvent();
+			for (final Object[] values : events) {
+				event.set((Level) values[0], (String) values[1], (Long) values[2], (String) values[3]);
+				// Segments are rolled on the predicted length, so it has to be exact
+				final long before = out.size();
+				final int length = encoder.length(event);
+				encoder.write(out, event);
+				Assert.assertEquals(length, out.size() - before);
+			}
+		}
+	}
+
+	private static void assertNext(final LogReader reader, final Level level, final String source,
+	                               final long timestamp, final String message) throws IOException {
+		Assert.assertTrue(reader.next());
+		Assert.assertEquals(level, reader.level());
+		Assert.assertEquals(source, reader.source());
+		Assert.assertEquals(timestamp, reader.timestamp());
+		Assert.assertEquals(message, reader.message());
+	}
+
+	@Test
+	public void decodesWhatHasBeenEncoded() throws IOException {
+		final String big = Strings.repeat("A long message, ", 100);
+		this.write(
+				new Object[] { Level.INFO, "Launcher", OPENED + 5L, "Starting" },
+				new Object[] { Level.DEBUG, "Auth", OPENED + 300000L, "Caf\u00e9 \u2713" },
+				// The clock may move backwards
+				new Object[] { Level.ERROR, "Launcher", OPENED - 1000L, big },
+				new Object[] { Level.WARNING, "Auth", OPENED - 1000L, "" }
+		);
+		try (final LogReader reader = LogReader.open(Files.newInputStream(this.file.toPath()))) {
+			Assert.assertTrue(reader.binary());
+			assertNext(reader, Level.INFO, "Launcher", OPENED + 5L, "Starting");
+			assertNext(reader, Level.DEBUG, "Auth", OPENED + 300000L, "Caf\u00e9 \u2713");
+			assertNext(reader, Level.ERROR, "Launcher", OPENED - 1000L, big);
+			assertNext(reader, Level.WARNING, "Auth", OPENED - 1000L, "");
+			Assert.assertEquals(LogFormatter.format(OPENED - 1000L, "Auth", Level.WARNING, ""), reader.line());
+			Assert.assertFalse(reader.next());
+		}
+	}
+
+	@Test
+	public void treatsATruncatedRecordAsTheEnd() throws IOException {
+		this.write(
+				new Object[] { Level.INFO, "Launcher", OPENED, "Complete" },
+				new Object[] { Level.INFO, "Launcher", OPENED, "Truncated" }
+		);
+		final byte[] bytes = Files.readAllBytes(this.file.toPath());
+		final byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+		try (final LogReader reader = LogReader.open(new ByteArrayInputStream(truncated))) {
+			assertNext(reader, Level.INFO, "Launcher", OPENED, "Complete");
+			Assert.assertFalse(reader.next());
+		}
+	}
+
+	@Test
+	public void readsTextLinesToo() throws IOException {
+		final long timestamp = OPENED + 45000L;
+		final String text = "# Biblio-Tech v0.1 - LogFile\n"
+				+ LogFormatter.format(timestamp, "Launcher", Level.WARNING, "Careful") + '\n';
+		try (final LogReader reader = LogReader.open(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)))) {
+			Assert.assertFalse(reader.binary());
+			assertNext(reader, Level.WARNING, "Launcher", timestamp, "Careful");
+			Assert.assertFalse(reader.next());
+		}
+	}
+
+	@Test
+	public void zigZagsBothWays() {
+		for (final long value : new long[] { 0L, 1L, -1L, 63L, -64L, Long.MAX_VALUE, Long.MIN_VALUE }) {
+			Assert.assertEquals(value, BinaryLogFormat.unZigZag(BinaryLogFormat.zigZag(value)));
+		}
+		Assert.assertEquals(1L, BinaryLogFormat.zigZag(-1L));
+		Assert.assertEquals(2L, BinaryLogFormat.zigZag(1L));
+	}
+}
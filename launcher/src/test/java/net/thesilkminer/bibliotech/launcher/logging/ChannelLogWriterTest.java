@@ -0,0 +1,64 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public final class ChannelLogWriterTest {
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		this.file = File.createTempFile("bibliotech", ".log");
+	}
+
+	@After
+	public void tearDown() {
+		if (!this.file.delete()) this.file.deleteOnExit();
+	}
+
+	@Test
+	public void predictsTheLengthOfEveryLine() throws IOException {
+		final String[] lines = {
+				"",
+				"Plain ASCII",
+				"Caf\u00e9 \u00e0 la carte",
+				"\u2713 \u4e66 \u0628\u064a\u062a",
+				"\ud83d\udcda books",
+				// Unpaired surrogates are replaced
+				"broken \ud83d and \udcda",
+				"ends broken \ud83d"
+		};
+		try (final ChannelLogWriter out = new ChannelLogWriter(this.file, 1024, Durability.OS_BUFFERED, 0L)) {
+			for (final String line : lines) {
+				final long before = out.size();
+				out.writeLine(line);
+				Assert.assertEquals(line, ChannelLogWriter.lineLength(line), out.size() - before);
+				final long beforeString = out.size();
+				out.writeString(line);
+				Assert.assertEquals(line, ChannelLogWriter.stringLength(line), out.size() - beforeString);
+			}
+		}
+		Assert.assertEquals(this.file.length(), sizeOf(lines));
+	}
+
+	private static long sizeOf(final String... lines) {
+		long size = 0L;
+		for (final String line : lines) size += ChannelLogWriter.lineLength(line) + ChannelLogWriter.stringLength(line);
+		return size;
+	}
+
+	@Test
+	public void predictsTheLengthOfVariableNumbers() {
+		Assert.assertEquals(1, ChannelLogWriter.varLongLength(0L));
+		Assert.assertEquals(1, ChannelLogWriter.varLongLength(127L));
+		Assert.assertEquals(2, ChannelLogWriter.varLongLength(128L));
+		Assert.assertEquals(3, ChannelLogWriter.varLongLength(1L << 14));
+		Assert.assertEquals(10, ChannelLogWriter.varLongLength(-1L));
+	}
+}
@@ -0,0 +1,61 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+public final class LogFormatterTest {
+
+	private static long timestamp(final int hour, final int minute, final int second) {
+		final Calendar cal = new GregorianCalendar(2016, Calendar.MARCH, 7, hour, minute, second);
+		return cal.getTimeInMillis();
+	}
+
+	@Test
+	public void formatsMorningLines() {
+		Assert.assertEquals("07/03/2016 09:04:05 AM [Launcher] [INFO] Hello",
+				LogFormatter.format(timestamp(9, 4, 5), "Launcher", Level.INFO, "Hello"));
+	}
+
+	@Test
+	public void formatsAfternoonLines() {
+		Assert.assertEquals("07/03/2016 03:04:05 PM [Launcher] [WARNING] Hello",
+				LogFormatter.format(timestamp(15, 4, 5), "Launcher", Level.WARNING, "Hello"));
+	}
+
+	@Test
+	public void sharesThePrefixWithinASecond() {
+		final long start = timestamp(10, 0, 0);
+		final String first = LogFormatter.format(start, "A", Level.INFO, "first");
+		final String last = LogFormatter.format(start + 999L, "B", Level.FINE, "last");
+		Assert.assertEquals("07/03/2016 10:00:00 AM [A] [INFO] first", first);
+		Assert.assertEquals("07/03/2016 10:00:00 AM [B] [FINE] last", last);
+	}
+
+	@Test
+	public void rendersThePrefixAgainOnTheNextSecond() {
+		final long start = timestamp(10, 0, 0);
+		LogFormatter.format(start, "A", Level.INFO, "first");
+		Assert.assertEquals("07/03/2016 10:00:01 AM [A] [INFO] next",
+				LogFormatter.format(start + 1000L, "A", Level.INFO, "next"));
+		// Going back in time must not reuse the newer prefix
+		Assert.assertEquals("07/03/2016 10:00:00 AM [A] [INFO] back",
+				LogFormatter.format(start + 500L, "A", Level.INFO, "back"));
+	}
+
+	@Test
+	public void appendsToTheGivenBuilder() {
+		final StringBuilder builder = new StringBuilder("> ");
+		Assert.assertSame(builder, LogFormatter.formatTo(builder, timestamp(9, 4, 5), "A", Level.INFO, "Hello"));
+		Assert.assertEquals("> 07/03/2016 09:04:05 AM [A] [INFO] Hello", builder.toString());
+	}
+
+	@Test
+	public void substitutesPlaceholders() {
+		Assert.assertEquals("a 1 b [2, 3] c {}", LogFormatter.substitute("a {} b {} c {}", 1, new int[] {2, 3}));
+		Assert.assertEquals("only 1", LogFormatter.substitute("only {}", 1, 2));
+		Assert.assertEquals("none {}", LogFormatter.substitute("none {}"));
+	}
+}
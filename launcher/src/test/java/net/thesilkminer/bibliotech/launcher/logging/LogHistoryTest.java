@@ -0,0 +1,128 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public final class LogHistoryTest {
+
+	private static List<String> replay(final LogHistory history, final Level minimum) {
+		final List<String> lines = Lists.newArrayList();
+		history.replay(minimum, (level, line) -> lines.add(level.name() + ' ' + line));
+		return lines;
+	}
+
+	@Test
+	public void evictsTheOldestLinesWhenFull() {
+		final LogHistory history = new LogHistory(3, Long.MAX_VALUE);
+		for (int i = 0; i < 5; ++i) history.add(Level.INFO, "line " + i);
+		Assert.assertEquals(3, history.size());
+		Assert.assertEquals(Lists.newArrayList("INFO line 2", "INFO line 3", "INFO line 4"), replay(history, Level.TRACE));
+	}
+
+	@Test
+	public void evictsTheOldestLinesWhenTooBig() {
+		final LogHistory history = new LogHistory(100, 3L * (56L + 2L * "line 0".length()));
+		for (int i = 0; i < 5; ++i) history.add(Level.INFO, "line " + i);
+		Assert.assertEquals(3, history.size());
+		Assert.assertEquals(3L * (56L + 2L * "line 0".length()), history.bytes());
+		Assert.assertEquals("INFO line 2", replay(history, Level.TRACE).get(0));
+	}
+
+	@Test
+	public void keepsALineBiggerThanTheWholeHistory() {
+		final LogHistory history = new LogHistory(100, 10L);
+		history.add(Level.INFO, "small");
+		history.add(Level.INFO, "this line is way bigger than ten bytes");
+		Assert.assertEquals(1, history.size());
+		Assert.assertEquals(Lists.newArrayList("INFO this line is way bigger than ten bytes"), replay(history, Level.TRACE));
+	}
+
+	@Test
+	public void replaysMatchingLevelsInLoggingOrder() {
+		final LogHistory history = new LogHistory(100, Long.MAX_VALUE);
+		history.add(Level.DEBUG, "a");
+		history.add(Level.WARNING, "b");
+		history.add(Level.INFO, "c");
+		history.add(Level.DEBUG, "d");
+		history.add(Level.WARNING, "e");
+		history.add(Level.INFO, "f");
+		Assert.assertEquals(4, history.count(Level.INFO));
+		Assert.assertEquals(Lists.newArrayList("WARNING b", "INFO c", "WARNING e", "INFO f"), replay(history, Level.INFO));
+		Assert.assertEquals(Lists.newArrayList("WARNING b", "WARNING e"), replay(history, Level.WARNING));
+		Assert.assertEquals(6, replay(history, Level.TRACE).size());
+	}
+
+	@Test
+	public void replaysAfterTheIndexesWrapAndGrow() {
+		final LogHistory history = new LogHistory(50, Long.MAX_VALUE);
+		final List<String> expected = Lists.newArrayList();
+		for (int i = 0; i < 200; ++i) {
+			final Level level = i % 3 == 0? Level.WARNING : Level.DEBUG;
+			history.add(level, Integer.toString(i));
+			if (i >= 150 && level == Level.WARNING) expected.add("WARNING " + i);
+		}
+		Assert.assertEquals(50, history.size());
+		Assert.assertEquals(expected.size(), history.count(Level.WARNING));
+		Assert.assertEquals(expected, replay(history, Level.WARNING));
+	}
+
+	@Test
+	public void replaysFromAGivenSequence() {
+		final LogHistory history = new LogHistory(100, Long.MAX_VALUE);
+		Assert.assertEquals(0L, history.add(Level.INFO, "a"));
+		Assert.assertEquals(1L, history.add(Level.DEBUG, "b"));
+		Assert.assertEquals(2L, history.add(Level.WARNING, "c"));
+		final List<String> lines = Lists.newArrayList();
+		final long next = history.replay(Level.INFO, 1L, (sequence, level, line) -> lines.add(sequence + " " + line));
+		Assert.assertEquals(3L, next);
+		Assert.assertEquals(Lists.newArrayList("2 c"), lines);
+		Assert.assertEquals("b", history.line(1L));
+		Assert.assertEquals(Level.DEBUG, history.level(1L));
+		Assert.assertNull(history.line(3L));
+	}
+
+	@Test
+	public void forgetsDiscardedSequences() {
+		final LogHistory history = new LogHistory(2, Long.MAX_VALUE);
+		for (int i = 0; i < 5; ++i) history.add(Level.INFO, Integer.toString(i));
+		Assert.assertEquals(3L, history.first());
+		Assert.assertEquals(5L, history.next());
+		Assert.assertNull(history.line(2L));
+		Assert.assertNull(history.level(2L));
+		Assert.assertEquals("3", history.line(3L));
+	}
+
+	@Test
+	public void clearsEverything() {
+		final LogHistory history = new LogHistory(10, Long.MAX_VALUE);
+		history.add(Level.INFO, "a");
+		history.add(Level.WARNING, "b");
+		history.clear();
+		Assert.assertEquals(0, history.size());
+		Assert.assertEquals(0L, history.bytes());
+		Assert.assertEquals(0, history.count(Level.TRACE));
+		history.add(Level.INFO, "c");
+		Assert.assertEquals(Lists.newArrayList("INFO c"), replay(history, Level.TRACE));
+	}
+
+	@Test
+	public void countsMatchingLinesIncludingDiscardedOnes() {
+		final LogHistory history = new LogHistory(2, Long.MAX_VALUE);
+		history.add(Level.DEBUG, "a");
+		history.add(Level.WARNING, "b");
+		history.add(Level.INFO, "c");
+		history.add(Level.WARNING, "d");
+		Assert.assertEquals(2, history.capacity());
+		Assert.assertEquals(1L, history.count(Level.WARNING, 0L));
+		Assert.assertEquals(1L, history.count(Level.WARNING, 3L));
+		Assert.assertEquals(2L, history.count(Level.WARNING, 4L));
+		Assert.assertEquals(3L, history.count(Level.INFO, 4L));
+		Assert.assertEquals(4L, history.count(Level.TRACE, 4L));
+		history.clear();
+		Assert.assertEquals(4L, history.count(Level.TRACE, history.next()));
+	}
+}
@@ -0,0 +1,149 @@
+package net.thesilkminer.bibliotech.launcher.logging;
+
+import com.google.common.base.Strings;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public final class RollingFileSinkTest {
+
+	private static final int LINES = 2000;
+	private static final int BATCH = 256;
+
+	private Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("bibliotech-logs");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (!Files.exists(this.directory)) return;
+		try (final Stream<Path> paths = Files.walk(this.directory)) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	private RollingFileSink sink(final long maxSize, final Durability durability) throws IOException {
+		final File logs = this.directory.toFile();
+		return new RollingFileSink(logs, maxSize, false, new LogArchiver(logs, 10, Long.MAX_VALUE), 64 * 1024,
+				durability, 0L, LogFileFormat.TEXT);
+	}
+
+	private static LogEvent event(final Level level, final String message) {
+		final LogEvent event = new LogEvent();
+		final long now = System.currentTimeMillis();
+		event.set(level, "Test", now, message);
+		event.line(LogFormatter.format(now, "Test", level, message));
+		return event;
+	}
+
+	private static void write(final RollingFileSink sink, final LogEvent event) {
+		for (int i = 1; i <= LINES; ++i) {
+			sink.accept(event);
+			if (i % BATCH == 0) sink.endOfBatch();
+		}
+		sink.endOfBatch();
+		sink.close();
+	}
+
+	private void writesEveryLine(final Durability durability) throws IOException {
+		final LogEvent event = event(Level.INFO, "A message long enough to look like an actual log line");
+		write(this.sink(0L, durability), event);
+
+		final List<String> lines = Files.readAllLines(this.directory.resolve("latest.log"), StandardCharsets.UTF_8);
+		Assert.assertEquals(LINES + 2, lines.size());
+		Assert.assertEquals("# Biblio-Tech v0.1 - LogFile", lines.get(0));
+		Assert.assertEquals(event.line(), lines.get(lines.size() - 1));
+	}
+
+	@Test
+	public void writesEveryLineWhenOsBuffered() throws IOException {
+		this.writesEveryLine(Durability.OS_BUFFERED);
+	}
+
+	@Test
+	public void writesEveryLineWhenFlushingPerBatch() throws IOException {
+		this.writesEveryLine(Durability.FLUSH_PER_BATCH);
+	}
+
+	@Test
+	public void writesEveryLineWhenSyncingPerBatch() throws IOException {
+		this.writesEveryLine(Durability.FSYNC_PER_BATCH);
+	}
+
+	@Test
+	public void neverExceedsTheMaximumSize() throws IOException {
+		final RollingFileSink sink = this.sink(1000L, Durability.OS_BUFFERED);
+		// Two bytes per character: counting characters would overshoot the limit
+		final LogEvent event = event(Level.INFO, Strings.repeat("\u00e9", 100));
+		final Path latest = this.directory.resolve("latest.log");
+		for (int i = 0; i < 50; ++i) {
+			sink.accept(event);
+			sink.endOfBatch();
+			Assert.assertTrue(Files.size(latest) <= 1000L);
+		}
+		sink.close();
+	}
+
+	@Test
+	public void stopsTheFlusherWhenClosed() throws IOException, InterruptedException {
+		final int before = flushers();
+		final File logs = this.directory.toFile();
+		final RollingFileSink sink = new RollingFileSink(logs, 0L, false, new LogArchiver(logs, 10, Long.MAX_VALUE),
+				64 * 1024, Durability.OS_BUFFERED, 10L, LogFileFormat.TEXT);
+		Assert.assertEquals(before + 1, flushers());
+		sink.close();
+		for (int i = 0; i < 100 && flushers() > before; ++i) Thread.sleep(10L);
+		Assert.assertEquals(before, flushers());
+	}
+
+	private static int flushers() {
+		int count = 0;
+		for (final Thread thread : Thread.getAllStackTraces().keySet()) if ("Log Flusher".equals(thread.getName())) ++count;
+		return count;
+	}
+
+	@Test
+	public void stopsWritingInsteadOfThrowing() throws IOException {
+		final RollingFileSink sink = this.sink(256L, Durability.OS_BUFFERED);
+		sink.accept(event(Level.INFO, "Written before the directory disappears"));
+		this.tearDown();
+
+		final PrintStream err = System.err;
+		final ByteArrayOutputStream reported = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(reported, true));
+		try {
+			// Rolling the segment over now fails, since its directory is gone
+			sink.accept(event(Level.ERROR, "Dropped"));
+			// Nothing may be written anymore, not even into a brand new directory
+			Files.createDirectory(this.directory);
+			for (int i = 0; i < 10; ++i) sink.accept(event(Level.ERROR, "Dropped"));
+			sink.endOfBatch();
+			sink.close();
+		} finally {
+			System.setErr(err);
+		}
+
+		try (final Stream<Path> files = Files.list(this.directory)) {
+			Assert.assertEquals(0L, files.count());
+		}
+		final String output = new String(reported.toByteArray(), StandardCharsets.UTF_8);
+		Assert.assertEquals(output.indexOf("file logging has been disabled"), output.lastIndexOf("file logging has been disabled"));
+		Assert.assertTrue(output.contains("file logging has been disabled"));
+	}
+}
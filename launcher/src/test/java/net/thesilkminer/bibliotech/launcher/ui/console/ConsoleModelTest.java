@@ -0,0 +1,136 @@
+package net.thesilkminer.bibliotech.launcher.ui.console;
+
+import com.google.common.collect.Lists;
+
+import net.thesilkminer.bibliotech.launcher.logging.Level;
+import net.thesilkminer.bibliotech.launcher.logging.LogHistory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public final class ConsoleModelTest {
+
+	private static List<String> shown(final ConsoleModel model) {
+		final List<String> lines = Lists.newArrayList();
+		for (int i = 0; i < model.getSize(); ++i) lines.add(model.getElementAt(i));
+		return lines;
+	}
+
+	@Test
+	public void pullsOnlyTheNewLines() {
+		final LogHistory history = new LogHistory(100, Long.MAX_VALUE);
+		history.add(Level.INFO, "a");
+		final ConsoleModel model = new ConsoleModel(history, 100, Level.INFO);
+		Assert.assertTrue(model.pull());
+		Assert.assertEquals(Lists.newArrayList("a"), shown(model));
+		Assert.assertFalse(model.pull());
+		history.add(Level.DEBUG, "hidden");
+		history.add(Level.WARNING, "b");
+		Assert.assertTrue(model.pull());
+		Assert.assertEquals(Lists.newArrayList("a", "b"), shown(model));
+		Assert.assertEquals(Level.WARNING, model.levelAt(1));
+	}
+
+	@Test
+	public void filtersAgainWhenTheMinimumChanges() {
+		final LogHistory history = new LogHistory(100, Long.MAX_VALUE);
+		final ConsoleModel model = new ConsoleModel(history, 100, Level.WARNING);
+		history.add(Level.DEBUG, "a");
+		history.add(Level.WARNING, "b");
+		history.add(Level.INFO, "c");
+		model.pull();
+		Assert.assertEquals(Lists.newArrayList("b"), shown(model));
+		model.minimum(Level.TRACE);
+		Assert.assertEquals(Lists.newArrayList("a", "b", "c"), shown(model));
+		history.add(Level.DEBUG, "d");
+		model.pull();
+		Assert.assertEquals(Lists.newArrayList("a", "b", "c", "d"), shown(model));
+	}
+
+	@Test
+	public void showsAtMostItsCapacity() {
+		final LogHistory history = new LogHistory(100, Long.MAX_VALUE);
+		final ConsoleModel model = new ConsoleModel(history, 2, Level.TRACE);
+		for (int i = 0; i < 5; ++i) history.add(Level.INFO, Integer.toString(i));
+		model.pull();
+		Assert.assertEquals(Lists.newArrayList("3", "4"), shown(model));
+	}
+
+	@Test
+	public void acceptsAnEmptyCapacity() {
+		final LogHistory history = new LogHistory(100, Long.MAX_VALUE);
+		final ConsoleModel model = new ConsoleModel(history, 0, Level.TRACE);
+		Assert.assertEquals(1, model.capacity());
+		history.add(Level.INFO, "a");
+		history.add(Level.INFO, "b");
+		model.pull();
+		Assert.assertEquals(Lists.newArrayList("b"), shown(model));
+	}
+
+	@Test
+	public void countsTheLinesDiscardedBeforeBeingPulled() {
+		final LogHistory history = new LogHistory(3, Long.MAX_VALUE);
+		final ConsoleModel model = new ConsoleModel(history, 100, Level.TRACE);
+		history.add(Level.INFO, "a");
+		model.pull();
+		for (int i = 0; i < 5; ++i) history.add(Level.INFO, Integer.toString(i));
+		model.pull();
+		Assert.assertEquals(2L, model.dropped());
+		// The view follows what the history still holds
+		Assert.assertEquals(Lists.newArrayList("2", "3", "4"), shown(model));
+	}
+
+	@Test
+	public void neverCountsFilteredLinesAsDropped() {
+		final LogHistory history = new LogHistory(3, Long.MAX_VALUE);
+		final ConsoleModel model = new ConsoleModel(history, 100, Level.WARNING);
+		for (int i = 0; i < 10; ++i) history.add(Level.DEBUG, "hidden " + i);
+		history.add(Level.WARNING, "a");
+		model.pull();
+		Assert.assertEquals(0L, model.dropped());
+		history.add(Level.WARNING, "b");
+		for (int i = 0; i < 5; ++i) history.add(Level.DEBUG, "hidden " + i);
+		history.add(Level.ERROR, "c");
+		model.pull();
+		Assert.assertEquals(1L, model.dropped());
+		Assert.assertEquals(Lists.newArrayList("c"), shown(model));
+	}
+
+	@Test
+	public void keepsCountingAfterTheMinimumChanges() {
+		final LogHistory history = new LogHistory(3, Long.MAX_VALUE);
+		final ConsoleModel model = new ConsoleModel(history, 100, Level.INFO);
+		for (int i = 0; i < 5; ++i) history.add(Level.INFO, Integer.toString(i));
+		model.pull();
+		Assert.assertEquals(2L, model.dropped());
+		model.minimum(Level.TRACE);
+		model.clear();
+		model.pull();
+		Assert.assertEquals(2L, model.dropped());
+		for (int i = 0; i < 4; ++i) history.add(Level.DEBUG, Integer.toString(i));
+		model.pull();
+		Assert.assertEquals(3L, model.dropped());
+	}
+
+	@Test
+	public void showsAtMostWhatTheHistoryRetains() {
+		final LogHistory history = new LogHistory(10, Long.MAX_VALUE);
+		Assert.assertEquals(10, new ConsoleModel(history, 20000, Level.TRACE).capacity());
+	}
+
+	@Test
+	public void keepsClearedLinesHidden() {
+		final LogHistory history = new LogHistory(100, Long.MAX_VALUE);
+		final ConsoleModel model = new ConsoleModel(history, 100, Level.INFO);
+		history.add(Level.INFO, "a");
+		history.add(Level.DEBUG, "b");
+		model.pull();
+		model.clear();
+		Assert.assertEquals(0, model.getSize());
+		history.add(Level.INFO, "c");
+		model.minimum(Level.TRACE);
+		Assert.assertEquals(Lists.newArrayList("c"), shown(model));
+	}
+}